@@ -0,0 +1,128 @@
+package edu.riesco.api;
+
+import com.google.gson.Gson;
+import edu.riesco.domain.DueDate;
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskManager;
+import edu.riesco.persistence.JsonFileTaskRepository;
+import edu.riesco.persistence.TaskRepositoryBenchmark;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static edu.riesco.api.TaskManagerCli.*;
+
+// Rendering of "tm list". The rows are written to a buffered writer that discards them, as the cost of the terminal
+// is not ours.
+// - streamed: TaskManagerCli.printTasks(), formatting straight from the tasks.
+// - listFromJsonFile: the whole "tm list", reading the tasks from a JSON file.
+// - reparsedAndJoined: the first renderer, which wrote every task to JSON, parsed it back into a Map and joined the
+//   rows into one String. Quadratic, so it only runs up to 10000 tasks.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListRenderingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Tasks {
+        @Param({"1000", "10000", "100000", "1000000"})
+        public int tasks;
+        List<Map.Entry<Integer, Task>> tasksWithIds;
+        Path directory;
+        TaskManager taskManager;
+
+        @Setup(Level.Trial)
+        public void create() throws IOException {
+            tasksWithIds = IntStream.rangeClosed(1, tasks)
+                    .mapToObj(id -> Map.entry(id, TaskRepositoryBenchmark.task(id))).toList();
+            directory = Files.createTempDirectory("tm-benchmark");
+            JsonFileTaskRepository repository = new JsonFileTaskRepository(directory.resolve("tasks").toString());
+            repository.createAll(tasksWithIds.stream().map(Map.Entry::getValue).toList());
+            taskManager = new TaskManager(repository);
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path path : files.toList()) Files.delete(path);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FewTasks {
+        @Param({"1000", "10000"})
+        public int tasks;
+        List<String> tasksAsJson;
+
+        @Setup(Level.Trial)
+        public void create() {
+            tasksAsJson = IntStream.rangeClosed(1, tasks).mapToObj(id -> TaskRepositoryBenchmark.task(id).toJson()).toList();
+        }
+    }
+
+    @Benchmark
+    public void streamed(Tasks tasks) throws IOException {
+        Writer out = new BufferedWriter(Writer.nullWriter());
+        printTasks(tasks.tasksWithIds.stream(), out);
+        out.flush();
+    }
+
+    @Benchmark
+    public void listFromJsonFile(Tasks tasks) throws IOException {
+        Writer out = new BufferedWriter(Writer.nullWriter());
+        try (Stream<Map.Entry<Integer, Task>> tasksWithIds = tasks.taskManager.streamTasksWithIds()) {
+            printTasks(tasksWithIds, out);
+        }
+        out.flush();
+    }
+
+    @Benchmark
+    public String reparsedAndJoined(FewTasks tasks) {
+        return printTasksReparsed(tasks.tasksAsJson);
+    }
+
+    private static final Gson gson = new Gson();
+
+    // The first TaskManagerCli.printTasks(), as it was.
+    private static String printTasksReparsed(List<String> tasks) {
+        String out = BOLD + "  ID   Due Date    Status     Title and Description" + NORMAL + "\n" + " ---------------------------------------------------";
+        int taskId = 1;
+        for (String task : tasks) {
+            Map printableTask = gson.fromJson(task, Map.class);
+            String status = (String) printableTask.get("status");
+            String printableStatus = status.equalsIgnoreCase("COMPLETED") ? GREEN + "COMPLETED" + NORMAL : status + " ";
+            String printableDueDate;
+            String jsonDueDate = (String) printableTask.get("dueDate");
+            if (jsonDueDate.isEmpty()) {
+                printableDueDate = "";
+            } else if (!DueDate.of(jsonDueDate).isOverdue()) {
+                printableDueDate = jsonDueDate;
+            } else {
+                printableDueDate = YELLOW + jsonDueDate + NORMAL;
+            }
+
+            out = String.join("\n", out, String.format(PURPLE + "%4s  " + NORMAL, taskId));
+            out = String.join(" ", out, String.format("%10s  ", printableDueDate));
+            out = String.join(" ", out, String.format("%9s   ", printableStatus));
+            out = String.join(" ", out, BOLD + printableTask.get("title") + NORMAL);
+            if (!printableTask.get("description").toString().isBlank()) {
+                out = String.join(" - ", out, (String) printableTask.get("description"));
+            }
+            taskId++;
+        }
+        return out;
+    }
+}
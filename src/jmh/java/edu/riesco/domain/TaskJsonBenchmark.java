@@ -0,0 +1,71 @@
+package edu.riesco.domain;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// Task.toJson() and Task.fromJson(), used by every read and write of the JSON stores, against the reflective Gson
+// they replaced.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskJsonBenchmark {
+
+    private static final Gson gson = new GsonBuilder().registerTypeHierarchyAdapter(TaskDueDate.class, new TypeAdapter<TaskDueDate>() {
+        @Override
+        public void write(JsonWriter out, TaskDueDate date) throws IOException {
+            out.value(date.printableDueDate());
+        }
+
+        @Override
+        public TaskDueDate read(JsonReader in) throws IOException {
+            String date = in.nextString();
+            return date.isEmpty() ? new NoDueDate() : DueDate.of(date);
+        }
+    }.nullSafe()).create();
+
+    private final Task task = Task.from("Call the bank", "About the mortgage of the flat in the city centre",
+            DueDate.ofEpochDay(LocalDate.now().toEpochDay() + 30));
+    private final String json = task.toJson();
+    private final byte[] jsonBytes = task.toJsonBytes();
+
+    @Benchmark
+    public String toJson() {
+        return task.toJson();
+    }
+
+    @Benchmark
+    public byte[] toJsonBytes() {
+        return task.toJsonBytes();
+    }
+
+    @Benchmark
+    public String gsonToJson() {
+        return gson.toJson(task);
+    }
+
+    @Benchmark
+    public Task fromJson() {
+        return Task.fromJson(json);
+    }
+
+    @Benchmark
+    public Task fromJsonBytes() {
+        return Task.fromJson(jsonBytes, 0, jsonBytes.length);
+    }
+
+    @Benchmark
+    public Task gsonFromJson() {
+        return gson.fromJson(json, Task.class);
+    }
+}
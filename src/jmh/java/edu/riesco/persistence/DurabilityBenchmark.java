@@ -0,0 +1,74 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.IdMode;
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Operations per second of the JSON file store with each durability, from several threads at once, so writes
+// can share a force with group commit. Forces are only as slow as the disk under java.io.tmpdir: run it on the
+// disk the tasks file lives on, with -Djava.io.tmpdir in jmh.args, and change the threads with -t.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class DurabilityBenchmark {
+    private static final int TASKS = 10_000;
+
+    public enum Setting {NONE, SYNC, GROUP}
+
+    @Param
+    public Setting durability;
+
+    private Path directory;
+    private JsonFileTaskRepository repository;
+    private final Task newTask = TaskRepositoryBenchmark.task(0);
+    private final Task completedTask = TaskRepositoryBenchmark.task(0).withStatus(TaskStatus.COMPLETED);
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("tm-benchmark");
+        Durability setting = switch (durability) {
+            case NONE -> Durability.none();
+            case SYNC -> Durability.sync();
+            case GROUP -> Durability.group(Duration.ofMillis(2), 8);  // One write per thread
+        };
+        repository = new JsonFileTaskRepository(directory.resolve("tasks").toString(),
+                JsonFileTaskRepository.Layout.SLOTS, IdMode.POSITIONAL, setting);
+        List<Task> initialTasks = new ArrayList<>(TASKS);
+        for (int i = 0; i < TASKS; i++) initialTasks.add(TaskRepositoryBenchmark.task(i));
+        repository.createAll(initialTasks);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+        }
+    }
+
+    @Benchmark
+    public int create() {
+        return repository.create(newTask);
+    }
+
+    // In place, as the slots layout has room for the completed task.
+    @Benchmark
+    public void update() {
+        repository.update(ThreadLocalRandom.current().nextInt(1, TASKS + 1), completedTask);
+    }
+}
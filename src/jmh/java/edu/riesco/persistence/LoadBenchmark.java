@@ -0,0 +1,56 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.Task;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// getAll of a JSON file read with 1 to 8 threads, to see how loading scales with the cores: 1 reads the lines one
+// at a time, as by default, and more use a ChunkedLineReader. More threads than cores only add overhead.
+//   mvn -P jmh -DskipTests verify -Djmh.args="LoadBenchmark -p tasks=1000000"
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class LoadBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+    @Param({"100000", "1000000"})
+    public int tasks;
+
+    private Path directory;
+    private JsonFileTaskRepository repository;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("tm-benchmark");
+        repository = new JsonFileTaskRepository(directory.resolve("tasks").toString());
+        List<Task> initialTasks = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) initialTasks.add(TaskRepositoryBenchmark.task(i));
+        repository.createAll(initialTasks);
+        repository.loadThreads(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+        }
+    }
+
+    @Benchmark
+    public void getAll(Blackhole blackhole) {
+        for (Task task : repository.getAll()) blackhole.consume(task);
+    }
+}
@@ -0,0 +1,77 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskRepository;
+import org.openjdk.jmh.annotations.*;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Heap taken by the in-memory repositories, from a class histogram of the live objects (as "jcmd GC.class_histogram"
+// prints) taken before and after the tasks are created. The histogram runs a full GC first, so only what the
+// repository keeps is counted. The time is the one taken to create the tasks; the footprint is in the secondary
+// results: "bytesPerTask" and "megabytes".
+//   mvn -P jmh -DskipTests verify -Djmh.args="MemoryFootprintBenchmark -p tasks=1000000"
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)  // Secondary results add up over the iterations
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MemoryFootprintBenchmark {
+    private static final int BATCH = 100_000;
+
+    public enum Store {MEMORY, COLUMNAR}
+
+    @Param
+    public Store store;
+    @Param({"1000000", "10000000"})
+    public int tasks;
+
+    private TaskRepository repository;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long bytesPerTask;
+        public long megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesPerTask = 0;
+            megabytes = 0;
+        }
+    }
+
+    @Benchmark
+    public TaskRepository create(Footprint footprint) throws Exception {
+        repository = null;  // The one of the last iteration
+        long before = heapBytes();
+        repository = switch (store) {
+            case MEMORY -> new MemoryTaskRepository();
+            case COLUMNAR -> new ColumnarTaskRepository();
+        };
+        for (int first = 0; first < tasks; first += BATCH) {
+            List<Task> batch = new ArrayList<>(BATCH);
+            for (int i = first; i < Math.min(tasks, first + BATCH); i++) batch.add(TaskRepositoryBenchmark.task(i));
+            repository.createAll(batch);
+        }
+        long bytes = heapBytes() - before;
+        footprint.bytesPerTask = bytes / tasks;
+        footprint.megabytes = bytes >> 20;
+        return repository;
+    }
+
+    // Bytes of the live objects, from the "Total" line at the end of the class histogram.
+    private static long heapBytes() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String histogram = (String) server.invoke(new ObjectName("com.sun.management:type=DiagnosticCommand"),
+                "gcClassHistogram", new Object[]{null}, new String[]{String[].class.getName()});
+        String[] total = histogram.strip().lines().reduce((first, second) -> second).orElseThrow().trim().split("\\s+");
+        return Long.parseLong(total[2]);
+    }
+}
@@ -0,0 +1,106 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.DueDate;
+import edu.riesco.domain.NoDueDate;
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskRepository;
+import edu.riesco.domain.TaskStatus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Operations of every repository over stores of several sizes. Tasks are read and changed at random IDs, so getById
+// shows whether lookups stay flat as the store grows. deleteAndCreate adds a task back to keep the size.
+// A whole run takes hours; narrow it with -Djmh.args="TaskRepositoryBenchmark -p store=JSON_FILE -p tasks=1000"
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskRepositoryBenchmark {
+
+    public enum Store {MEMORY, COLUMNAR, JSON_FILE, JSON_FILE_SLOTS, JOURNAL, MAPPED}
+
+    @Param
+    public Store store;
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int tasks;
+
+    private Path directory;
+    private TaskRepository repository;
+    private final Task newTask = task(0);
+    private final Task completedTask = task(0).withStatus(TaskStatus.COMPLETED);
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("tm-benchmark");
+        String file = directory.resolve("tasks").toString();
+        repository = switch (store) {
+            case MEMORY -> new MemoryTaskRepository();
+            case COLUMNAR -> new ColumnarTaskRepository();
+            case JSON_FILE -> new JsonFileTaskRepository(file);
+            case JSON_FILE_SLOTS -> new JsonFileTaskRepository(file, JsonFileTaskRepository.Layout.SLOTS);
+            case JOURNAL -> new JournalTaskRepository(file);
+            case MAPPED -> new MappedTaskRepository(file);
+        };
+        List<Task> initialTasks = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) initialTasks.add(task(i));
+        repository.createAll(initialTasks);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        if (repository instanceof AutoCloseable closeable) closeable.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+        }
+    }
+
+    @Benchmark
+    public int create() {
+        return repository.create(newTask);
+    }
+
+    @Benchmark
+    public Task getById() {
+        return repository.getById(randomId());
+    }
+
+    @Benchmark
+    public void update() {
+        repository.update(randomId(), completedTask);
+    }
+
+    @Benchmark
+    public int deleteAndCreate() {
+        repository.delete(randomId());
+        return repository.create(newTask);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void getAll(Blackhole blackhole) {
+        for (Task task : repository.getAll()) blackhole.consume(task);
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(1, tasks + 1);
+    }
+
+    // Tasks like the ones of a real list: some with a due date, some with a description.
+    public static Task task(int i) {
+        return Task.from("Task number " + i, i % 2 == 0 ? "" : "Description of the task number " + i,
+                i % 3 == 0 ? new NoDueDate() : DueDate.ofEpochDay(LocalDate.now().toEpochDay() + 1 + i % 365));
+    }
+}
@@ -0,0 +1,66 @@
+package edu.riesco.api;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// The output of a command or response, written while the store is locked and sent once it is unlocked, so that a
+// slow reader does not keep every writer, and every tm process on the same file, waiting.
+// Bytes are kept in memory up to MEMORY_BYTES, and in a temporary file from then on, until delete().
+final class Snapshot extends OutputStream {
+    private static final int MEMORY_BYTES = 1024 * 1024;
+
+    private final ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    private Path file;  // null while in memory
+    private OutputStream fileOut;
+    private long size;
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (fileOut == null && memory.size() + length > MEMORY_BYTES) {
+            file = Files.createTempFile("tm-snapshot", ".tmp");
+            fileOut = new BufferedOutputStream(Files.newOutputStream(file));
+            memory.writeTo(fileOut);
+            memory.reset();
+        }
+        (fileOut == null ? memory : fileOut).write(bytes, offset, length);
+        size += length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (fileOut != null) fileOut.flush();
+    }
+
+    long size() {
+        return size;
+    }
+
+    // After close().
+    void copyTo(OutputStream out) throws IOException {
+        if (file == null) {
+            memory.writeTo(out);
+        } else {
+            Files.copy(file, out);
+        }
+    }
+
+    // Ends the writing.
+    @Override
+    public void close() throws IOException {
+        if (fileOut != null) fileOut.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        if (file != null) Files.deleteIfExists(file);
+    }
+}
@@ -1,21 +1,41 @@
 package edu.riesco.api;
 
-import com.google.gson.Gson;
 import edu.riesco.domain.DueDate;
+import edu.riesco.domain.IdMode;
 import edu.riesco.domain.NoDueDate;
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskBatch;
 import edu.riesco.domain.TaskDueDate;
+import edu.riesco.domain.TaskFilter;
 import edu.riesco.domain.TaskManager;
+import edu.riesco.domain.TaskStatus;
+import edu.riesco.domain.Today;
 import edu.riesco.exception.OverdueException;
+import edu.riesco.exception.TaskRepositoryException;
+import edu.riesco.metrics.Metrics;
+import edu.riesco.persistence.CachingTaskRepository;
+import edu.riesco.persistence.Durability;
 import edu.riesco.persistence.JsonFileTaskRepository;
+import edu.riesco.persistence.TailingTaskRepository;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
-import java.io.File;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 class TaskManagerCli {
 
@@ -24,55 +44,201 @@ class TaskManagerCli {
     static final String GREEN = "\u001B[32m";
     static final String YELLOW = "\u001B[33m";
     static final String PURPLE = "\u001B[35m";
+    private static final String TASKS_HEADER = BOLD + "  ID   Due Date    Status     Title and Description" + NORMAL + "\n" + " ---------------------------------------------------";
     public static String tasksFile = System.getProperty("user.home") + File.separator + ".tm";
-    public static TaskManager taskManager = new TaskManager(new JsonFileTaskRepository(tasksFile));
-    static Gson gson = new Gson();
+    // TM_IDS=stable gives every task an ID that does not change when other tasks are deleted.
+    public static IdMode idMode = "stable".equalsIgnoreCase(System.getenv("TM_IDS")) ? IdMode.STABLE : IdMode.POSITIONAL;
+    // TM_DURABILITY=sync|group[:<milliseconds>[:<operations>]] forces the changes to disk before a command ends.
+    public static Durability durability = Durability.none();
+    // TM_LOAD_THREADS=<threads> parses big task files with several threads.
+    private static int loadThreads = 1;
+    // The environment variables above are read by main(). An invalid value is a usage error of the commands, and
+    // does not keep "tm help" from running.
+    private static String environmentError;
+    // Tasks read by ID are cached, for commands that read the same task several times.
+    private static final long CACHE_BYTES = 32L << 20;
+    public static TaskManager taskManager;  // Set by ParentCommand
+
+    private static final Metrics.Timer STARTUP = Metrics.timer("jvm.startup");
+    private static final Metrics.Timer RENDER = Metrics.timer("render");
+    private static long startupNanos;  // From the start of the process to main(), for --metrics
+    private static Metrics.Snapshot statsStart = Metrics.snapshot();  // For "tm stats": since start or --reset
 
     public static void main(String[] args) {
+        if (Arrays.asList(args).contains("--metrics")) {
+            startupNanos = ProcessHandle.current().info().startInstant()
+                    .map(start -> Duration.between(start, Instant.now()).toNanos()).orElse(0L);
+        }
 
-        CommandLine cmd = new CommandLine(new ParentCommand(taskManager));
+        readEnvironment();
+        JsonFileTaskRepository tasks = new JsonFileTaskRepository(tasksFile, JsonFileTaskRepository.Layout.LINES,
+                idMode, durability);
+        tasks.loadThreads(loadThreads);
+        CommandLine cmd = commandLine(new TaskManager(new CachingTaskRepository(tasks, CACHE_BYTES)));
 
         if (args.length == 0) {
             cmd.usage(System.out);
         } else {
-            int exitCode = cmd.execute(args);
+            Integer exitCode = environmentError == null ? forwardToDaemon(args) : null;
+            if (exitCode == null) exitCode = cmd.execute(args);
             System.exit(exitCode);
         }
     }
 
-    static String printTasks(List<String> tasks) {
-        String out = BOLD + "  ID   Due Date    Status     Title and Description" + NORMAL + "\n" + " ---------------------------------------------------";
-        int taskId = 1;
-        for (String task : tasks) {
-            Map printableTask = gson.fromJson(task, Map.class);
-            String status = (String) printableTask.get("status");
-            String printableStatus = status.equalsIgnoreCase("COMPLETED") ? GREEN + "COMPLETED" + NORMAL : status + " ";
-            String printableDueDate;
-            String jsonDueDate = (String) printableTask.get("dueDate");
-            if (jsonDueDate.isEmpty()) {
-                printableDueDate = "";
-            } else if (!DueDate.of(jsonDueDate).isOverdue()) {
-                printableDueDate = jsonDueDate;
-            } else {
-                printableDueDate = YELLOW + jsonDueDate + NORMAL;
+    private static void readEnvironment() {
+        String durabilityText = System.getenv("TM_DURABILITY");
+        if (durabilityText != null) {
+            try {
+                durability = Durability.parse(durabilityText);
+            } catch (IllegalArgumentException e) {
+                environmentError = "Invalid TM_DURABILITY: " + e.getMessage();
+            }
+        }
+        String loadThreadsText = System.getenv("TM_LOAD_THREADS");
+        if (loadThreadsText != null) {
+            try {
+                loadThreads = Integer.parseInt(loadThreadsText.trim());
+                if (loadThreads < 1) throw new NumberFormatException();
+            } catch (NumberFormatException e) {
+                loadThreads = 1;
+                environmentError = "Invalid TM_LOAD_THREADS: " + loadThreadsText;
+            }
+        }
+    }
+
+    // The commands, timed as "command.<name>". With --metrics, the timers and counters of the command are written
+    // to the standard error when it ends.
+    static CommandLine commandLine(TaskManager taskManager) {
+        CommandLine cmd = new CommandLine(new ParentCommand(taskManager));
+        cmd.setExecutionStrategy(TaskManagerCli::execute);
+        return cmd;
+    }
+
+    private static int execute(CommandLine.ParseResult parseResult) {
+        CommandLine.ParseResult command = parseResult;
+        boolean printMetrics = command.hasMatchedOption("--metrics");
+        while (command.hasSubcommand()) {
+            command = command.subcommand();
+            printMetrics |= command.hasMatchedOption("--metrics");
+        }
+        if (environmentError != null && !(command.commandSpec().userObject() instanceof CommandLine.HelpCommand)
+                && !command.isUsageHelpRequested()) {
+            throw new CommandLine.ParameterException(command.commandSpec().commandLine(), environmentError);
+        }
+        boolean wasEnabled = Metrics.isEnabled();
+        Metrics.Snapshot before = null;
+        if (printMetrics) {
+            Metrics.setEnabled(true);
+            before = Metrics.snapshot();
+            if (startupNanos > 0) STARTUP.record(startupNanos);
+        }
+        Metrics.Timer timer = Metrics.timer("command." + command.commandSpec().name());
+        long start = timer.start();
+        try {
+            return new CommandLine.RunLast().execute(parseResult);
+        } finally {
+            timer.stop(start);
+            if (printMetrics) {
+                Metrics.setEnabled(wasEnabled);
+                System.err.print(Metrics.snapshot().minus(before).format());
             }
+        }
+    }
 
-            out = String.join("\n", out, String.format(PURPLE + "%4s  " + NORMAL, taskId));
-            out = String.join(" ", out, String.format("%10s  ", printableDueDate));
-            out = String.join(" ", out, String.format("%9s   ", printableStatus));
-            out = String.join(" ", out, BOLD + printableTask.get("title") + NORMAL);
-            if (!printableTask.get("description").toString().isBlank()) {
-                out = String.join(" - ", out, (String) printableTask.get("description"));
+    // Runs the command in the daemon of the tasks file, if there is one. Returns null if there is not.
+    // Files are passed to it as absolute paths, and tasks imported from the standard input through a temporary file.
+    // "serve" runs until stopped, so it is not sent: the daemon runs one command at a time.
+    private static Integer forwardToDaemon(String[] args) {
+        Path socketPath = TaskManagerDaemon.socketPath(tasksFile);
+        if (!Files.exists(socketPath) || args[0].equals("serve")) return null;
+        Path temporary = null;
+        try {
+            String[] forwarded = args.clone();
+            if (args[0].equals("import") || args[0].equals("export")) {
+                if (args.length > 1) {
+                    forwarded[1] = Path.of(args[1]).toAbsolutePath().toString();
+                } else if (args[0].equals("import")) {
+                    temporary = Files.createTempFile("tm-import", ".json");
+                    Files.copy(System.in, temporary, StandardCopyOption.REPLACE_EXISTING);
+                    forwarded = new String[]{"import", temporary.toString()};
+                }
             }
-            taskId++;
+            return TaskManagerDaemon.forward(socketPath, forwarded, System.out, System.err);
+        } catch (IOException e) {
+            System.err.println("Daemon request failed: " + e.getMessage());
+            return 1;
+        } finally {
+            if (temporary != null) temporary.toFile().delete();
+        }
+    }
+
+    // Tasks with positional IDs.
+    static String printTasks(List<Task> tasks) {
+        StringWriter out = new StringWriter();
+        try {
+            int[] id = {0};
+            printTasks(tasks.stream().map(task -> Map.entry(++id[0], task)), out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  // A StringWriter does not throw it.
         }
-        return out;
+        return out.toString();
+    }
+
+    // Rows are formatted straight from the tasks (ID -> Task) and written one at a time as the tasks are read.
+    // The current date is read once for the whole list. Timed as "render", which includes reading streamed tasks.
+    static void printTasks(Stream<Map.Entry<Integer, Task>> tasks, Writer out) throws IOException {
+        long start = RENDER.start();
+        Today today = Today.now();
+        out.write(TASKS_HEADER);
+        for (Iterator<Map.Entry<Integer, Task>> iterator = tasks.iterator(); iterator.hasNext(); ) {
+            Map.Entry<Integer, Task> task = iterator.next();
+            out.write('\n');
+            printTask(task.getValue(), task.getKey(), today, out);
+        }
+        RENDER.stop(start);
+    }
+
+    // Same as above, for some of the tasks, in the order of the map.
+    static void printTasks(Map<Integer, Task> tasks, Writer out) throws IOException {
+        printTasks(tasks.entrySet().stream(), out);
+    }
+
+    private static void printTask(Task task, int taskId, Today today, Writer out) throws IOException {
+        String printableDueDate = task.getPrintableDueDate();
+        if (task.isOverdue(today)) printableDueDate = YELLOW + printableDueDate + NORMAL;
+        String printableStatus = task.getStatus() == TaskStatus.COMPLETED ? GREEN + "COMPLETED" + NORMAL : task.getStatus() + " ";
+
+        out.write(PURPLE);
+        padLeft(String.valueOf(taskId), 4, out);
+        out.write("  " + NORMAL + " ");
+        padLeft(printableDueDate, 10, out);
+        out.write("   ");
+        padLeft(printableStatus, 9, out);
+        out.write("    " + BOLD);
+        out.write(task.getTitle());
+        out.write(NORMAL);
+        if (!task.getDescription().isBlank()) {
+            out.write(" - ");
+            out.write(task.getDescription());
+        }
+    }
+
+    // Same as String.format("%<width>s", text).
+    private static void padLeft(String text, int width, Writer out) throws IOException {
+        for (int i = text.length(); i < width; i++) out.write(' ');
+        out.write(text);
     }
 
     @Command(name = "tm", subcommands = {AddCommand.class, UpdateCommand.class, CompleteCommand.class, PendingCommand.class,
-            DeleteCommand.class, ListCommand.class, CommandLine.HelpCommand.class}, description = "Task manager")
+            DeleteCommand.class, ListCommand.class, SearchCommand.class, ImportCommand.class, ExportCommand.class,
+            DaemonCommand.class, ServeCommand.class, StatsCommand.class, CommandLine.HelpCommand.class},
+            description = "Task manager")
     public static class ParentCommand implements Runnable {
 
+        @Option(names = {"--metrics"}, scope = CommandLine.ScopeType.INHERIT,
+                description = "Print the time taken by the command and its steps to the standard error")
+        private boolean metrics;
+
         ParentCommand(TaskManager taskManager) {
             TaskManagerCli.taskManager = taskManager;
         }
@@ -129,15 +295,17 @@ class TaskManagerCli {
         @Override
         public void run() {
             try {
-                if (title != null) taskManager.updateTaskTitle(id, title);
-                if (description != null) taskManager.updateTaskDescription(id, description);
+                TaskBatch batch = taskManager.batch();
+                if (title != null) batch.updateTaskTitle(id, title);
+                if (description != null) batch.updateTaskDescription(id, description);
                 if (dueDate != null) {
                     if (dueDate.isEmpty()) {  // Remove DueDate from Task
-                        taskManager.updateTaskDueDate(id, new NoDueDate());
+                        batch.updateTaskDueDate(id, new NoDueDate());
                     } else {
-                        taskManager.updateTaskDueDate(id, DueDate.of(dueDate));
+                        batch.updateTaskDueDate(id, DueDate.of(dueDate));
                     }
                 }
+                batch.commit();
                 System.out.println("Task " + id + " updated");
 
             } catch (DateTimeParseException e) {
@@ -150,29 +318,33 @@ class TaskManagerCli {
         }
     }
 
-    @Command(name = "complete", description = "Mark task as 'Completed'")
+    @Command(name = "complete", description = "Mark tasks as 'Completed'")
     static class CompleteCommand implements Runnable {
 
-        @Parameters(paramLabel = "id", description = "Task ID")
-        private int id;
+        @Parameters(paramLabel = "id", arity = "1..*", description = "Task IDs")
+        private List<Integer> ids;
 
         @Override
         public void run() {
-            taskManager.markAsComplete(id);
-            System.out.println("Task " + id + " completed");
+            TaskBatch batch = taskManager.batch();
+            ids.forEach(batch::markAsComplete);
+            batch.commit();
+            ids.forEach(id -> System.out.println("Task " + id + " completed"));
         }
     }
 
-    @Command(name = "pending", description = "Mark task as 'Pending'")
+    @Command(name = "pending", description = "Mark tasks as 'Pending'")
     static class PendingCommand implements Runnable {
 
-        @Parameters(paramLabel = "id", description = "Task ID")
-        private int id;
+        @Parameters(paramLabel = "id", arity = "1..*", description = "Task IDs")
+        private List<Integer> ids;
 
         @Override
         public void run() {
-            taskManager.markAsPending(id);
-            System.out.println("Task " + id + " pending");
+            TaskBatch batch = taskManager.batch();
+            ids.forEach(batch::markAsPending);
+            batch.commit();
+            ids.forEach(id -> System.out.println("Task " + id + " pending"));
         }
     }
 
@@ -192,9 +364,249 @@ class TaskManagerCli {
     @Command(name = "list", description = "List Tasks")
     static class ListCommand implements Runnable {
 
+        @Option(names = {"--status"}, description = "Only tasks with this status: ${COMPLETION-CANDIDATES}")
+        private TaskStatus status;
+        @Option(names = {"--due-before"}, description = "Only tasks due before this date")
+        private String dueBefore;
+        @Option(names = {"--overdue"}, description = "Only overdue tasks")
+        private boolean overdue;
+
+        @Override
+        public void run() {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, System.out.charset()));
+            try {
+                if (status == null && dueBefore == null && !overdue) {
+                    out.flush();
+                    printSnapshot(System.out.charset(), snapshotOut -> {
+                        try (Stream<Map.Entry<Integer, Task>> tasks = taskManager.streamTasksWithIds()) {
+                            TaskManagerCli.printTasks(tasks, snapshotOut);
+                        }
+                        return 0;
+                    });
+                } else {
+                    TaskFilter filter = TaskFilter.all();
+                    if (status != null) filter = filter.withStatus(status);
+                    if (dueBefore != null) filter = filter.withDueBefore(DueDate.of(dueBefore));
+                    if (overdue) filter = filter.overdue(Today.now());
+                    TaskManagerCli.printTasks(taskManager.findTasks(filter), out);
+                }
+                out.write(System.lineSeparator());
+                out.flush();  // Not closed: it would close the standard output.
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid date: " + dueBefore);
+                System.out.println("Date format should be: YYYY-MM-DD");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Command(name = "search", description = "Search Tasks by words in their title or description")
+    static class SearchCommand implements Runnable {
+
+        @Option(names = {"-n", "--limit"}, description = "Maximum number of tasks. Default: ${DEFAULT-VALUE}")
+        private int limit = 20;
+        @Parameters(paramLabel = "word", arity = "1..*", description = "Words to search for")
+        private List<String> words;
+
+        @Override
+        public void run() {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, System.out.charset()));
+            try {
+                TaskManagerCli.printTasks(taskManager.searchTasks(String.join(" ", words), limit), out);
+                out.write(System.lineSeparator());
+                out.flush();  // Not closed: it would close the standard output.
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Command(name = "import", description = "Import Tasks from a JSON-lines file")
+    static class ImportCommand implements Runnable {
+
+        @Parameters(paramLabel = "file", arity = "0..1", description = "JSON-lines file. Standard input if missing")
+        private Path file;
+
+        // The standard input is copied to a temporary file first, as the lines are read twice.
+        @Override
+        public void run() {
+            Path temporary = null;
+            try {
+                long start = System.nanoTime();
+                if (file == null) {
+                    temporary = Files.createTempFile("tm-import", ".json");
+                    Files.copy(System.in, temporary, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Path input = file == null ? temporary : file;
+                TaskManager.ImportResult result = taskManager.importTasks(() -> {
+                    try {
+                        return Files.lines(input);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                System.out.println(result.tasks() + " tasks imported"
+                        + (result.tasks() == 0 ? "" : ", last ID " + result.lastId()) + throughput(result.tasks(), start));
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+                System.out.println("Tasks NOT imported");
+            } catch (IOException | UncheckedIOException e) {
+                System.out.println("Can not read file: " + (file == null ? "standard input" : file));
+            } finally {
+                if (temporary != null) temporary.toFile().delete();
+            }
+        }
+    }
+
+    @Command(name = "export", description = "Export Tasks to a JSON-lines file")
+    static class ExportCommand implements Runnable {
+
+        @Parameters(paramLabel = "file", arity = "0..1", description = "JSON-lines file. Standard output if missing")
+        private Path file;
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            long exported;
+            try {
+                if (file == null) {
+                    exported = printSnapshot(StandardCharsets.UTF_8, writer -> {
+                        try (Stream<String> tasks = taskManager.streamTasksAsJson()) {
+                            return write(tasks, writer);
+                        }
+                    });
+                } else {
+                    try (Stream<String> tasks = taskManager.streamTasksAsJson();
+                         BufferedWriter writer = Files.newBufferedWriter(file)) {
+                        exported = write(tasks, writer);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Can not write file: " + file);
+                return;
+            }
+            // With no file the tasks go to the standard output, so the summary goes to the standard error.
+            PrintStream summary = file == null ? System.err : System.out;
+            summary.println(exported + " tasks exported" + throughput(exported, start));
+        }
+    }
+
+    // Started here only when there is no daemon running: "tm daemon" commands sent to a daemon are handled by it.
+    @Command(name = "daemon", description = "Keep the Tasks loaded and run the tm commands of this user until stopped")
+    static class DaemonCommand implements Runnable {
+
+        @Option(names = {"--stop"}, description = "Stop the running daemon")
+        private boolean stop;
+
         @Override
         public void run() {
-            System.out.println(TaskManagerCli.printTasks(taskManager.tasksAsJson()));
+            if (stop) {
+                System.out.println("No daemon running");
+                return;
+            }
+            Path socketPath = TaskManagerDaemon.socketPath(tasksFile);
+            // Every task in memory, so that commands do not read the file unless someone else changed it.
+            TailingTaskRepository tasks;
+            try {
+                tasks = new TailingTaskRepository(tasksFile, JsonFileTaskRepository.Layout.LINES, idMode, durability, true);
+            } catch (TaskRepositoryException e) {
+                System.err.println("Daemon failed: " + e.getMessage());
+                return;
+            }
+            TaskManagerDaemon daemon = new TaskManagerDaemon(socketPath, new TaskManager(tasks), tasks::refresh);
+            Metrics.setEnabled(true);  // For "tm stats"
+            // Ctrl-C or kill skip the cleanup of run().
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> socketPath.toFile().delete()));
+            System.out.println("Daemon listening on " + socketPath);
+            try (tasks) {
+                daemon.run();
+            } catch (IOException e) {
+                System.err.println("Daemon failed: " + e.getMessage());
+            }
         }
     }
-}
\ No newline at end of file
+
+    @Command(name = "serve", description = "Serve the Tasks as an HTTP/JSON API on localhost until stopped")
+    static class ServeCommand implements Runnable {
+
+        @Option(names = {"-p", "--port"}, defaultValue = "8080", description = "Port. Default: ${DEFAULT-VALUE}")
+        private int port;
+
+        @Override
+        public void run() {
+            try {
+                TaskManagerServer server = new TaskManagerServer(taskManager, port);
+                Metrics.setEnabled(true);
+                server.start();
+                System.out.println("Serving http://localhost:" + server.port() + "/tasks");
+                Thread.currentThread().join();  // main() exits when the command returns.
+            } catch (IOException e) {
+                System.err.println("Can not serve on port " + port + ": " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Sent to the daemon, so it shows what the daemon has done since it started.
+    @Command(name = "stats", description = "Show the operations timed and counted by the daemon")
+    static class StatsCommand implements Runnable {
+
+        @Option(names = {"--reset"}, description = "Start counting again")
+        private boolean reset;
+
+        @Override
+        public void run() {
+            Metrics.Snapshot snapshot = Metrics.snapshot();
+            if (reset) {
+                statsStart = snapshot;
+                System.out.println("Metrics reset");
+                return;
+            }
+            Metrics.Snapshot collected = snapshot.minus(statsStart);
+            if (collected.isEmpty()) {
+                System.out.println("No metrics: they are collected by tm daemon. Use --metrics for a single command");
+                return;
+            }
+            System.out.print(collected.format());
+        }
+    }
+
+    @FunctionalInterface
+    private interface SnapshotWriter {
+        long write(BufferedWriter out) throws IOException;
+    }
+
+    // Runs "writer", which reads the tasks with the store locked, into a Snapshot, and copies it to the standard
+    // output once the store is unlocked: a reader that stalls, as in "tm list | less", would otherwise keep every
+    // writer of the tasks file waiting. Returns what "writer" returns.
+    private static long printSnapshot(Charset charset, SnapshotWriter writer) throws IOException {
+        Snapshot snapshot = new Snapshot();
+        try {
+            long result;
+            try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(snapshot, charset))) {
+                result = writer.write(out);
+            }
+            snapshot.copyTo(System.out);
+            System.out.flush();
+            return result;
+        } finally {
+            snapshot.delete();
+        }
+    }
+
+    private static long write(Stream<String> tasks, BufferedWriter writer) throws IOException {
+        long written = 0;
+        for (Iterator<String> iterator = tasks.iterator(); iterator.hasNext(); written++) {
+            writer.write(iterator.next());
+            writer.newLine();
+        }
+        return written;
+    }
+
+    private static String throughput(long tasks, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return String.format(" in %.3f s (%.0f tasks/s)", seconds, tasks / seconds);
+    }
+}
@@ -0,0 +1,307 @@
+package edu.riesco.api;
+
+import edu.riesco.domain.TaskManager;
+import picocli.CommandLine;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Long-running "tm daemon": keeps a TaskManager, with its indexes, warm and runs the commands that "tm" clients
+// send to it through a Unix domain socket, so they do not have to load the tasks themselves. "tm daemon" keeps the
+// tasks in memory with a TailingTaskRepository, which it brings up to date with the file before every command.
+//
+// Request: [argument count: int] and then [length: int][UTF-8 bytes] per argument.
+// Response: frames [type: byte][length: int][bytes], where the type is OUT or ERR for the standard output and error
+// of the command, in the order they were produced, and EXIT, with the exit code as an int, ends the response.
+// Every connection is served by its own thread, so a client that is slow to send its request or to read the response
+// does not hold the others. A request not received within REQUEST_TIMEOUT is dropped. Commands run one at a time,
+// and write their output, through System.out and System.err, to a Snapshot of the response, which is sent once the
+// command has ended.
+class TaskManagerDaemon {
+    private static final byte OUT = 'O';
+    private static final byte ERR = 'E';
+    private static final byte EXIT = 'X';
+    private static final int FRAME_BUFFER_BYTES = 8192;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(10);  // For the responses being sent
+
+    private final Path socketPath;
+    private final CommandLine cmd;
+    private final Runnable beforeCommand;
+    private final ReentrantLock commandLock = new ReentrantLock();
+    private final ThreadOutputStream out = new ThreadOutputStream();
+    private final ThreadOutputStream err = new ThreadOutputStream();
+    private volatile ServerSocketChannel server;
+    private volatile boolean stopRequested;
+
+    TaskManagerDaemon(Path socketPath, TaskManager taskManager) {
+        this(socketPath, taskManager, () -> {
+        });
+    }
+
+    // "beforeCommand" runs before every command, as TailingTaskRepository.refresh().
+    TaskManagerDaemon(Path socketPath, TaskManager taskManager, Runnable beforeCommand) {
+        this.socketPath = socketPath;
+        this.cmd = TaskManagerCli.commandLine(taskManager);
+        this.beforeCommand = beforeCommand;
+    }
+
+    // Socket of the daemon of a tasks file.
+    static Path socketPath(String tasksFile) {
+        return Path.of(tasksFile + ".sock");
+    }
+
+    // Serves requests until stop() is called or a client sends "daemon --stop".
+    // System.out and System.err write, until it returns, to the response of the command of each thread, if any.
+    void run() throws IOException {
+        Files.deleteIfExists(socketPath);  // Left by a daemon that did not stop cleanly: a live one would have answered "tm daemon".
+        PrintStream standardOut = System.out;
+        PrintStream standardErr = System.err;
+        ExecutorService connections = Executors.newCachedThreadPool(Thread.ofPlatform().daemon().factory());
+        ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().factory());
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            this.server = server;
+            out.standard = standardOut;
+            err.standard = standardErr;
+            System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+            System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+            cmd.setOut(new PrintWriter(System.out, true));  // Picocli keeps the streams it found the first time.
+            cmd.setErr(new PrintWriter(System.err, true));
+            while (!stopRequested) {
+                SocketChannel client;
+                try {
+                    client = server.accept();
+                } catch (ClosedChannelException e) {
+                    break;  // By stop()
+                }
+                connections.execute(() -> connection(client, deadlines));
+            }
+        } finally {
+            connections.shutdown();
+            try {
+                connections.awaitTermination(STOP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            deadlines.shutdownNow();
+            System.setOut(standardOut);
+            System.setErr(standardErr);
+            Files.deleteIfExists(socketPath);
+        }
+    }
+
+    void stop() {
+        stopRequested = true;
+        ServerSocketChannel server = this.server;
+        if (server == null) return;  // Not accepting yet: run() checks stopRequested
+        try {
+            server.close();
+        } catch (IOException e) {
+            System.err.println("Can not close the socket: " + e.getMessage());
+        }
+    }
+
+    // Runs the command of a client in this process, if a daemon is listening on the socket.
+    // Returns the exit code, or null if there is no daemon.
+    static Integer forward(Path socketPath, String[] args, PrintStream out, PrintStream err) throws IOException {
+        if (!Files.exists(socketPath)) return null;
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+        } catch (IOException e) {
+            return null;  // Socket left by a daemon that is not running.
+        }
+        try (channel) {
+            DataOutputStream request = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            request.writeInt(args.length);
+            for (String arg : args) {
+                byte[] bytes = arg.getBytes(StandardCharsets.UTF_8);
+                request.writeInt(bytes.length);
+                request.write(bytes);
+            }
+            request.flush();
+            DataInputStream response = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            byte[] buffer = new byte[FRAME_BUFFER_BYTES];
+            while (true) {
+                byte type = response.readByte();
+                int length = response.readInt();
+                if (type == EXIT) {
+                    out.flush();
+                    err.flush();
+                    return response.readInt();
+                }
+                PrintStream target = type == ERR ? err : out;
+                while (length > 0) {
+                    int read = response.read(buffer, 0, Math.min(buffer.length, length));
+                    if (read < 0) throw new EOFException("Daemon closed the connection");
+                    target.write(buffer, 0, read);
+                    length -= read;
+                }
+            }
+        }
+    }
+
+    // Serves one client, on a thread of its own.
+    private void connection(SocketChannel client, ScheduledExecutorService deadlines) {
+        try (client) {
+            // Closing the channel ends a read that is waiting for the request.
+            ScheduledFuture<?> deadline = deadlines.schedule(() -> {
+                try {
+                    client.close();
+                } catch (IOException ignored) {
+                    // It is dropped anyway
+                }
+            }, REQUEST_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            String[] args;
+            try {
+                args = readRequest(client);
+            } finally {
+                deadline.cancel(false);
+            }
+            Snapshot response = new Snapshot();
+            try {
+                try (response) {
+                    execute(args, new DataOutputStream(response));
+                }
+                OutputStream clientOut = Channels.newOutputStream(client);
+                response.copyTo(clientOut);
+                clientOut.flush();
+            } finally {
+                response.delete();
+            }
+        } catch (EOFException e) {
+            // Closed without a request: a client checking that the daemon is up.
+        } catch (IOException e) {
+            System.err.println("Request failed: " + e.getMessage());  // The client went away. Keep serving.
+        }
+    }
+
+    private static String[] readRequest(SocketChannel client) throws IOException {
+        DataInputStream request = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+        String[] args = new String[request.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            byte[] bytes = new byte[request.readInt()];
+            request.readFully(bytes);
+            args[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return args;
+    }
+
+    // Runs a command and writes its whole response.
+    private void execute(String[] args, DataOutputStream response) throws IOException {
+        int exitCode;
+        try (PrintStream commandOut = new PrintStream(new BufferedOutputStream(new FrameOutputStream(response, OUT), FRAME_BUFFER_BYTES),
+                false, StandardCharsets.UTF_8);
+             PrintStream commandErr = new PrintStream(new FrameOutputStream(response, ERR), true, StandardCharsets.UTF_8)) {
+            commandLock.lock();
+            out.target.set(commandOut);
+            err.target.set(commandErr);
+            try {
+                if (args.length > 0 && args[0].equals("daemon")) {
+                    exitCode = daemonCommand(args);
+                } else {
+                    beforeCommand.run();
+                    exitCode = cmd.execute(args);
+                }
+            } finally {
+                cmd.getOut().flush();
+                cmd.getErr().flush();
+                out.target.remove();
+                err.target.remove();
+                commandLock.unlock();
+            }
+        }
+        response.writeByte(EXIT);
+        response.writeInt(Integer.BYTES);
+        response.writeInt(exitCode);
+        response.flush();
+    }
+
+    // "daemon" commands sent by clients are about this daemon.
+    private int daemonCommand(String[] args) {
+        if (args.length > 1 && args[1].equals("--stop")) {
+            stop();
+            System.out.println("Daemon stopped");
+        } else {
+            System.out.println("Daemon already running on " + socketPath);
+        }
+        return 0;
+    }
+
+    // System.out or System.err of the daemon: writes to the stream of the command of the current thread, if any, and
+    // to the standard one otherwise. Used through a PrintStream that does not buffer, so every write reaches the stream
+    // of the thread that made it.
+    private static class ThreadOutputStream extends OutputStream {
+        private final ThreadLocal<OutputStream> target = new ThreadLocal<>();
+        private volatile PrintStream standard;
+
+        @Override
+        public void write(int b) throws IOException {
+            stream().write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            stream().write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            stream().flush();
+        }
+
+        private OutputStream stream() {
+            OutputStream stream = target.get();
+            return stream == null ? standard : stream;
+        }
+    }
+
+    // Writes everything as frames of one type. Closing it does not close the response.
+    private static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream response;
+        private final byte type;
+
+        FrameOutputStream(DataOutputStream response, byte type) {
+            this.response = response;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) return;
+            synchronized (response) {
+                response.writeByte(type);
+                response.writeInt(length);
+                response.write(bytes, offset, length);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (response) {
+                response.flush();
+            }
+        }
+    }
+}
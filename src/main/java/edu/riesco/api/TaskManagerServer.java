@@ -0,0 +1,292 @@
+package edu.riesco.api;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.riesco.domain.DueDate;
+import edu.riesco.domain.NoDueDate;
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskBatch;
+import edu.riesco.domain.TaskDueDate;
+import edu.riesco.domain.TaskFilter;
+import edu.riesco.domain.TaskManager;
+import edu.riesco.domain.TaskStatus;
+import edu.riesco.domain.Today;
+import edu.riesco.exception.EmptyRepositoryException;
+import edu.riesco.exception.ModelException;
+import edu.riesco.exception.OverdueException;
+import edu.riesco.exception.TaskNotFoundException;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+// HTTP/JSON API of a TaskManager, for local services. Every request runs in its own virtual thread.
+//
+//   GET    /tasks                  Tasks as a JSON array.
+//                                  Query: status=PENDING|COMPLETED, due-before=YYYY-MM-DD, overdue=true
+//   POST   /tasks                  New task from {"title", "description", "dueDate"}. 201 with the task
+//   GET    /tasks/{id}             Task
+//   PATCH  /tasks/{id}             Changes the given fields of {"title", "description", "dueDate"}.
+//                                  A null or empty dueDate removes it
+//   POST   /tasks/{id}/complete    Marks the task as completed
+//   POST   /tasks/{id}/pending     Marks the task as pending
+//   DELETE /tasks/{id}             204
+//
+// Tasks are written as by Task.toJson() with their "id" first. Errors are {"error": message}, with 404 for unknown
+// tasks and 400 for invalid requests.
+class TaskManagerServer {
+    private static final String TASKS = "/tasks";
+    private static final String JSON = "application/json; charset=utf-8";
+
+    static {
+        // Small responses otherwise wait for the delayed ACK of the previous one (Nagle), about 40 ms each.
+        // Read once, when the first server is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final TaskManager taskManager;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // Writes to the socket of HttpServer are synchronized: a virtual thread blocked on a slow client stays pinned to
+    // its carrier, and with as many of them as cores no other request runs. Lists are written from platform threads
+    // instead, while the virtual thread of their request waits unpinned.
+    private final ExecutorService writers = Executors.newCachedThreadPool();
+
+    // Port 0 picks a free port. Only the loopback address is bound.
+    TaskManagerServer(TaskManager taskManager, int port) throws IOException {
+        this.taskManager = taskManager;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(TASKS, this::handle);
+        server.setExecutor(executor);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    // Waits up to "delaySeconds" for the requests in progress.
+    void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.close();
+        writers.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath().substring(TASKS.length());
+            String method = exchange.getRequestMethod();
+            try {
+                if (path.isEmpty() || path.equals("/")) {
+                    switch (method) {
+                        case "GET" -> list(exchange);
+                        case "POST" -> add(exchange);
+                        default -> error(exchange, 405, "Method not allowed: " + method);
+                    }
+                } else {
+                    String[] parts = path.split("/");  // "", ID and action
+                    if (parts.length < 2 || parts.length > 3 || !parts[0].isEmpty() || parts[1].isEmpty()) {
+                        error(exchange, 404, "Not found");
+                        return;
+                    }
+                    int id = Integer.parseInt(parts[1]);
+                    String action = parts.length == 3 ? parts[2] : "";
+                    switch (method + " " + action) {
+                        case "GET " -> sendTask(exchange, 200, id, taskManager.taskById(id));
+                        case "PATCH " -> update(exchange, id);
+                        case "DELETE " -> {
+                            taskManager.deleteTask(id);
+                            exchange.sendResponseHeaders(204, -1);
+                        }
+                        case "POST complete" -> {
+                            taskManager.markAsComplete(id);
+                            sendTask(exchange, 200, id, taskManager.taskById(id));
+                        }
+                        case "POST pending" -> {
+                            taskManager.markAsPending(id);
+                            sendTask(exchange, 200, id, taskManager.taskById(id));
+                        }
+                        default -> error(exchange, 405, "Not supported: " + method + " " + path);
+                    }
+                }
+            } catch (TaskNotFoundException | EmptyRepositoryException e) {
+                error(exchange, 404, e.getMessage());
+            } catch (ModelException | OverdueException | DateTimeException | IllegalArgumentException
+                     | JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+                // NumberFormatException is an IllegalArgumentException, Gson getAsString() the last two.
+                error(exchange, 400, e.getMessage());
+            } catch (RuntimeException e) {
+                error(exchange, 500, e.getMessage());
+            }
+        }
+    }
+
+    // The whole list is written to a Snapshot first, as the store stays locked while its tasks are streamed.
+    private void list(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange);
+        if (query.isEmpty()) {
+            Snapshot snapshot = new Snapshot();
+            try {
+                try (Stream<Map.Entry<Integer, Task>> tasks = taskManager.streamTasksWithIds()) {
+                    writeTasks(snapshot, tasks.iterator());
+                }
+                exchange.getResponseHeaders().set("Content-Type", JSON);
+                exchange.sendResponseHeaders(200, snapshot.size());
+                writeBody(() -> snapshot.copyTo(exchange.getResponseBody()));
+            } finally {
+                snapshot.delete();
+            }
+        } else {
+            TaskFilter filter = TaskFilter.all();
+            if (query.containsKey("status")) filter = filter.withStatus(TaskStatus.valueOf(query.get("status")));
+            if (query.containsKey("due-before")) filter = filter.withDueBefore(DueDate.of(query.get("due-before")));
+            if (Boolean.parseBoolean(query.get("overdue"))) filter = filter.overdue(Today.now());
+            sendTasks(exchange, taskManager.findTasks(filter).entrySet().iterator());
+        }
+    }
+
+    private void add(HttpExchange exchange) throws IOException {
+        JsonObject body = body(exchange);
+        TaskDueDate dueDate = dueDate(body);
+        int id = taskManager.addTask(string(body, "title"), string(body, "description"),
+                dueDate == null ? new NoDueDate() : dueDate);
+        sendTask(exchange, 201, id, taskManager.taskById(id));
+    }
+
+    private void update(HttpExchange exchange, int id) throws IOException {
+        JsonObject body = body(exchange);
+        TaskBatch batch = taskManager.batch();
+        if (body.has("title")) batch.updateTaskTitle(id, string(body, "title"));
+        if (body.has("description")) batch.updateTaskDescription(id, string(body, "description"));
+        if (body.has("dueDate")) {
+            TaskDueDate dueDate = dueDate(body);
+            batch.updateTaskDueDate(id, dueDate == null ? new NoDueDate() : dueDate);
+        }
+        batch.commit();
+        sendTask(exchange, 200, id, taskManager.taskById(id));
+    }
+
+    // Chunked, so that the tasks are written while they are read.
+    private void sendTasks(HttpExchange exchange, Iterator<Map.Entry<Integer, Task>> tasks) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, 0);
+        writeBody(() -> writeTasks(exchange.getResponseBody(), tasks));
+    }
+
+    // Runs "body" in one of the writers, and waits for it.
+    private void writeBody(BodyWriter body) throws IOException {
+        Future<?> written = writers.submit(() -> {
+            body.write();
+            return null;
+        });
+        try {
+            written.get();
+        } catch (InterruptedException e) {
+            written.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the response");
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case IOException cause -> throw cause;
+                case RuntimeException cause -> throw cause;
+                case Error cause -> throw cause;
+                default -> throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface BodyWriter {
+        void write() throws IOException;
+    }
+
+    // As a JSON array. Closes "out".
+    private static void writeTasks(OutputStream out, Iterator<Map.Entry<Integer, Task>> tasks) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            writer.write('[');
+            for (boolean first = true; tasks.hasNext(); first = false) {
+                Map.Entry<Integer, Task> task = tasks.next();
+                if (!first) writer.write(',');
+                writer.write(json(task.getKey(), task.getValue()));
+            }
+            writer.write(']');
+        }
+    }
+
+    private static void sendTask(HttpExchange exchange, int status, int id, Task task) throws IOException {
+        send(exchange, status, json(id, task));
+    }
+
+    private static void error(HttpExchange exchange, int status, String message) throws IOException {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        send(exchange, status, error.toString());
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    // The JSON of Task.toJson() with the ID as first field.
+    private static String json(int id, Task task) {
+        return "{\"id\":" + id + "," + task.toJson().substring(1);
+    }
+
+    private static JsonObject body(HttpExchange exchange) throws IOException {
+        try (Reader in = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            JsonElement body = JsonParser.parseReader(in);
+            if (!body.isJsonObject()) throw new IllegalArgumentException("Request body must be a JSON object");
+            return body.getAsJsonObject();
+        }
+    }
+
+    // Null if the field is missing or null.
+    private static String string(JsonObject body, String field) {
+        JsonElement value = body.get(field);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+
+    // Null if the field is missing, null or empty.
+    private static TaskDueDate dueDate(JsonObject body) {
+        String dueDate = string(body, "dueDate");
+        return dueDate == null || dueDate.isEmpty() ? null : DueDate.of(dueDate);
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return parameters;
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = equals < 0 ? parameter : parameter.substring(0, equals);
+            String value = equals < 0 ? "true" : parameter.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+}
@@ -2,29 +2,62 @@ package edu.riesco.domain;
 
 import java.time.LocalDate;
 
+// Stored as a day count since 1970-01-01, so overdue checks are a comparison of two numbers.
 public class DueDate implements TaskDueDate {
-    private final LocalDate dueDate;
+    private final long epochDay;
 
     public DueDate(int year, int month, int day) {
-        this.dueDate = LocalDate.of(year, month, day);
+        this.epochDay = LocalDate.of(year, month, day).toEpochDay();
+    }
+
+    private DueDate(long epochDay) {
+        this.epochDay = epochDay;
     }
 
     static public DueDate of(int year, int month, int day) {
         return new DueDate(year, month, day);
     }
 
+    // Dates in the usual YYYY-MM-DD form are read without a DateTimeFormatter. Anything else goes through
+    // LocalDate.parse(), which throws DateTimeParseException for invalid dates.
     static public DueDate of(String date) {
-        LocalDate parsedDueDate = LocalDate.parse(date);
-        return new DueDate(parsedDueDate.getYear(), parsedDueDate.getMonthValue(), parsedDueDate.getDayOfMonth());
+        if (date.length() == 10 && date.charAt(4) == '-' && date.charAt(7) == '-') {
+            int year = digits(date, 0, 4);
+            int month = digits(date, 5, 7);
+            int day = digits(date, 8, 10);
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= LocalDate.of(year, month, 1).lengthOfMonth()) {
+                return new DueDate(year, month, day);
+            }
+        }
+        return new DueDate(LocalDate.parse(date).toEpochDay());
+    }
+
+    static public DueDate ofEpochDay(long epochDay) {
+        return new DueDate(epochDay);
+    }
+
+    public long epochDay() {
+        return epochDay;
     }
 
     @Override
     public String printableDueDate() {
-        return dueDate.toString();
+        return LocalDate.ofEpochDay(epochDay).toString();
     }
 
     @Override
-    public boolean isOverdue() {
-        return dueDate.isBefore(LocalDate.now());
+    public boolean isOverdue(Today today) {
+        return epochDay < today.epochDay();
+    }
+
+    // Value of the decimal digits in date[from, to), or -1 if there is something else.
+    private static int digits(String date, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = date.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
     }
 }
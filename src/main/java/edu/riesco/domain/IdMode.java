@@ -0,0 +1,10 @@
+package edu.riesco.domain;
+
+// How a repository numbers its tasks.
+public enum IdMode {
+    // The Task ID is the Task position in the repository: deleting a task renumbers every task after it.
+    POSITIONAL,
+    // Every task keeps the ID it got when it was created. IDs grow by one with every new task and are not reused
+    // after a delete.
+    STABLE
+}
@@ -0,0 +1,342 @@
+package edu.riesco.domain;
+
+import edu.riesco.exception.EmptyRepositoryException;
+import edu.riesco.exception.TaskNotFoundException;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+// Keeps secondary indexes over another repository for TaskManager.findTasks(): a bitmap of completed task IDs
+// and the IDs of the tasks due each day, sorted by day. Queries combine them without reading every task.
+// TaskManager.searchTasks() uses a SearchIndex of the words in the tasks.
+// Each index is built from the repository by its first query and, from then on, kept up to date by every
+// create/update/delete made through this object. If the repository tells when it changes (changeStamp()), as a
+// file that other processes write, the indexes are dropped and built again by the next query after a change made
+// by someone else. Our writes check the stamp before they change the repository and record it after, within
+// TaskRepository.exclusive(), so that no change made by someone else falls in between if the repository can lock
+// its tasks; if it can not, such a change is not seen until the repository changes again. Queries read the tasks
+// they found within exclusive() too, and find and read them again while the stamp moves.
+// Index updates are serialized by a lock. Before any index is built, changes go straight to the repository.
+final class IndexedTaskRepository implements TaskRepository {
+    private static final long NO_DUE_DAY = Long.MIN_VALUE;
+    private static final int MAX_READS = 3;  // Of the tasks found by a query, while someone else changes them
+
+    private final TaskRepository taskRepository;
+    private boolean built;
+    private final BitSet live = new BitSet();  // Task IDs, which start in 1
+    private final BitSet completed = new BitSet();
+    private final TreeMap<Long, BitSet> idsByDueDay = new TreeMap<>();
+    private long[] dueDays = new long[16];  // By task ID, to find the old entry on updates
+    private SearchIndex searchIndex;  // null until the first search
+    private Object stamp;  // Change stamp of the repository when the indexes were last in step with it
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    IndexedTaskRepository(TaskRepository taskRepository) {
+        this.taskRepository = taskRepository;
+    }
+
+    // Matching tasks by ID, in ID order.
+    SortedMap<Integer, Task> find(TaskFilter filter) {
+        return read(() -> findIds(filter).stream().boxed().toList(), TreeMap::new, filter::matches);
+    }
+
+    // Tasks that contain any of the words, best matches first.
+    Map<Integer, Task> search(String query, int limit) {
+        List<String> words = SearchIndex.words(query);
+        return read(() -> searchIds(query, limit), LinkedHashMap::new, task -> containsAny(task, words));
+    }
+
+    // Reads the tasks with the IDs that "find" gets from the indexes, with the indexes locked and the repository
+    // within exclusive(), so that the IDs are still those of the tasks found. Tasks deleted meanwhile by someone else,
+    // if the repository can not lock them, are left out. If it changed, they are found and read again, up to
+    // MAX_READS times, and then those that no longer "match" are left out.
+    private <M extends Map<Integer, Task>> M read(Supplier<List<Integer>> find, Supplier<M> newTasks,
+                                                  Predicate<Task> matches) {
+        lock.writeLock().lock();
+        try {
+            return taskRepository.exclusive(() -> {
+                for (int reads = 1; ; reads++) {
+                    List<Integer> ids = find.get();
+                    Object foundStamp = stamp;
+                    M tasks = newTasks.get();
+                    for (int id : ids) {
+                        try {
+                            tasks.put(id, taskRepository.getById(id));
+                        } catch (TaskNotFoundException | EmptyRepositoryException e) {
+                            // Deleted
+                        }
+                    }
+                    if (Objects.equals(taskRepository.changeStamp(), foundStamp)) return tasks;
+                    if (reads == MAX_READS) {
+                        tasks.values().removeIf(matches.negate());
+                        return tasks;
+                    }
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // IDs of the matching tasks. Called with the lock taken.
+    private BitSet findIds(TaskFilter filter) {
+        checkStamp();
+        if (!built) build();
+        BitSet ids;
+        if (filter.hasDueDateCondition()) {
+            ids = new BitSet();
+            if (filter.dueFromDay() < filter.dueBeforeDay()) {
+                idsByDueDay.subMap(filter.dueFromDay(), filter.dueBeforeDay()).values().forEach(ids::or);
+            }
+        } else {
+            ids = (BitSet) live.clone();
+        }
+        if (filter.status() == TaskStatus.COMPLETED) ids.and(completed);
+        if (filter.status() == TaskStatus.PENDING) ids.andNot(completed);
+        return ids;
+    }
+
+    // IDs of the tasks that contain the words, best matches first. Called with the lock taken.
+    private List<Integer> searchIds(String query, int limit) {
+        checkStamp();
+        if (searchIndex == null) {
+            SearchIndex newIndex = new SearchIndex(taskRepository.idMode());
+            try (Stream<Map.Entry<Integer, Task>> tasks = taskRepository.streamWithIds()) {
+                tasks.forEachOrdered(task -> newIndex.add(task.getKey(), task.getValue()));
+            }
+            searchIndex = newIndex;
+        }
+        return searchIndex.search(query, limit);
+    }
+
+    private static boolean containsAny(Task task, List<String> words) {
+        List<String> taskWords = new ArrayList<>(SearchIndex.words(task.getTitle()));
+        taskWords.addAll(SearchIndex.words(task.getDescription()));
+        return words.stream().anyMatch(taskWords::contains);
+    }
+
+    @Override
+    public int create(Task task) {
+        Integer unindexedId = unindexed(() -> taskRepository.create(task));
+        if (unindexedId != null) return unindexedId;
+        lock.writeLock().lock();
+        try {
+            return taskRepository.exclusive(() -> {
+                checkStamp();
+                int id = taskRepository.create(task);
+                if (built) put(id, task);
+                if (searchIndex != null) searchIndex.add(id, task);
+                stamp = taskRepository.changeStamp();
+                return id;
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int createAll(List<Task> tasks) {
+        Integer unindexedId = unindexed(() -> taskRepository.createAll(tasks));
+        if (unindexedId != null) return unindexedId;
+        lock.writeLock().lock();
+        try {
+            return taskRepository.exclusive(() -> {
+                checkStamp();
+                int lastId = taskRepository.createAll(tasks);
+                int id = lastId - tasks.size();  // New tasks get consecutive IDs in both ID modes.
+                for (Task task : tasks) {
+                    id++;
+                    if (built) put(id, task);
+                    if (searchIndex != null) searchIndex.add(id, task);
+                }
+                stamp = taskRepository.changeStamp();
+                return lastId;
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public IdMode idMode() {
+        return taskRepository.idMode();
+    }
+
+    @Override
+    public Stream<Map.Entry<Integer, Task>> streamWithIds() {
+        return taskRepository.streamWithIds();
+    }
+
+    @Override
+    public List<Task> getAll() {
+        return taskRepository.getAll();
+    }
+
+    @Override
+    public Stream<Task> stream() {
+        return taskRepository.stream();
+    }
+
+    @Override
+    public Task getById(int id) {
+        return taskRepository.getById(id);
+    }
+
+    @Override
+    public void update(int id, Task newTask) {
+        updateAll(Map.of(id, newTask));
+    }
+
+    @Override
+    public void updateAll(Map<Integer, Task> newTasks) {
+        if (unindexed(() -> {
+            taskRepository.updateAll(newTasks);
+            return 0;
+        }) != null) return;
+        Map<Integer, UnaryOperator<Task>> edits = new TreeMap<>();
+        newTasks.forEach((id, task) -> edits.put(id, oldTask -> task));
+        editAll(edits);
+    }
+
+    // The edits are wrapped to see the old and new tasks, which the indexes need.
+    @Override
+    public void editAll(Map<Integer, UnaryOperator<Task>> edits) {
+        if (unindexed(() -> {
+            taskRepository.editAll(edits);
+            return 0;
+        }) != null) return;
+        lock.writeLock().lock();
+        try {
+            taskRepository.exclusive(() -> {
+                checkStamp();
+                Map<Integer, Task> oldTasks = new HashMap<>();
+                Map<Integer, Task> newTasks = new HashMap<>();
+                Map<Integer, UnaryOperator<Task>> seenEdits = new TreeMap<>();
+                edits.forEach((id, edit) -> seenEdits.put(id, oldTask -> {
+                    Task newTask = edit.apply(oldTask);
+                    oldTasks.put(id, oldTask);
+                    newTasks.put(id, newTask);
+                    return newTask;
+                }));
+                taskRepository.editAll(seenEdits);
+                newTasks.forEach((id, newTask) -> {
+                    if (built) {
+                        removeDueDay(id);
+                        put(id, newTask);
+                    }
+                    if (searchIndex != null) searchIndex.replace(id, oldTasks.get(id), newTask);
+                });
+                stamp = taskRepository.changeStamp();
+                return null;
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // With positional IDs, the IDs after the deleted task go down by one.
+    @Override
+    public void delete(int id) {
+        if (unindexed(() -> {
+            taskRepository.delete(id);
+            return 0;
+        }) != null) return;
+        lock.writeLock().lock();
+        try {
+            taskRepository.exclusive(() -> {
+                checkStamp();
+                Task oldTask = searchIndex == null ? null : taskRepository.getById(id);
+                taskRepository.delete(id);
+                stamp = taskRepository.changeStamp();
+                if (searchIndex != null) searchIndex.remove(id, oldTask);
+                if (built) removeIndexed(id);
+                return null;
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Removes a deleted task from the status and due date indexes.
+    private void removeIndexed(int id) {
+        removeDueDay(id);
+        if (taskRepository.idMode() == IdMode.STABLE) {
+            live.clear(id);
+            completed.clear(id);
+            return;
+        }
+        int lastId = live.length() - 1;
+        removeBit(live, id);
+        removeBit(completed, id);
+        for (BitSet ids : idsByDueDay.values()) {
+            if (ids.length() > id) removeBit(ids, id);
+        }
+        System.arraycopy(dueDays, id + 1, dueDays, id, lastId - id);
+    }
+
+    // Runs a change while there are no indexes, and returns its result, or null if there are indexes to update.
+    // Changes without indexes only share the lock, so they run as concurrently as the repository allows;
+    // building an index waits for them to finish.
+    private Integer unindexed(Supplier<Integer> change) {
+        lock.readLock().lock();
+        try {
+            if (built || searchIndex != null) return null;
+            return change.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Drops the indexes if someone else changed the repository since they were last in step with it, so that they
+    // are built again when needed. Called with the lock taken.
+    private void checkStamp() {
+        Object current = taskRepository.changeStamp();
+        if (current != null && !current.equals(stamp)) {
+            built = false;
+            live.clear();
+            completed.clear();
+            idsByDueDay.clear();
+            dueDays = new long[16];
+            searchIndex = null;
+        }
+        stamp = current;
+    }
+
+    private void build() {
+        try (Stream<Map.Entry<Integer, Task>> tasks = taskRepository.streamWithIds()) {
+            tasks.forEachOrdered(task -> put(task.getKey(), task.getValue()));
+        }
+        built = true;
+    }
+
+    // Indexes the task with the given ID, which is either new (past the last ID) or removed from the due
+    // date index just before.
+    private void put(int id, Task task) {
+        if (id >= dueDays.length) dueDays = Arrays.copyOf(dueDays, Math.max(2 * dueDays.length, id + 1));
+        live.set(id);
+        completed.set(id, task.getStatus() == TaskStatus.COMPLETED);
+        long dueDay = task.getDueDate() instanceof DueDate dueDate ? dueDate.epochDay() : NO_DUE_DAY;
+        dueDays[id] = dueDay;
+        if (dueDay != NO_DUE_DAY) idsByDueDay.computeIfAbsent(dueDay, day -> new BitSet()).set(id);
+    }
+
+    private void removeDueDay(int id) {
+        long dueDay = dueDays[id];
+        if (dueDay == NO_DUE_DAY) return;
+        BitSet ids = idsByDueDay.get(dueDay);
+        ids.clear(id);
+        if (ids.isEmpty()) idsByDueDay.remove(dueDay);
+    }
+
+    // Clears a bit and moves every higher bit down by one.
+    private static void removeBit(BitSet bits, int bit) {
+        BitSet higher = bits.get(bit + 1, Math.max(bit + 1, bits.length()));
+        bits.clear(bit, Math.max(bit, bits.length()));
+        higher.stream().forEach(i -> bits.set(bit + i));
+    }
+}
@@ -0,0 +1,139 @@
+package edu.riesco.domain;
+
+import edu.riesco.metrics.Metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+// Times every operation of another repository, as "repository.<operation>" in Metrics. Streams are timed from
+// the call until they are closed, as they read the tasks while they are consumed.
+// TaskManager puts one in front of every repository, so any repository is measured without changes.
+final class MeteredTaskRepository implements TaskRepository {
+    private static final Metrics.Timer CREATE = Metrics.timer("repository.create");
+    private static final Metrics.Timer CREATE_ALL = Metrics.timer("repository.createAll");
+    private static final Metrics.Timer GET_ALL = Metrics.timer("repository.getAll");
+    private static final Metrics.Timer STREAM = Metrics.timer("repository.stream");
+    private static final Metrics.Timer GET_BY_ID = Metrics.timer("repository.getById");
+    private static final Metrics.Timer UPDATE = Metrics.timer("repository.update");
+    private static final Metrics.Timer UPDATE_ALL = Metrics.timer("repository.updateAll");
+    private static final Metrics.Timer EDIT_ALL = Metrics.timer("repository.editAll");
+    private static final Metrics.Timer DELETE = Metrics.timer("repository.delete");
+
+    private final TaskRepository taskRepository;
+
+    MeteredTaskRepository(TaskRepository taskRepository) {
+        this.taskRepository = taskRepository;
+    }
+
+    @Override
+    public IdMode idMode() {
+        return taskRepository.idMode();
+    }
+
+    @Override
+    public Object changeStamp() {
+        return taskRepository.changeStamp();
+    }
+
+    @Override
+    public <T> T exclusive(Supplier<T> change) {
+        return taskRepository.exclusive(change);
+    }
+
+    @Override
+    public int create(Task task) {
+        long start = CREATE.start();
+        try {
+            return taskRepository.create(task);
+        } finally {
+            CREATE.stop(start);
+        }
+    }
+
+    @Override
+    public int createAll(List<Task> tasks) {
+        long start = CREATE_ALL.start();
+        try {
+            return taskRepository.createAll(tasks);
+        } finally {
+            CREATE_ALL.stop(start);
+        }
+    }
+
+    @Override
+    public List<Task> getAll() {
+        long start = GET_ALL.start();
+        try {
+            return taskRepository.getAll();
+        } finally {
+            GET_ALL.stop(start);
+        }
+    }
+
+    @Override
+    public Stream<Task> stream() {
+        return timed(STREAM.start(), taskRepository.stream());
+    }
+
+    @Override
+    public Stream<Map.Entry<Integer, Task>> streamWithIds() {
+        return timed(STREAM.start(), taskRepository.streamWithIds());
+    }
+
+    @Override
+    public Task getById(int id) {
+        long start = GET_BY_ID.start();
+        try {
+            return taskRepository.getById(id);
+        } finally {
+            GET_BY_ID.stop(start);
+        }
+    }
+
+    @Override
+    public void update(int id, Task newTask) {
+        long start = UPDATE.start();
+        try {
+            taskRepository.update(id, newTask);
+        } finally {
+            UPDATE.stop(start);
+        }
+    }
+
+    @Override
+    public void updateAll(Map<Integer, Task> newTasks) {
+        long start = UPDATE_ALL.start();
+        try {
+            taskRepository.updateAll(newTasks);
+        } finally {
+            UPDATE_ALL.stop(start);
+        }
+    }
+
+    @Override
+    public void editAll(Map<Integer, UnaryOperator<Task>> edits) {
+        long start = EDIT_ALL.start();
+        try {
+            taskRepository.editAll(edits);
+        } finally {
+            EDIT_ALL.stop(start);
+        }
+    }
+
+    @Override
+    public void delete(int id) {
+        long start = DELETE.start();
+        try {
+            taskRepository.delete(id);
+        } finally {
+            DELETE.stop(start);
+        }
+    }
+
+    private static <T> Stream<T> timed(long start, Stream<T> stream) {
+        return start == 0 ? stream : stream.onClose(() -> STREAM.stop(start));
+    }
+}
@@ -7,7 +7,7 @@ public class NoDueDate implements TaskDueDate {
     }
 
     @Override
-    public boolean isOverdue() {
+    public boolean isOverdue(Today today) {
         return false;
     }
 }
@@ -0,0 +1,205 @@
+package edu.riesco.domain;
+
+import java.util.*;
+
+// Inverted index from words to the tasks that contain them, in the title or the description.
+// Words are runs of letters and digits, compared in lower case.
+// Every task has a document number that does not change while the task exists. With stable IDs it is the
+// task ID. With positional IDs, documents are numbered in task ID order, so the task ID of a document is its
+// position among the documents that still exist.
+// Postings are not searched to remove a document: every document has a version, which removing or changing it
+// increases, and postings of older versions are skipped by searches and dropped once they are most of a list.
+final class SearchIndex {
+    private static final int TITLE_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private final boolean positional;
+    private final Map<String, Postings> postings = new HashMap<>();
+    private int[] documentsById = new int[16];  // Position 0 is the document of task 1. Ascending.
+    private int[] versions = new int[16];  // By document
+    private int count;
+    private int nextDocument;
+
+    // Documents containing a word, in no particular order, with the weight of the word in each of them and the
+    // version of the document they were added for.
+    private static final class Postings {
+        private int[] documents = new int[4];
+        private int[] weights = new int[4];
+        private int[] versions = new int[4];
+        private int size;  // Postings of older versions included
+        private int live;
+
+        void add(int document, int weight, int version) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+                versions = Arrays.copyOf(versions, size * 2);
+            }
+            documents[size] = document;
+            weights[size] = weight;
+            versions[size++] = version;
+            live++;
+        }
+
+        // One posting less is of the current version. Once they are less than half, the others are dropped.
+        void removed(int[] currentVersions) {
+            if (--live * 2 >= size) return;
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (versions[i] != currentVersions[documents[i]]) continue;
+                documents[kept] = documents[i];
+                weights[kept] = weights[i];
+                versions[kept++] = versions[i];
+            }
+            size = kept;
+        }
+    }
+
+    SearchIndex(IdMode idMode) {
+        this.positional = idMode == IdMode.POSITIONAL;
+    }
+
+    // Indexes a task appended at the end of the repository.
+    void add(int id, Task task) {
+        int document = positional ? nextDocument : id;
+        if (positional) {
+            if (count == documentsById.length) documentsById = Arrays.copyOf(documentsById, count * 2);
+            documentsById[count] = document;
+        }
+        count++;
+        nextDocument = Math.max(nextDocument, document) + 1;
+        if (nextDocument > versions.length) versions = Arrays.copyOf(versions, Math.max(2 * versions.length, nextDocument));
+        addWords(document, task);
+    }
+
+    // Changes of the status or the due date only are not indexed.
+    void replace(int id, Task oldTask, Task newTask) {
+        if (oldTask.getTitle().equals(newTask.getTitle()) && oldTask.getDescription().equals(newTask.getDescription())) {
+            return;
+        }
+        int document = document(id);
+        removeWords(document, oldTask);
+        addWords(document, newTask);
+    }
+
+    // With positional IDs, the IDs after the removed task go down by one.
+    void remove(int id, Task oldTask) {
+        removeWords(document(id), oldTask);
+        if (positional) System.arraycopy(documentsById, id, documentsById, id - 1, count - id);
+        count--;
+    }
+
+    private int document(int id) {
+        return positional ? documentsById[id - 1] : id;
+    }
+
+    private int id(int document) {
+        return positional ? Arrays.binarySearch(documentsById, 0, count, document) + 1 : document;
+    }
+
+    // IDs of the tasks that contain any of the words in the query, best matches first, up to "limit" of them.
+    // A task scores the weight of every query word it contains (title words weigh more than description words),
+    // scaled by how rare the word is.
+    List<Integer> search(String query, int limit) {
+        float[] scores = new float[nextDocument];
+        BitSet matched = new BitSet(nextDocument);
+        for (String word : new LinkedHashSet<>(words(query))) {
+            Postings found = postings.get(word);
+            if (found == null) continue;
+            float rarity = (float) Math.log(1 + (double) count / found.live);
+            for (int i = 0; i < found.size; i++) {
+                if (found.versions[i] != versions[found.documents[i]]) continue;
+                scores[found.documents[i]] += found.weights[i] * rarity;
+                matched.set(found.documents[i]);
+            }
+        }
+        // Best "limit" documents, in a min-heap of document numbers ordered by better().
+        int[] best = new int[Math.max(0, Math.min(limit, matched.cardinality()))];
+        int size = 0;
+        for (int document = matched.nextSetBit(0); document >= 0 && best.length > 0; document = matched.nextSetBit(document + 1)) {
+            if (size < best.length) {
+                best[size] = document;
+                siftUp(best, size++, scores);
+            } else if (better(document, best[0], scores)) {
+                best[0] = document;
+                siftDown(best, size, scores);
+            }
+        }
+        Integer[] ids = new Integer[size];
+        while (size > 0) {
+            ids[size - 1] = id(best[0]);
+            best[0] = best[--size];
+            siftDown(best, size, scores);
+        }
+        return Arrays.asList(ids);
+    }
+
+    // Higher score first; ties go to the lower document number, which is the lower ID.
+    private static boolean better(int document, int other, float[] scores) {
+        return scores[document] > scores[other] || scores[document] == scores[other] && document < other;
+    }
+
+    private static void siftUp(int[] heap, int position, float[] scores) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!better(heap[parent], heap[position], scores)) return;
+            swap(heap, parent, position);
+            position = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        int position = 0;
+        while (2 * position + 1 < size) {
+            int child = 2 * position + 1;
+            if (child + 1 < size && better(heap[child], heap[child + 1], scores)) child++;
+            if (!better(heap[position], heap[child], scores)) return;
+            swap(heap, position, child);
+            position = child;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int temporary = heap[i];
+        heap[i] = heap[j];
+        heap[j] = temporary;
+    }
+
+    private void addWords(int document, Task task) {
+        int version = versions[document];
+        weights(task).forEach((word, weight) ->
+                postings.computeIfAbsent(word, w -> new Postings()).add(document, weight, version));
+    }
+
+    // The postings of the task become of an older version.
+    private void removeWords(int document, Task task) {
+        versions[document]++;
+        for (String word : weights(task).keySet()) {
+            Postings found = postings.get(word);
+            found.removed(versions);
+            if (found.live == 0) postings.remove(word);
+        }
+    }
+
+    private static Map<String, Integer> weights(Task task) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String word : words(task.getTitle())) weights.merge(word, TITLE_WEIGHT, Integer::sum);
+        for (String word : words(task.getDescription())) weights.merge(word, DESCRIPTION_WEIGHT, Integer::sum);
+        return weights;
+    }
+
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordCharacter && start < 0) {
+                start = i;
+            } else if (!wordCharacter && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
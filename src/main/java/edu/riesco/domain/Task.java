@@ -1,17 +1,14 @@
 package edu.riesco.domain;
 
-import com.google.gson.*;
 import edu.riesco.exception.ModelException;
 import edu.riesco.exception.OverdueException;
 
-import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 
 
 public final class Task {
     public static final String TITLE_CAN_NOT_BE_BLANK = "Title can not be blank";
     public static final String DATE_IS_OVERDUE = "Date is overdue";
-    private static final Gson gson = new GsonBuilder()
-            .registerTypeHierarchyAdapter(TaskDueDate.class, new TaskDueDateTypeAdapter()).create();
     // Read-only object.
     private final String title;
     private final String description;
@@ -44,19 +41,24 @@ public final class Task {
         return new Task(title, description, dueDate, status);
     }
 
+    // Stored tasks are not checked for overdue dates, as they may have become overdue after being saved.
     public static Task fromJson(String json) {
-        try {
-            Task task = gson.fromJson(json, Task.class);
-            assertTitleIsNotBlank(task.title);
-            assertDateIsNotOverDue(task.dueDate);
-            return task;
-        } catch (JsonParseException | NullPointerException e) {
-            throw new IllegalArgumentException("Invalid JSON string", e);
-        }
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return TaskJson.read(bytes, 0, bytes.length);
+    }
+
+    // Same as above, for the UTF-8 bytes json[from, to).
+    public static Task fromJson(byte[] json, int from, int to) {
+        return TaskJson.read(json, from, to);
     }
 
     public String toJson() {
-        return gson.toJson(this);
+        return new String(TaskJson.write(this), StandardCharsets.UTF_8);
+    }
+
+    // UTF-8 bytes of toJson().
+    public byte[] toJsonBytes() {
+        return TaskJson.write(this);
     }
 
     public String getTitle() {
@@ -67,6 +69,10 @@ public final class Task {
         return description;
     }
 
+    public TaskDueDate getDueDate() {
+        return dueDate;
+    }
+
     public String getPrintableDueDate() {
         if (dueDate == null) {
             return "";
@@ -75,6 +81,14 @@ public final class Task {
         }
     }
 
+    public boolean isOverdue() {
+        return isOverdue(Today.now());
+    }
+
+    public boolean isOverdue(Today today) {
+        return dueDate != null && dueDate.isOverdue(today);
+    }
+
     public TaskStatus getStatus() {
         return status;
     }
@@ -95,19 +109,3 @@ public final class Task {
         return Task.from(title, description, newDueDate);
     }
 }
-
-class TaskDueDateTypeAdapter implements JsonSerializer<TaskDueDate>, JsonDeserializer<TaskDueDate> {
-
-    @Override
-    public JsonElement serialize(final TaskDueDate date, final Type typeOfSrc,
-                                 final JsonSerializationContext context) {
-        return new JsonPrimitive(date.printableDueDate());
-    }
-
-    @Override
-    public TaskDueDate deserialize(final JsonElement json, final Type typeOfT,
-                                   final JsonDeserializationContext context) throws JsonParseException {
-        String jsonElement = json.getAsString();
-        return jsonElement.isEmpty() ? new NoDueDate() : DueDate.of(jsonElement);
-    }
-}
\ No newline at end of file
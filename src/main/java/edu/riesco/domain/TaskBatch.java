@@ -0,0 +1,49 @@
+package edu.riesco.domain;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+
+// Several edits to one or many tasks, saved to the repository at once by commit().
+// The tasks are read, and the edits applied to them, only by commit(): edits made by other threads before it are
+// kept, and a task that is not found or an edit that fails leaves the repository untouched.
+public final class TaskBatch {
+    private final TaskRepository taskRepository;
+    private final Map<Integer, UnaryOperator<Task>> edits = new TreeMap<>();
+
+    TaskBatch(TaskRepository taskRepository) {
+        this.taskRepository = taskRepository;
+    }
+
+    public TaskBatch markAsComplete(int id) {
+        return edit(id, task -> task.withStatus(TaskStatus.COMPLETED));
+    }
+
+    public TaskBatch markAsPending(int id) {
+        return edit(id, task -> task.withStatus(TaskStatus.PENDING));
+    }
+
+    public TaskBatch updateTaskTitle(int id, String newTitle) {
+        return edit(id, task -> task.withTitle(newTitle));
+    }
+
+    public TaskBatch updateTaskDescription(int id, String newDescription) {
+        return edit(id, task -> task.withDescription(newDescription));
+    }
+
+    public TaskBatch updateTaskDueDate(int id, TaskDueDate newDueDate) {
+        return edit(id, task -> task.withDueDate(newDueDate));
+    }
+
+    public void commit() {
+        if (edits.isEmpty()) return;
+        taskRepository.editAll(edits);
+        edits.clear();
+    }
+
+    // Edits of the same task are applied on top of each other.
+    private TaskBatch edit(int id, UnaryOperator<Task> edit) {
+        edits.merge(id, edit, (previous, next) -> oldTask -> next.apply(previous.apply(oldTask)));
+        return this;
+    }
+}
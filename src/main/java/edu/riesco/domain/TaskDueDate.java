@@ -4,5 +4,9 @@ public interface TaskDueDate {
 
     String printableDueDate();
 
-    boolean isOverdue();
+    boolean isOverdue(Today today);
+
+    default boolean isOverdue() {
+        return isOverdue(Today.now());
+    }
 }
@@ -0,0 +1,64 @@
+package edu.riesco.domain;
+
+// Conditions for TaskManager.findTasks(). All of them must hold. Read-only object.
+// Tasks with no due date never match a due date condition.
+public final class TaskFilter {
+    private static final TaskFilter ALL = new TaskFilter(null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+    private final TaskStatus status;  // null for any status
+    private final long dueFromDay;  // Inclusive, as an epoch day
+    private final long dueBeforeDay;  // Exclusive, as an epoch day
+
+    private TaskFilter(TaskStatus status, long dueFromDay, long dueBeforeDay) {
+        this.status = status;
+        this.dueFromDay = dueFromDay;
+        this.dueBeforeDay = dueBeforeDay;
+    }
+
+    public static TaskFilter all() {
+        return ALL;
+    }
+
+    public TaskFilter withStatus(TaskStatus newStatus) {
+        return new TaskFilter(newStatus, dueFromDay, dueBeforeDay);
+    }
+
+    // Due on or after the date.
+    public TaskFilter withDueFrom(DueDate date) {
+        return new TaskFilter(status, date.epochDay(), dueBeforeDay);
+    }
+
+    // Due before the date.
+    public TaskFilter withDueBefore(DueDate date) {
+        return new TaskFilter(status, dueFromDay, date.epochDay());
+    }
+
+    // Due before today.
+    public TaskFilter overdue(Today today) {
+        return new TaskFilter(status, dueFromDay, Math.min(dueBeforeDay, today.epochDay()));
+    }
+
+    // Whether the task meets every condition.
+    boolean matches(Task task) {
+        if (status != null && task.getStatus() != status) return false;
+        if (!hasDueDateCondition()) return true;
+        return task.getDueDate() instanceof DueDate dueDate
+                && dueDate.epochDay() >= dueFromDay && dueDate.epochDay() < dueBeforeDay;
+    }
+
+    TaskStatus status() {
+        return status;
+    }
+
+    boolean hasDueDateCondition() {
+        return dueFromDay != Long.MIN_VALUE || dueBeforeDay != Long.MAX_VALUE;
+    }
+
+    long dueFromDay() {
+        return dueFromDay;
+    }
+
+    long dueBeforeDay() {
+        return dueBeforeDay;
+    }
+}
@@ -0,0 +1,410 @@
+package edu.riesco.domain;
+
+import edu.riesco.metrics.Metrics;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+// Reads and writes the JSON of a task straight from and to UTF-8 bytes, without reflection or a JSON tree.
+// The output is the same, byte for byte, as the one of Gson: {"title":..,"description":..,"dueDate":..,"status":..}
+// in this order, without the due date if it is null, and with Gson's escapes, including the HTML ones.
+// The input may have the fields in any order, white space and other fields, which are skipped.
+final class TaskJson {
+    private static final byte[] TITLE = bytes("title");
+    private static final byte[] DESCRIPTION = bytes("description");
+    private static final byte[] DUE_DATE = bytes("dueDate");
+    private static final byte[] STATUS = bytes("status");
+    private static final byte[][] STATUSES = Arrays.stream(TaskStatus.values()).map(status -> bytes(status.name()))
+            .toArray(byte[][]::new);
+    private static final byte[] HEX = bytes("0123456789abcdef");
+    private static final int MAX_DEPTH = 64;  // Containers in the values of unknown fields
+    private static final int INITIAL_BUFFER_BYTES = 128;
+    private static final Metrics.Counter TASKS_PARSED = Metrics.counter("json.tasks.parsed");
+    private static final Metrics.Counter BYTES_PARSED = Metrics.counter("json.bytes.parsed");
+    private static final Metrics.Counter TASKS_WRITTEN = Metrics.counter("json.tasks.written");
+    private static final Metrics.Counter BYTES_WRITTEN = Metrics.counter("json.bytes.written");
+
+    private TaskJson() {
+    }
+
+    // Syntax errors throw IllegalArgumentException, and invalid tasks the exceptions of Task.from().
+    static Task read(byte[] json, int from, int to) {
+        TASKS_PARSED.add(1);
+        BYTES_PARSED.add(to - from);
+        return new Reader(json, from, to).task();
+    }
+
+    static byte[] write(Task task) {
+        Writer out = new Writer();
+        out.raw((byte) '{');
+        out.field(TITLE, task.getTitle());
+        out.raw((byte) ',');
+        out.field(DESCRIPTION, task.getDescription());
+        if (task.getDueDate() instanceof DueDate dueDate) {
+            out.raw((byte) ',');
+            out.date(DUE_DATE, LocalDate.ofEpochDay(dueDate.epochDay()));
+        } else if (task.getDueDate() != null) {
+            out.raw((byte) ',');
+            out.field(DUE_DATE, task.getDueDate().printableDueDate());
+        }
+        out.raw((byte) ',');
+        out.field(STATUS, task.getStatus().name());
+        out.raw((byte) '}');
+        byte[] bytes = out.toByteArray();
+        TASKS_WRITTEN.add(1);
+        BYTES_WRITTEN.add(bytes.length);
+        return bytes;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final class Reader {
+        private final byte[] json;
+        private final int end;
+        private int position;
+        private StringBuilder unescaped;  // Only for strings with escapes
+
+        Reader(byte[] json, int from, int to) {
+            this.json = json;
+            this.position = from;
+            this.end = to;
+        }
+
+        Task task() {
+            String title = null;
+            String description = null;
+            TaskDueDate dueDate = null;
+            TaskStatus status = null;
+            expect('{');
+            if (peek() == '}') {
+                position++;
+            } else {
+                do {
+                    int nameStart = expectString();
+                    int nameEnd = position - 1;
+                    expect(':');
+                    if (is(nameStart, nameEnd, TITLE)) {
+                        title = stringOrNull();
+                    } else if (is(nameStart, nameEnd, DESCRIPTION)) {
+                        description = stringOrNull();
+                    } else if (is(nameStart, nameEnd, DUE_DATE)) {
+                        dueDate = dueDateOrNull();
+                    } else if (is(nameStart, nameEnd, STATUS)) {
+                        status = statusOrNull();
+                    } else {
+                        skipValue(0);
+                    }
+                } while (next(',', '}') == ',');
+            }
+            if (peek() != -1) throw error("Unexpected content after the task");
+            return Task.from(title, description, dueDate, status);
+        }
+
+        private String stringOrNull() {
+            if (literal("null")) return null;
+            int start = expectString();
+            return string(start, position - 1);
+        }
+
+        // "YYYY-MM-DD" is read from the bytes. Other dates are left to DueDate.of().
+        private TaskDueDate dueDateOrNull() {
+            if (literal("null")) return null;
+            int start = expectString();
+            int length = position - 1 - start;
+            if (length == 0) return new NoDueDate();
+            if (length == 10 && json[start + 4] == '-' && json[start + 7] == '-') {
+                int year = digits(start, start + 4);
+                int month = digits(start + 5, start + 7);
+                int day = digits(start + 8, start + 10);
+                if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= LocalDate.of(year, month, 1).lengthOfMonth()) {
+                    return DueDate.of(year, month, day);
+                }
+            }
+            return DueDate.of(string(start, position - 1));
+        }
+
+        private TaskStatus statusOrNull() {
+            if (literal("null")) return null;
+            int start = expectString();
+            for (int i = 0; i < STATUSES.length; i++) {
+                if (is(start, position - 1, STATUSES[i])) return TaskStatus.values()[i];
+            }
+            throw error("Invalid status " + string(start, position - 1));
+        }
+
+        private int digits(int from, int to) {
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                if (json[i] < '0' || json[i] > '9') return -1;
+                value = value * 10 + (json[i] - '0');
+            }
+            return value;
+        }
+
+        // Skips a string. Returns the position after its opening quote; it ends before the current position.
+        private int expectString() {
+            expect('"');
+            int start = position;
+            while (position < end) {
+                byte current = json[position++];
+                if (current == '"') return start;
+                if (current == '\\') position++;  // The escaped byte may be a quote
+            }
+            throw error("Unterminated string");
+        }
+
+        // UTF-8 never uses the bytes of '"' or '\' inside multibyte characters, so escapes are found byte by byte.
+        private String string(int start, int stop) {
+            int escape = indexOf('\\', start, stop);
+            if (escape < 0) return new String(json, start, stop - start, StandardCharsets.UTF_8);
+            if (unescaped == null) unescaped = new StringBuilder();
+            unescaped.setLength(0);
+            int segment = start;
+            while (escape >= 0) {
+                unescaped.append(new String(json, segment, escape - segment, StandardCharsets.UTF_8));
+                int i = escape + 1;
+                if (i >= stop) throw error("Unterminated escape");
+                switch (json[i]) {
+                    case '"', '\\', '/' -> unescaped.append((char) json[i]);
+                    case 'b' -> unescaped.append('\b');
+                    case 'f' -> unescaped.append('\f');
+                    case 'n' -> unescaped.append('\n');
+                    case 'r' -> unescaped.append('\r');
+                    case 't' -> unescaped.append('\t');
+                    case 'u' -> {
+                        if (i + 4 >= stop) throw error("Unterminated escape");
+                        unescaped.append((char) hex(i + 1, i + 5));
+                        i += 4;
+                    }
+                    default -> throw error("Invalid escape \\" + (char) json[i]);
+                }
+                segment = i + 1;
+                escape = indexOf('\\', segment, stop);
+            }
+            unescaped.append(new String(json, segment, stop - segment, StandardCharsets.UTF_8));
+            return unescaped.toString();
+        }
+
+        private int hex(int from, int to) {
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = Character.digit(json[i], 16);
+                if (digit < 0) throw error("Invalid escape");
+                value = value * 16 + digit;
+            }
+            return value;
+        }
+
+        // Values of other fields, such as the "id" of tasks with stable IDs. "depth" is the number of containers
+        // the value is in, limited so that deeply nested input is an error and not a StackOverflowError.
+        private void skipValue(int depth) {
+            switch (peek()) {
+                case '"' -> expectString();
+                case '{' -> skipContainer('{', '}', true, depth + 1);
+                case '[' -> skipContainer('[', ']', false, depth + 1);
+                default -> {
+                    int start = position;
+                    while (position < end && isLiteral(json[position])) position++;
+                    if (position == start) throw error("Value expected");
+                }
+            }
+        }
+
+        private void skipContainer(char open, char close, boolean object, int depth) {
+            if (depth > MAX_DEPTH) throw error("Values nested too deep");
+            expect(open);
+            if (peek() == close) {
+                position++;
+                return;
+            }
+            do {
+                if (object) {
+                    expectString();
+                    expect(':');
+                }
+                skipValue(depth);
+            } while (next(',', close) == ',');
+        }
+
+        private static boolean isLiteral(byte b) {
+            return b >= '0' && b <= '9' || b >= 'a' && b <= 'z' || b == '-' || b == '+' || b == '.' || b == 'E';
+        }
+
+        private boolean literal(String literal) {
+            if (peek() != literal.charAt(0)) return false;
+            if (end - position < literal.length()) throw error("Value expected");
+            for (int i = 0; i < literal.length(); i++) {
+                if (json[position + i] != literal.charAt(i)) throw error("Value expected");
+            }
+            position += literal.length();
+            return true;
+        }
+
+        private boolean is(int start, int stop, byte[] expected) {
+            return Arrays.equals(json, start, stop, expected, 0, expected.length);
+        }
+
+        private int indexOf(char c, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (json[i] == c) return i;
+            }
+            return -1;
+        }
+
+        // Next byte that is not white space, without consuming it, or -1 at the end.
+        private int peek() {
+            while (position < end) {
+                byte current = json[position];
+                if (current != ' ' && current != '\t' && current != '\n' && current != '\r') return current;
+                position++;
+            }
+            return -1;
+        }
+
+        private void expect(char c) {
+            if (peek() != c) throw error("'" + c + "' expected");
+            position++;
+        }
+
+        private int next(char one, char other) {
+            int current = peek();
+            if (current != one && current != other) throw error("'" + one + "' or '" + other + "' expected");
+            position++;
+            return current;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid JSON string: " + message + " at " + position);
+        }
+    }
+
+    private static final class Writer {
+        private byte[] buffer = new byte[INITIAL_BUFFER_BYTES];
+        private int size;
+
+        void raw(byte b) {
+            ensure(1);
+            buffer[size++] = b;
+        }
+
+        void field(byte[] name, String value) {
+            ensure(name.length + 3);
+            buffer[size++] = '"';
+            System.arraycopy(name, 0, buffer, size, name.length);
+            size += name.length;
+            buffer[size++] = '"';
+            buffer[size++] = ':';
+            string(value);
+        }
+
+        // "YYYY-MM-DD" written from the numbers. Other years have other forms, left to LocalDate.toString().
+        void date(byte[] name, LocalDate date) {
+            if (date.getYear() < 0 || date.getYear() > 9999) {
+                field(name, date.toString());
+                return;
+            }
+            ensure(name.length + 15);
+            buffer[size++] = '"';
+            System.arraycopy(name, 0, buffer, size, name.length);
+            size += name.length;
+            buffer[size++] = '"';
+            buffer[size++] = ':';
+            buffer[size++] = '"';
+            digits(date.getYear(), 4);
+            buffer[size++] = '-';
+            digits(date.getMonthValue(), 2);
+            buffer[size++] = '-';
+            digits(date.getDayOfMonth(), 2);
+            buffer[size++] = '"';
+        }
+
+        private void digits(int value, int count) {
+            for (int i = count - 1; i >= 0; i--) {
+                buffer[size + i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            size += count;
+        }
+
+        // UTF-8 with the escapes of Gson. Unpaired surrogates become '?', as in String.getBytes().
+        private void string(String value) {
+            ensure(value.length() + 2);
+            buffer[size++] = '"';
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    if (c < 0x20 || c == '"' || c == '\\' || c == '<' || c == '>' || c == '&' || c == '=' || c == '\'') {
+                        escape(c);
+                    } else {
+                        ensure(1);
+                        buffer[size++] = (byte) c;
+                    }
+                } else if (c < 0x800) {
+                    ensure(2);
+                    buffer[size++] = (byte) (0xC0 | c >> 6);
+                    buffer[size++] = (byte) (0x80 | c & 0x3F);
+                } else if (c == '\u2028' || c == '\u2029') {
+                    unicodeEscape(c);
+                } else if (Character.isSurrogate(c)) {
+                    if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                        ensure(4);
+                        buffer[size++] = (byte) (0xF0 | codePoint >> 18);
+                        buffer[size++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                        buffer[size++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                        buffer[size++] = (byte) (0x80 | codePoint & 0x3F);
+                    } else {
+                        raw((byte) '?');
+                    }
+                } else {
+                    ensure(3);
+                    buffer[size++] = (byte) (0xE0 | c >> 12);
+                    buffer[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    buffer[size++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+            raw((byte) '"');
+        }
+
+        private void escape(char c) {
+            char escaped = switch (c) {
+                case '"' -> '"';
+                case '\\' -> '\\';
+                case '\t' -> 't';
+                case '\b' -> 'b';
+                case '\n' -> 'n';
+                case '\r' -> 'r';
+                case '\f' -> 'f';
+                default -> 0;
+            };
+            if (escaped == 0) {
+                unicodeEscape(c);
+            } else {
+                ensure(2);
+                buffer[size++] = '\\';
+                buffer[size++] = (byte) escaped;
+            }
+        }
+
+        private void unicodeEscape(char c) {
+            ensure(6);
+            buffer[size++] = '\\';
+            buffer[size++] = 'u';
+            buffer[size++] = HEX[c >> 12];
+            buffer[size++] = HEX[c >> 8 & 0xF];
+            buffer[size++] = HEX[c >> 4 & 0xF];
+            buffer[size++] = HEX[c & 0xF];
+        }
+
+        private void ensure(int bytes) {
+            if (size + bytes > buffer.length) buffer = Arrays.copyOf(buffer, Math.max(size + bytes, 2 * buffer.length));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+}
@@ -1,19 +1,32 @@
 package edu.riesco.domain;
 
+import edu.riesco.exception.OverdueException;
 import edu.riesco.exception.TaskNotFoundException;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public class TaskManager {
-    private final TaskRepository taskRepository;
+    private static final int IMPORT_BATCH = 10_000;
+
+    private final IndexedTaskRepository taskRepository;
 
     public TaskManager(TaskRepository taskRepository) {
-        this.taskRepository = taskRepository;
+        this.taskRepository = new IndexedTaskRepository(new MeteredTaskRepository(taskRepository));
     }
 
     public boolean hasTasks() {
-        return !taskRepository.getAll().isEmpty();
+        try (Stream<Task> tasks = taskRepository.stream()) {
+            return tasks.findAny().isPresent();
+        }
     }
 
     public boolean hasTask(int id) {
@@ -35,6 +48,62 @@ public class TaskManager {
         return taskRepository.create(newTask);
     }
 
+    // Tasks as JSON, in the format written by Task.toJson(), checked like new tasks. If any of them is not valid, no
+    // task is saved. Returns the ID of the last task.
+    public int importTasks(List<String> tasksAsJson) {
+        return importTasks(tasksAsJson::stream).lastId();
+    }
+
+    public record ImportResult(long tasks, int lastId) {
+    }
+
+    // Tasks as JSON lines, read twice from "tasksAsJson" and IMPORT_BATCH lines at a time, so that the heap needed
+    // does not grow with the input. First every line is checked, so that no task is saved if any of them is not
+    // valid, then the tasks are saved a batch at a time. The lines of a batch are parsed in parallel.
+    // If the store fails while saving, the batches saved before stay saved.
+    public ImportResult importTasks(Supplier<Stream<String>> tasksAsJson) {
+        Today today = Today.now();
+        forEachBatch(tasksAsJson, today, batch -> {
+        });
+        long[] imported = {0};
+        int[] lastId = {0};
+        forEachBatch(tasksAsJson, today, batch -> {
+            lastId[0] = taskRepository.createAll(batch);
+            imported[0] += batch.size();
+        });
+        return new ImportResult(imported[0], lastId[0]);
+    }
+
+    private static void forEachBatch(Supplier<Stream<String>> tasksAsJson, Today today, Consumer<List<Task>> action) {
+        try (Stream<String> lines = tasksAsJson.get()) {
+            Iterator<String> iterator = lines.iterator();
+            List<String> batch = new ArrayList<>(IMPORT_BATCH);
+            int firstLine = 1;
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() < IMPORT_BATCH && iterator.hasNext()) continue;
+                int first = firstLine;
+                List<Task> tasks = IntStream.range(0, batch.size()).parallel()
+                        .filter(i -> !batch.get(i).isBlank())
+                        .mapToObj(i -> parseTask(batch.get(i), first + i, today))
+                        .collect(Collectors.toList());
+                if (!tasks.isEmpty()) action.accept(tasks);
+                firstLine += batch.size();
+                batch.clear();
+            }
+        }
+    }
+
+    private static Task parseTask(String taskAsJson, int line, Today today) {
+        try {
+            Task task = Task.fromJson(taskAsJson);
+            if (task.isOverdue(today)) throw new OverdueException(Task.DATE_IS_OVERDUE);
+            return task;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid task at line " + line + ": " + e.getMessage(), e);
+        }
+    }
+
     public Task taskById(int id) {
         return taskRepository.getById(id);
     }
@@ -47,6 +116,44 @@ public class TaskManager {
         return taskRepository.getAll().stream().map(Task::toJson).collect(Collectors.toList());
     }
 
+    // Streams must be closed after use (try-with-resources).
+    public Stream<Task> streamTasks() {
+        return taskRepository.stream();
+    }
+
+    // Tasks with their IDs (ID -> Task), in ID order.
+    public Stream<Map.Entry<Integer, Task>> streamTasksWithIds() {
+        return taskRepository.streamWithIds();
+    }
+
+    public Stream<String> streamTasksAsJson() {
+        return taskRepository.stream().map(Task::toJson);
+    }
+
+    // Matching tasks by ID, in ID order. Found through the status and due date indexes.
+    public SortedMap<Integer, Task> findTasks(TaskFilter filter) {
+        return taskRepository.find(filter);
+    }
+
+    public SortedMap<Integer, Task> tasksWithStatus(TaskStatus status) {
+        return findTasks(TaskFilter.all().withStatus(status));
+    }
+
+    // Due on or after "from" and before "before".
+    public SortedMap<Integer, Task> tasksDueBetween(DueDate from, DueDate before) {
+        return findTasks(TaskFilter.all().withDueFrom(from).withDueBefore(before));
+    }
+
+    public SortedMap<Integer, Task> overdueTasks() {
+        return findTasks(TaskFilter.all().overdue(Today.now()));
+    }
+
+    // Tasks with any of the words in the query in their title or description, best matches first (ID -> Task).
+    // Found through an index of words, built by the first search.
+    public Map<Integer, Task> searchTasks(String query, int limit) {
+        return taskRepository.search(query, limit);
+    }
+
     // Tasks are read-only
     public String getTaskTitle(int id) {
         return taskRepository.getById(id).getTitle();
@@ -68,33 +175,28 @@ public class TaskManager {
     // As Task object is immutable, all this "update" commands create a new Task with the new data.
 
     public void markAsComplete(int id) {
-        Task task = taskRepository.getById(id);
-        Task newTask = task.withStatus(TaskStatus.COMPLETED);
-        taskRepository.update(id, newTask);
+        batch().markAsComplete(id).commit();
     }
 
     public void markAsPending(int id) {
-        Task task = taskRepository.getById(id);
-        Task newTask = task.withStatus(TaskStatus.PENDING);
-        taskRepository.update(id, newTask);
+        batch().markAsPending(id).commit();
     }
 
     public void updateTaskTitle(int id, String newTitle) {
-        Task task = taskRepository.getById(id);
-        Task newTask = task.withTitle(newTitle);
-        taskRepository.update(id, newTask);
+        batch().updateTaskTitle(id, newTitle).commit();
     }
 
     public void updateTaskDescription(int id, String newDescription) {
-        Task task = taskRepository.getById(id);
-        Task newTask = task.withDescription(newDescription);
-        taskRepository.update(id, newTask);
+        batch().updateTaskDescription(id, newDescription).commit();
     }
 
     public void updateTaskDueDate(int id, TaskDueDate newDueDate) {
-        Task task = taskRepository.getById(id);
-        Task newTask = task.withDueDate(newDueDate);
-        taskRepository.update(id, newTask);
+        batch().updateTaskDueDate(id, newDueDate).commit();
+    }
+
+    // Collects several updates, to one or many tasks, and saves them all at once.
+    public TaskBatch batch() {
+        return new TaskBatch(taskRepository);
     }
 
     public void deleteTask(int id) {
@@ -1,20 +1,75 @@
 package edu.riesco.domain;
 
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 
-// The Tasks ID will be the Task position in the repository.
+// By default the Tasks ID will be the Task position in the repository. Repositories with IdMode.STABLE keep the ID
+// of each task instead.
 public interface TaskRepository {
 
+    default IdMode idMode() {
+        return IdMode.POSITIONAL;
+    }
+
+    // Something that changes, compared with equals(), whenever the tasks change, also when someone else changes
+    // them, as another process writing the same file. null if the tasks only change through this object.
+    default Object changeStamp() {
+        return null;
+    }
+
+    // Runs "change", which calls this repository, with the tasks locked against changes made by anyone else, if the
+    // repository can lock them, so that changeStamp() only changes within it by the calls it makes.
+    default <T> T exclusive(Supplier<T> change) {
+        return change.get();
+    }
+
     // Append at the end.
     int create(Task task);
 
+    // Append several tasks at the end. Returns the ID of the last one.
+    default int createAll(List<Task> tasks) {
+        int id = 0;
+        for (Task task : tasks) id = create(task);
+        return id;
+    }
+
     List<Task> getAll();
 
+    // All tasks in ID order, read as the stream is consumed so they are never all in memory at once.
+    // The stream may keep the repository open: close it (try-with-resources) when done.
+    default Stream<Task> stream() {
+        return getAll().stream();
+    }
+
+    // Same as stream(), with the ID of each task (ID -> Task).
+    default Stream<Map.Entry<Integer, Task>> streamWithIds() {
+        int[] id = {0};
+        return stream().map(task -> Map.entry(++id[0], task));
+    }
+
     Task getById(int id);
 
     // Create a new Task (Tasks are immutable objects) and save it in the same position to preserve the old ID.
     void update(int id, Task newTask);
 
+    // Several updates (ID -> new Task) saved together. Every ID is checked before anything is saved.
+    default void updateAll(Map<Integer, Task> newTasks) {
+        newTasks.keySet().forEach(this::getById);
+        newTasks.forEach(this::update);
+    }
+
+    // Replaces each task with the result of its edit (ID -> edit of the current task) and saves them like updateAll().
+    // Thread-safe repositories read and save the tasks in one atomic step, so concurrent edits are not lost.
+    default void editAll(Map<Integer, UnaryOperator<Task>> edits) {
+        Map<Integer, Task> newTasks = new TreeMap<>();
+        edits.forEach((id, edit) -> newTasks.put(id, edit.apply(getById(id))));
+        updateAll(newTasks);
+    }
+
     void delete(int id);
 }
@@ -0,0 +1,37 @@
+package edu.riesco.domain;
+
+import java.time.Clock;
+import java.time.LocalDate;
+
+// The current date, read once from the clock and reused for every overdue check of a command or request,
+// so that listing many tasks does not look up the clock and time zone once per task.
+// The clock can be replaced (for example, with a fixed one in tests).
+public final class Today {
+    private static volatile Clock clock = Clock.systemDefaultZone();
+
+    private final long epochDay;
+
+    private Today(long epochDay) {
+        this.epochDay = epochDay;
+    }
+
+    public static Today now() {
+        return new Today(LocalDate.now(clock).toEpochDay());
+    }
+
+    public static Today of(LocalDate date) {
+        return new Today(date.toEpochDay());
+    }
+
+    public static void useClock(Clock newClock) {
+        clock = newClock;
+    }
+
+    public static void useSystemClock() {
+        clock = Clock.systemDefaultZone();
+    }
+
+    public long epochDay() {
+        return epochDay;
+    }
+}
@@ -0,0 +1,91 @@
+package edu.riesco.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Histogram of durations in nanoseconds with log-linear buckets, as in HdrHistogram: every power of two is split
+// into SUB_BUCKETS buckets, so any value is counted with an error under 1 / SUB_BUCKETS (about 3%) and a fixed
+// amount of memory. Values below SUB_BUCKETS have a bucket each. Values of 2^MAX_EXPONENT ns (18 minutes) or more
+// go to the last bucket. Thread-safe; the buckets are allocated by the first record.
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private volatile AtomicLongArray counts;
+    private final LongAdder sum = new LongAdder();
+
+    public void record(long nanos) {
+        AtomicLongArray buckets = counts;
+        if (buckets == null) buckets = allocate();
+        buckets.incrementAndGet(bucket(Math.max(0, nanos)));
+        sum.add(nanos);
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        AtomicLongArray buckets = counts;
+        if (buckets != null) for (int i = 0; i < BUCKETS; i++) copy[i] = buckets.get(i);
+        return new Snapshot(copy, sum.sum());
+    }
+
+    private synchronized AtomicLongArray allocate() {
+        if (counts == null) counts = new AtomicLongArray(BUCKETS);
+        return counts;
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent >= MAX_EXPONENT) return BUCKETS - 1;
+        int mantissa = (int) (nanos >>> (exponent - SUB_BUCKET_BITS));  // SUB_BUCKETS to 2 * SUB_BUCKETS - 1
+        return (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + mantissa;
+    }
+
+    // Highest value counted in the bucket.
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    // Counts at one moment. Snapshots taken before and after something give its own histogram with minus().
+    public record Snapshot(long[] counts, long sum) {
+
+        public long count() {
+            long count = 0;
+            for (long bucketCount : counts) count += bucketCount;
+            return count;
+        }
+
+        public double mean() {
+            long count = count();
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        // Highest value of the bucket that holds the given fraction (0 to 1) of the values. 0 if there are none.
+        public long percentile(double fraction) {
+            long count = count();
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return highestValue(i);
+            }
+            return highestValue(counts.length - 1);
+        }
+
+        public long max() {
+            return percentile(1);
+        }
+
+        public Snapshot minus(Snapshot earlier) {
+            long[] difference = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) difference[i] = counts[i] - earlier.counts[i];
+            return new Snapshot(difference, sum - earlier.sum);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package edu.riesco.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Timers and counters of what this process does, kept in memory. They are off until setEnabled(true), and then
+// a timer costs two System.nanoTime() calls and a counter one addition. While off, both cost a field read.
+// Timers and counters are created once, as constants of the classes that use them, and live for the whole process:
+//
+//   private static final Metrics.Timer GET_BY_ID = Metrics.timer("repository.getById");
+//   long start = GET_BY_ID.start();
+//   ...
+//   GET_BY_ID.stop(start);
+public final class Metrics {
+    private static final ConcurrentMap<String, Timer> TIMERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static volatile boolean enabled;
+
+    private Metrics() {
+    }
+
+    public static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, Timer::new);
+    }
+
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, Counter::new);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    public static Snapshot snapshot() {
+        Map<String, LatencyHistogram.Snapshot> timers = new TreeMap<>();
+        TIMERS.forEach((name, timer) -> timers.put(name, timer.histogram.snapshot()));
+        Map<String, Long> counters = new TreeMap<>();
+        COUNTERS.forEach((name, counter) -> counters.put(name, counter.value.sum()));
+        return new Snapshot(timers, counters);
+    }
+
+    public static final class Timer {
+        private final String name;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        // 0 if metrics are off, so stop() does nothing.
+        public long start() {
+            return enabled ? System.nanoTime() : 0;
+        }
+
+        public void stop(long start) {
+            if (start != 0) histogram.record(System.nanoTime() - start);
+        }
+
+        // A duration measured by the caller.
+        public void record(long nanos) {
+            if (enabled) histogram.record(nanos);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public static final class Counter {
+        private final String name;
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        public void add(long amount) {
+            if (enabled) value.add(amount);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    // Timers and counters by name, in name order. format() leaves out the ones that have not counted anything.
+    public record Snapshot(Map<String, LatencyHistogram.Snapshot> timers, Map<String, Long> counters) {
+
+        // What was counted since "earlier" was taken.
+        public Snapshot minus(Snapshot earlier) {
+            Map<String, LatencyHistogram.Snapshot> timerDifferences = new TreeMap<>();
+            timers.forEach((name, histogram) -> {
+                LatencyHistogram.Snapshot before = earlier.timers.get(name);
+                timerDifferences.put(name, before == null ? histogram : histogram.minus(before));
+            });
+            Map<String, Long> counterDifferences = new TreeMap<>();
+            counters.forEach((name, value) -> counterDifferences.put(name, value - earlier.counters.getOrDefault(name, 0L)));
+            return new Snapshot(timerDifferences, counterDifferences);
+        }
+
+        public boolean isEmpty() {
+            return timers.values().stream().allMatch(histogram -> histogram.count() == 0)
+                    && counters.values().stream().allMatch(value -> value == 0);
+        }
+
+        // A table of the timers and one of the counters, one line each.
+        public String format() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("%-28s %8s %10s %10s %10s %10s %10s%n",
+                    "Operation", "Count", "Total", "Mean", "p50", "p99", "Max"));
+            timers.forEach((name, histogram) -> {
+                if (histogram.count() == 0) return;
+                out.append(String.format("%-28s %8d %10s %10s %10s %10s %10s%n", name, histogram.count(),
+                        duration(histogram.sum()), duration(Math.round(histogram.mean())),
+                        duration(histogram.percentile(0.5)), duration(histogram.percentile(0.99)),
+                        duration(histogram.max())));
+            });
+            out.append(String.format("%n%-28s %12s%n", "Counter", "Value"));
+            counters.forEach((name, value) -> {
+                if (value != 0) out.append(String.format("%-28s %12d%n", name, value));
+            });
+            return out.toString();
+        }
+
+        private static String duration(long nanos) {
+            if (nanos < 1_000) return nanos + " ns";
+            if (nanos < 1_000_000) return String.format(Locale.ROOT, "%.1f us", nanos / 1e3);
+            if (nanos < 1_000_000_000) return String.format(Locale.ROOT, "%.1f ms", nanos / 1e6);
+            return String.format(Locale.ROOT, "%.2f s", nanos / 1e9);
+        }
+    }
+}
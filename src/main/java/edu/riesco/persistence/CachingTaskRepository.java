@@ -0,0 +1,234 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.IdMode;
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskRepository;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+// Write-through cache of the tasks read by ID, in front of any repository. Tasks read with getById() and tasks
+// written through this object are kept in memory, least recently used first, and the oldest ones are dropped
+// when their estimated size goes over "maxBytes". getAll() and the streams are not cached.
+// Deleting a task with positional IDs drops the cached tasks after it, as their IDs change.
+// The whole cache is dropped when the change stamp of the repository changes, so changes made by someone else, as
+// another process writing the same file, are seen. A change made by someone else between one of our writes and the
+// check that follows it is not seen until the repository changes again.
+// Thread-safe if the repository is. Reads and writes of the repository are not serialized: a task read while
+// another thread writes through this object is returned but not cached, and tasks written while another write runs
+// are dropped instead of cached.
+public class CachingTaskRepository implements TaskRepository {
+    // Task, its strings and due date, the map entry and its key, without the characters.
+    private static final int TASK_BYTES = 160;
+
+    public record Stats(long hits, long misses, long evictions, int tasks, long bytes) {
+    }
+
+    private final TaskRepository taskRepository;
+    private final long maxBytes;
+    private final LinkedHashMap<Integer, Task> tasks = new LinkedHashMap<>(16, 0.75f, true);  // Access order
+    private Object stamp;  // TaskRepository.changeStamp() when last seen
+    private long version;  // Writes made through this object
+    private int writesInProgress;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public CachingTaskRepository(TaskRepository taskRepository, long maxBytes) {
+        this.taskRepository = taskRepository;
+        this.maxBytes = maxBytes;
+        this.stamp = taskRepository.changeStamp();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, tasks.size(), bytes);
+    }
+
+    @Override
+    public IdMode idMode() {
+        return taskRepository.idMode();
+    }
+
+    @Override
+    public Object changeStamp() {
+        return taskRepository.changeStamp();
+    }
+
+    @Override
+    public <T> T exclusive(Supplier<T> change) {
+        return taskRepository.exclusive(change);
+    }
+
+    @Override
+    public int create(Task task) {
+        return write(() -> taskRepository.create(task), (id, alone) -> cacheWritten(id, task, alone));
+    }
+
+    // IDs of existing tasks do not change, so nothing is dropped. The new tasks are not cached.
+    @Override
+    public int createAll(List<Task> newTasks) {
+        return write(() -> taskRepository.createAll(newTasks), (id, alone) -> {
+        });
+    }
+
+    @Override
+    public List<Task> getAll() {
+        return taskRepository.getAll();
+    }
+
+    @Override
+    public Stream<Task> stream() {
+        return taskRepository.stream();
+    }
+
+    @Override
+    public Stream<Map.Entry<Integer, Task>> streamWithIds() {
+        return taskRepository.streamWithIds();
+    }
+
+    @Override
+    public Task getById(int id) {
+        long readVersion;
+        synchronized (this) {
+            checkChanges();
+            Task task = tasks.get(id);
+            if (task != null) {
+                hits++;
+                return task;
+            }
+            misses++;
+            readVersion = version;
+        }
+        Task task = taskRepository.getById(id);
+        synchronized (this) {
+            if (version == readVersion) put(id, task);
+        }
+        return task;
+    }
+
+    @Override
+    public void update(int id, Task newTask) {
+        write(() -> {
+            taskRepository.update(id, newTask);
+            return null;
+        }, (ignored, alone) -> cacheWritten(id, newTask, alone));
+    }
+
+    @Override
+    public void updateAll(Map<Integer, Task> newTasks) {
+        write(() -> {
+            taskRepository.updateAll(newTasks);
+            return null;
+        }, (ignored, alone) -> newTasks.forEach((id, task) -> cacheWritten(id, task, alone)));
+    }
+
+    // The new tasks are made by the repository, so they are dropped and read again when needed.
+    @Override
+    public void editAll(Map<Integer, UnaryOperator<Task>> edits) {
+        write(() -> {
+            taskRepository.editAll(edits);
+            return null;
+        }, (ignored, alone) -> edits.keySet().forEach(this::remove));
+    }
+
+    @Override
+    public void delete(int id) {
+        write(() -> {
+            taskRepository.delete(id);
+            return null;
+        }, (ignored, alone) -> {
+            if (taskRepository.idMode() == IdMode.STABLE) {
+                remove(id);
+            } else {
+                tasks.keySet().removeIf(cachedId -> cachedId >= id);
+                bytes = tasks.values().stream().mapToLong(CachingTaskRepository::size).sum();
+            }
+        });
+    }
+
+    // Runs a write of the repository and then, with the cache locked, "update" of the cache, which is told whether
+    // the write ran alone. Writes that ran at the same time as others through this object may have reached the
+    // repository in either order, so they drop the tasks they wrote instead of caching them.
+    // The cache is not locked during the write, so that concurrent writes can share a group commit.
+    private <T> T write(Supplier<T> write, CacheUpdate<T> update) {
+        checkChanges();
+        long startVersion;
+        synchronized (this) {
+            writesInProgress++;
+            startVersion = version;
+        }
+        T result = null;
+        boolean written = false;
+        try {
+            result = write.get();
+            written = true;
+        } finally {
+            synchronized (this) {
+                boolean alone = writesInProgress == 1 && version == startVersion;
+                writesInProgress--;
+                written();
+                if (written) update.apply(result, alone);
+            }
+        }
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface CacheUpdate<T> {
+        void apply(T result, boolean alone);
+    }
+
+    // Drops every task if the repository was changed by someone else.
+    private synchronized void checkChanges() {
+        Object current = taskRepository.changeStamp();
+        if (!Objects.equals(current, stamp)) {
+            tasks.clear();
+            bytes = 0;
+            stamp = current;
+        }
+    }
+
+    // After a write through this object: reads in progress are not cached, and the change is ours.
+    private void written() {
+        version++;
+        stamp = taskRepository.changeStamp();
+    }
+
+    // A task written through this object: cached if its write ran alone, and dropped otherwise.
+    private void cacheWritten(int id, Task task, boolean alone) {
+        if (alone) {
+            put(id, task);
+        } else {
+            remove(id);
+        }
+    }
+
+    private void put(int id, Task task) {
+        Task old = tasks.put(id, task);
+        if (old != null) bytes -= size(old);
+        bytes += size(task);
+        Iterator<Task> eldest = tasks.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= size(eldest.next());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private void remove(int id) {
+        Task old = tasks.remove(id);
+        if (old != null) bytes -= size(old);
+    }
+
+    // Estimated heap bytes, with two bytes per character.
+    private static long size(Task task) {
+        return TASK_BYTES + 2L * (task.getTitle().length() + task.getDescription().length());
+    }
+}
@@ -0,0 +1,162 @@
+package edu.riesco.persistence;
+
+import edu.riesco.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+// Reads and parses the lines of a big file with several threads, in file order. The file is split in chunks of whole
+// lines, found by looking for the line separator after every chunk-size offset. While the stream is consumed, up to
+// "threads" chunks ahead of it are read and parsed at the same time, each one in a virtual thread, so loading takes
+// about 1 / threads of the time, up to the number of cores. Only those chunks are in memory at once, and they are
+// fewer and smaller if they would take more than HEAP_SHARE of the maximum heap.
+// The file must not change until the stream is closed.
+final class ChunkedLineReader {
+    private static final int MIN_CHUNK_BYTES = 256 * 1024;
+    private static final int MAX_CHUNK_BYTES = 4 * 1024 * 1024;
+    private static final double HEAP_SHARE = 0.25;
+    private static final int HEAP_PER_CHUNK_BYTE = 4;  // The bytes of a chunk and the tasks parsed from them
+    private static final int SCAN_BYTES = 8 * 1024;
+    private static final Executor VIRTUAL_THREADS = runnable -> Thread.ofVirtual().name("load").start(runnable);
+    private static final Metrics.Counter BYTES_READ = Metrics.counter("file.bytes.read");
+
+    // Parses the line bytes[from, to), without its separator and trailing spaces.
+    @FunctionalInterface
+    interface LineParser<T> {
+        T parse(byte[] bytes, int from, int to);
+    }
+
+    private ChunkedLineReader() {
+    }
+
+    // The parsed lines, leaving out blank ones as String.isBlank() does. Read errors are thrown as
+    // UncheckedIOException.
+    static <T> Stream<T> lines(Path file, int threads, LineParser<T> parser) throws IOException {
+        long heapBytes = (long) (Runtime.getRuntime().maxMemory() * HEAP_SHARE);
+        long[] bounds;
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            bounds = boundaries(channel, channel.size(), chunkBytes(channel.size(), threads, heapBytes));
+        }
+        int ahead = chunksAhead(bounds, threads, heapBytes);
+        AtomicBoolean closed = new AtomicBoolean();
+        Iterator<List<T>> chunks = new Iterator<>() {
+            private final Deque<CompletableFuture<List<T>>> pending = new ArrayDeque<>(ahead);
+            private int next;  // Next chunk to start
+
+            @Override
+            public boolean hasNext() {
+                start();
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public List<T> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                try {
+                    return pending.remove().join();
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof RuntimeException cause) throw cause;
+                    throw e;
+                }
+            }
+
+            private void start() {
+                while (pending.size() < ahead && next < bounds.length - 1) {
+                    int chunk = next++;
+                    pending.add(CompletableFuture.supplyAsync(
+                            () -> parse(file, bounds[chunk], bounds[chunk + 1], parser, closed), VIRTUAL_THREADS));
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks, Spliterator.ORDERED), false)
+                .flatMap(List::stream)
+                .onClose(() -> closed.set(true));
+    }
+
+    // About 4 chunks per thread, within limits, and small enough for two of them, the one consumed and one ahead of
+    // it, to fit in "heapBytes".
+    static long chunkBytes(long size, int threads, long heapBytes) {
+        long fitting = heapBytes / (2L * HEAP_PER_CHUNK_BYTE);
+        return Math.max(MIN_CHUNK_BYTES, Math.min(Math.min(MAX_CHUNK_BYTES, fitting), size / (threads * 4L)));
+    }
+
+    // Chunks read ahead of the one consumed: one per thread, as many as fit in "heapBytes" with it, and at least one.
+    static int chunksAhead(long[] bounds, int threads, long heapBytes) {
+        long largest = 1;
+        for (int chunk = 0; chunk < bounds.length - 1; chunk++) {
+            largest = Math.max(largest, bounds[chunk + 1] - bounds[chunk]);
+        }
+        long fitting = heapBytes / (largest * HEAP_PER_CHUNK_BYTE) - 1;
+        return (int) Math.max(1, Math.min(threads, fitting));
+    }
+
+    // Offsets where the chunks start, and the file size at the end.
+    static long[] boundaries(FileChannel channel, long size, long chunkBytes) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BYTES);
+        for (long offset = chunkBytes; offset < size; offset += chunkBytes) {
+            long lineStart = lineStart(channel, offset, size, buffer);
+            if (lineStart < size && lineStart > bounds.getLast()) bounds.add(lineStart);  // Lines longer than a chunk
+        }
+        bounds.add(size);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // First offset from "offset" where a line starts, or the size if there is none.
+    private static long lineStart(FileChannel channel, long offset, long size, ByteBuffer buffer) throws IOException {
+        long position = offset - 1;  // A line starts at "offset" if the byte before it ends a line
+        while (position < size) {
+            int read = channel.read(buffer.clear(), position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') return position + i + 1;
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static <T> List<T> parse(Path file, long from, long to, LineParser<T> parser, AtomicBoolean closed) {
+        if (closed.get()) return List.of();
+        byte[] bytes = new byte[(int) (to - from)];
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            LineIndex.readFully(channel, ByteBuffer.wrap(bytes), from);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        BYTES_READ.add(bytes.length);
+        List<T> values = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= bytes.length; i++) {
+            if (i < bytes.length && bytes[i] != '\n') continue;
+            int end = i;
+            while (end > start && (bytes[end - 1] == ' ' || bytes[end - 1] == '\r')) end--;
+            if (!isBlank(bytes, start, end)) values.add(parser.parse(bytes, start, end));  // Deleted tasks are blank
+            start = i + 1;
+        }
+        return values;
+    }
+
+    // As String.isBlank() of the UTF-8 line bytes[from, to), which is only decoded if it has non-ASCII characters.
+    static boolean isBlank(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] < 0) return new String(bytes, from, to - from, StandardCharsets.UTF_8).isBlank();
+            if (!Character.isWhitespace(bytes[i])) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,308 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.DueDate;
+import edu.riesco.domain.IdMode;
+import edu.riesco.domain.NoDueDate;
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskDueDate;
+import edu.riesco.domain.TaskRepository;
+import edu.riesco.domain.TaskStatus;
+import edu.riesco.exception.EmptyRepositoryException;
+import edu.riesco.exception.TaskNotFoundException;
+import edu.riesco.exception.TaskRepositoryException;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// In-memory repository for millions of tasks. Instead of a Task object per task, with its strings, due date and
+// status, tasks are kept in columns of primitive values: the numbers of the title and description in a StringPool,
+// which stores each distinct string once as UTF-8, the due date as an epoch day and the status as a byte. The Task
+// objects are made when they are read, so the store takes 13 bytes per task (17 with stable IDs) plus the bytes of
+// its distinct strings. In MemoryFootprintBenchmark that is about half the heap MemoryTaskRepository takes, with
+// every title different; repeated titles and descriptions take less.
+// Thread-safe: reads share a lock and writes take it exclusively. Streams read the tasks in chunks, each one
+// with the lock taken, so tasks changed while a stream is consumed may or may not be seen through it. With
+// positional IDs a delete moves the tasks after it, so a chunk could start one task too late: those streams keep
+// the read lock until they are closed, as the file repositories do.
+// With stable IDs, the ID of every slot is kept in a column in ID order, and tasks are found by a binary search.
+// Deleted tasks leave an empty slot, which is dropped once half of the slots are empty.
+public class ColumnarTaskRepository implements TaskRepository {
+    private static final int NO_DUE_DATE = Integer.MIN_VALUE;
+    private static final int NULL_DUE_DATE = Integer.MIN_VALUE + 1;
+    private static final byte DELETED = -1;
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+    private static final TaskDueDate NONE = new NoDueDate();
+    private static final int STREAM_CHUNK = 1024;
+
+    private final IdMode idMode;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final StringPool strings = new StringPool();
+    private int[] titles = new int[16];
+    private int[] descriptions = new int[16];
+    private int[] dueDays = new int[16];
+    private byte[] statuses = new byte[16];  // TaskStatus ordinal, or DELETED
+    private int[] ids;  // Stable IDs only
+    private int size;  // Slots, empty ones included
+    private int deleted;  // Empty slots
+    private int nextId = 1;
+
+    public ColumnarTaskRepository() {
+        this(IdMode.POSITIONAL);
+    }
+
+    public ColumnarTaskRepository(IdMode idMode) {
+        this.idMode = idMode;
+        this.ids = idMode == IdMode.STABLE ? new int[16] : null;
+    }
+
+    @Override
+    public IdMode idMode() {
+        return idMode;
+    }
+
+    @Override
+    public int create(Task task) {
+        return createAll(List.of(task));
+    }
+
+    @Override
+    public int createAll(List<Task> tasks) {
+        lock.writeLock().lock();
+        try {
+            int id = 0;
+            for (Task task : tasks) id = append(task);
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getAll() {
+        lock.readLock().lock();
+        try {
+            List<Task> tasks = new ArrayList<>(size - deleted);
+            for (int slot = 0; slot < size; slot++) {
+                if (statuses[slot] != DELETED) tasks.add(task(slot));
+            }
+            return Collections.unmodifiableList(tasks);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Stream<Task> stream() {
+        return streamWithIds().map(Map.Entry::getValue);
+    }
+
+    @Override
+    public Stream<Map.Entry<Integer, Task>> streamWithIds() {
+        boolean locked = idMode == IdMode.POSITIONAL;
+        if (locked) lock.readLock().lock();
+        Iterator<Map.Entry<Integer, Task>> iterator = new Iterator<>() {
+            private final Deque<Map.Entry<Integer, Task>> chunk = new ArrayDeque<>(STREAM_CHUNK);
+            private int nextId = 1;  // First ID of the next chunk
+            private boolean ended;
+
+            @Override
+            public boolean hasNext() {
+                if (chunk.isEmpty() && !ended) readChunk();
+                return !chunk.isEmpty();
+            }
+
+            @Override
+            public Map.Entry<Integer, Task> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return chunk.remove();
+            }
+
+            private void readChunk() {
+                lock.readLock().lock();
+                try {
+                    int slot = idMode == IdMode.POSITIONAL ? nextId - 1 : firstSlotFrom(nextId);
+                    for (; slot < size && chunk.size() < STREAM_CHUNK; slot++) {
+                        if (statuses[slot] != DELETED) chunk.add(Map.entry(id(slot), task(slot)));
+                    }
+                    ended = slot >= size;
+                    if (!chunk.isEmpty()) nextId = chunk.getLast().getKey() + 1;
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        };
+        Stream<Map.Entry<Integer, Task>> entries = StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+        return locked ? entries.onClose(lock.readLock()::unlock) : entries;
+    }
+
+    @Override
+    public Task getById(int id) {
+        lock.readLock().lock();
+        try {
+            return task(slot(id));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void update(int id, Task newTask) {
+        updateAll(Map.of(id, newTask));
+    }
+
+    @Override
+    public void updateAll(Map<Integer, Task> newTasks) {
+        Map<Integer, UnaryOperator<Task>> edits = new HashMap<>();
+        newTasks.forEach((id, newTask) -> edits.put(id, oldTask -> newTask));
+        editAll(edits);
+    }
+
+    // Every task is read and edited before any is saved.
+    @Override
+    public void editAll(Map<Integer, UnaryOperator<Task>> edits) {
+        lock.writeLock().lock();
+        try {
+            Map<Integer, Task> newTasks = new HashMap<>();
+            edits.forEach((id, edit) -> newTasks.put(slot(id), edit.apply(task(slot(id)))));
+            newTasks.values().forEach(task -> dueDay(task.getDueDate()));  // Throws before anything is saved
+            newTasks.forEach((slot, newTask) -> {
+                int oldTitle = titles[slot];
+                int oldDescription = descriptions[slot];
+                set(slot, newTask);  // Before the old strings are released, so unchanged strings keep their number
+                strings.release(oldTitle);
+                strings.release(oldDescription);
+            });
+            compactStrings();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(int id) {
+        lock.writeLock().lock();
+        try {
+            int slot = slot(id);
+            strings.release(titles[slot]);
+            strings.release(descriptions[slot]);
+            if (idMode == IdMode.POSITIONAL) {
+                int moved = size - slot - 1;
+                System.arraycopy(titles, slot + 1, titles, slot, moved);
+                System.arraycopy(descriptions, slot + 1, descriptions, slot, moved);
+                System.arraycopy(dueDays, slot + 1, dueDays, slot, moved);
+                System.arraycopy(statuses, slot + 1, statuses, slot, moved);
+                size--;
+            } else {
+                statuses[slot] = DELETED;
+                deleted++;
+                if (deleted > size / 2) compact();
+            }
+            compactStrings();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Returns the ID of the new task.
+    private int append(Task task) {
+        dueDay(task.getDueDate());  // Throws before the slot is taken
+        if (size == statuses.length) {
+            int capacity = StringPool.grown(size);
+            if (capacity == size) throw new TaskRepositoryException("Repository full: " + size + " tasks");
+            titles = Arrays.copyOf(titles, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+            dueDays = Arrays.copyOf(dueDays, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+            if (ids != null) ids = Arrays.copyOf(ids, capacity);
+        }
+        int slot = size++;
+        set(slot, task);
+        if (idMode == IdMode.POSITIONAL) return size;  // IDs start in 1
+        ids[slot] = nextId;
+        return nextId++;
+    }
+
+    private void set(int slot, Task task) {
+        dueDays[slot] = dueDay(task.getDueDate());  // First, as it may throw
+        titles[slot] = strings.add(task.getTitle());
+        descriptions[slot] = strings.add(task.getDescription());
+        statuses[slot] = (byte) task.getStatus().ordinal();
+    }
+
+    private Task task(int slot) {
+        return Task.from(strings.get(titles[slot]), strings.get(descriptions[slot]), dueDate(dueDays[slot]),
+                STATUSES[statuses[slot]]);
+    }
+
+    private int id(int slot) {
+        return idMode == IdMode.POSITIONAL ? slot + 1 : ids[slot];
+    }
+
+    private static int dueDay(TaskDueDate dueDate) {
+        if (dueDate == null) return NULL_DUE_DATE;
+        if (dueDate instanceof NoDueDate) return NO_DUE_DATE;
+        if (!(dueDate instanceof DueDate date)) {
+            throw new IllegalArgumentException("Unsupported due date: " + dueDate.getClass().getName());
+        }
+        if (date.epochDay() <= NULL_DUE_DATE || date.epochDay() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Due date out of range: " + date.printableDueDate());
+        }
+        return (int) date.epochDay();
+    }
+
+    private static TaskDueDate dueDate(int dueDay) {
+        if (dueDay == NULL_DUE_DATE) return null;
+        return dueDay == NO_DUE_DATE ? NONE : DueDate.ofEpochDay(dueDay);
+    }
+
+    // Slot of a task. Checks if the repository is empty or the ID does not exist.
+    private int slot(int id) {
+        if (size - deleted == 0) {
+            throw new EmptyRepositoryException("Operation not allowed in an empty repository.");
+        }
+        int slot = idMode == IdMode.POSITIONAL ? (id >= 1 && id <= size ? id - 1 : -1)
+                : Arrays.binarySearch(ids, 0, size, id);
+        if (slot < 0 || statuses[slot] == DELETED) {
+            throw new TaskNotFoundException("Task with id " + id + " not found.");
+        }
+        return slot;
+    }
+
+    // First slot with an ID not lower than the given one.
+    private int firstSlotFrom(int id) {
+        int slot = Arrays.binarySearch(ids, 0, size, id);
+        return slot >= 0 ? slot : -slot - 1;
+    }
+
+    // Drops the empty slots. IDs do not change.
+    private void compact() {
+        int live = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (statuses[slot] == DELETED) continue;
+            titles[live] = titles[slot];
+            descriptions[live] = descriptions[slot];
+            dueDays[live] = dueDays[slot];
+            statuses[live] = statuses[slot];
+            ids[live] = ids[slot];
+            live++;
+        }
+        size = live;
+        deleted = 0;
+    }
+
+    // Drops the strings no task uses once they are too many, and renumbers the strings of every task.
+    private void compactStrings() {
+        if (!strings.needsCompaction()) return;
+        int[] numbers = strings.compact();
+        for (int slot = 0; slot < size; slot++) {
+            if (statuses[slot] == DELETED) continue;
+            titles[slot] = numbers[titles[slot]];
+            descriptions[slot] = numbers[descriptions[slot]];
+        }
+    }
+}
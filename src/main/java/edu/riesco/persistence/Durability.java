@@ -0,0 +1,50 @@
+package edu.riesco.persistence;
+
+import java.time.Duration;
+
+// When the writes of a JsonFileTaskRepository are forced to disk before the operation returns.
+//   NONE:  never. The operating system writes them later, so the last changes may be lost in a crash.
+//   SYNC:  after every operation. Operations that finish while the disk is busy share the next force.
+//   GROUP: writes wait up to "maxDelay" or until "maxOperations" writes are waiting, and are forced together.
+// Callers of SYNC and GROUP return once their changes are on disk.
+public record Durability(Mode mode, Duration maxDelay, int maxOperations) {
+
+    public enum Mode {NONE, SYNC, GROUP}
+
+    public static final Duration DEFAULT_GROUP_DELAY = Duration.ofMillis(10);
+    public static final int DEFAULT_GROUP_OPERATIONS = 64;
+
+    public Durability {
+        if (maxDelay.isNegative()) throw new IllegalArgumentException("Negative delay: " + maxDelay);
+        if (maxOperations < 1) throw new IllegalArgumentException("Operations must be at least 1: " + maxOperations);
+    }
+
+    public static Durability none() {
+        return new Durability(Mode.NONE, Duration.ZERO, 1);
+    }
+
+    public static Durability sync() {
+        return new Durability(Mode.SYNC, Duration.ZERO, 1);
+    }
+
+    public static Durability group(Duration maxDelay, int maxOperations) {
+        return new Durability(Mode.GROUP, maxDelay, maxOperations);
+    }
+
+    // "none", "sync" or "group[:<milliseconds>[:<operations>]]", as in TM_DURABILITY=group:5:32
+    public static Durability parse(String text) {
+        String[] parts = text.trim().toLowerCase().split(":");
+        try {
+            return switch (parts[0]) {
+                case "none" -> none();
+                case "sync" -> sync();
+                case "group" -> group(
+                        parts.length > 1 ? Duration.ofMillis(Long.parseLong(parts[1])) : DEFAULT_GROUP_DELAY,
+                        parts.length > 2 ? Integer.parseInt(parts[2]) : DEFAULT_GROUP_OPERATIONS);
+                default -> throw new IllegalArgumentException("Unknown durability: " + text);
+            };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in durability: " + text);
+        }
+    }
+}
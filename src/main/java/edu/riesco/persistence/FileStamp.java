@@ -0,0 +1,29 @@
+package edu.riesco.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+// A file as it was when last seen, to tell whether someone changed it since: which file it is (one put in its place
+// by a rename is another one), its size and modification time, and the rewrite count of its line index, which
+// changes on every write that is not an append, even within one tick of a coarse modification time.
+// "rewrites" is null without an index or if the index was not up to date, so that any change is seen.
+record FileStamp(Object key, long size, FileTime modified, Long rewrites) {
+    static final FileStamp MISSING = new FileStamp(null, 0, FileTime.fromMillis(0), null);
+
+    // "index" may be null.
+    static FileStamp of(Path file, LineIndex index) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            LineIndex.Header header = index == null ? null : index.stored();
+            Object key = attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+            return new FileStamp(key, attributes.size(), attributes.lastModifiedTime(),
+                    header == null ? null : header.rewrites());
+        } catch (NoSuchFileException e) {
+            return MISSING;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package edu.riesco.persistence;
+
+import edu.riesco.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Forces the writes of several threads to disk with one FileChannel.force().
+// Every write is numbered by written(), called while the store is locked and after the bytes are written.
+// awaitForced() then waits, with the store unlocked, until a force covers it. The first thread to wait leads:
+// it waits for more writes (up to the durability limits) and forces the files once for every write made so far.
+// Threads that arrive meanwhile wait for that force, or lead the next one if their write came after it began.
+final class GroupCommit {
+    private static final Metrics.Counter FORCES = Metrics.counter("file.forces");
+    private final List<Path> files;
+    private final long maxDelayNanos;
+    private final int maxOperations;
+    private long written;  // Number of the last write
+    private long forced;  // Number of the last write on disk
+    private boolean leading;  // A thread is waiting for writes or forcing
+
+    // Missing files are skipped.
+    GroupCommit(Durability durability, List<Path> files) {
+        this.files = files;
+        this.maxDelayNanos = durability.mode() == Durability.Mode.GROUP ? durability.maxDelay().toNanos() : 0;
+        this.maxOperations = durability.mode() == Durability.Mode.GROUP ? durability.maxOperations() : 1;
+    }
+
+    synchronized long written() {
+        written++;
+        if (leading && written - forced >= maxOperations) notifyAll();
+        return written;
+    }
+
+    synchronized long lastWritten() {
+        return written;
+    }
+
+    void awaitForced(long write) throws IOException {
+        boolean interrupted = false;
+        long target;
+        synchronized (this) {
+            while (forced < write && leading) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (forced >= write) {
+                if (interrupted) Thread.currentThread().interrupt();
+                return;
+            }
+            leading = true;
+            long deadline = System.nanoTime() + maxDelayNanos;
+            long remaining;
+            while (written - forced < maxOperations && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            target = written;
+        }
+        try {
+            for (Path file : files) force(file);
+            synchronized (this) {
+                forced = Math.max(forced, target);
+            }
+        } finally {
+            synchronized (this) {
+                leading = false;
+                notifyAll();
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    // The force of any channel of a file writes every change made to it, through any channel.
+    private static void force(Path file) throws IOException {
+        if (!Files.exists(file)) return;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        }
+        FORCES.add(1);
+    }
+
+    // Saves the entries of a directory, so files moved or created in it are not lost in a crash.
+    static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package edu.riesco.persistence;
+
+import java.util.Arrays;
+
+// Map from task IDs (positive ints) to slots (ints) in open-addressed primitive arrays, so a lookup is a few array
+// reads with no boxing. Collisions are resolved by linear probing, and removals shift the following entries back
+// instead of leaving markers.
+final class IntSlotMap {
+    private static final int EMPTY = 0;  // Not a valid ID
+    private static final double MAX_LOAD = 0.5;
+
+    private int[] keys = new int[16];
+    private int[] values = new int[16];
+    private int size;
+
+    // Slot of the ID, or -1 if it is not in the map.
+    int get(int id) {
+        for (int i = index(id, keys.length); keys[i] != EMPTY; i = (i + 1) & (keys.length - 1)) {
+            if (keys[i] == id) return values[i];
+        }
+        return -1;
+    }
+
+    void put(int id, int slot) {
+        if (size + 1 > keys.length * MAX_LOAD) resize(keys.length * 2);
+        int i = index(id, keys.length);
+        while (keys[i] != EMPTY && keys[i] != id) i = (i + 1) & (keys.length - 1);
+        if (keys[i] == EMPTY) size++;
+        keys[i] = id;
+        values[i] = slot;
+    }
+
+    void remove(int id) {
+        int mask = keys.length - 1;
+        int i = index(id, keys.length);
+        while (keys[i] != id) {
+            if (keys[i] == EMPTY) return;
+            i = (i + 1) & mask;
+        }
+        // Moves back the entries after it that would not be found past the hole.
+        for (int next = (i + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = index(keys[next], keys.length);
+            if (((next - home) & mask) >= ((next - i) & mask)) {
+                keys[i] = keys[next];
+                values[i] = values[next];
+                i = next;
+            }
+        }
+        keys[i] = EMPTY;
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) continue;
+            int j = index(oldKeys[i], capacity);
+            while (keys[j] != EMPTY) j = (j + 1) & (capacity - 1);
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+
+    // Consecutive IDs are spread over the table.
+    private static int index(int id, int capacity) {
+        return (id * 0x9E3779B9 >>> 16 ^ id * 0x9E3779B9) & (capacity - 1);
+    }
+}
@@ -0,0 +1,280 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskRepository;
+import edu.riesco.exception.EmptyRepositoryException;
+import edu.riesco.exception.TaskNotFoundException;
+import edu.riesco.exception.TaskRepositoryException;
+import edu.riesco.metrics.Metrics;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+
+// Write-ahead log storage: every create/update/delete is appended to the journal file as one record, and the
+// tasks are kept in memory. Opening the repository loads the last snapshot and replays the journal on top of it.
+// After SNAPSHOT_EVERY operations a background thread writes a new snapshot and truncates the journal.
+//
+// Journal record: [payload length: int][crc32: int][sequence: long][operation: byte][task id: int][payload]
+// where the payload is the task as JSON (empty for deletes) and the CRC covers everything after it.
+// A record cut short or with a wrong CRC marks the end of the journal (a write interrupted by a crash)
+// and is discarded.
+// Snapshot ("<journal>.snapshot"): [sequence: long][task count: int] and then [length: int][task as JSON]
+// per task. Journal records with a sequence not greater than the snapshot sequence are already in it.
+public class JournalTaskRepository implements TaskRepository, AutoCloseable {
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES + Integer.BYTES + Long.BYTES + 1 + Integer.BYTES;
+    private static final int CHECKED_HEADER_BYTES = Long.BYTES + 1 + Integer.BYTES;
+    private static final byte CREATE = 'C';
+    private static final byte UPDATE = 'U';
+    private static final byte DELETE = 'D';
+    private static final int SNAPSHOT_EVERY = 10_000;
+    private static final Metrics.Counter BYTES_WRITTEN = Metrics.counter("file.bytes.written");
+
+    private final Path journalPath;
+    private final Path snapshotPath;
+    private final List<Task> tasks = new ArrayList<>();
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "journal-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Object snapshotLock = new Object();
+    private FileChannel journal;
+    private long journalEnd;
+    private long sequence;
+    private long operationsSinceSnapshot;
+    private boolean snapshotPending;
+
+    public JournalTaskRepository(String journalPath) {
+        this.journalPath = Path.of(journalPath);
+        this.snapshotPath = this.journalPath.resolveSibling(this.journalPath.getFileName() + ".snapshot");
+        try {
+            long snapshotSequence = loadSnapshot();
+            sequence = snapshotSequence;
+            journal = FileChannel.open(this.journalPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            journalEnd = replay(snapshotSequence);
+            journal.truncate(journalEnd);  // Drop a record torn by a crash.
+            journal.position(journalEnd);
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized int create(Task task) {
+        append(CREATE, 0, task);
+        tasks.add(task);
+        return tasks.size();  // Last Task ID. IDs start in 1
+    }
+
+    @Override
+    public synchronized List<Task> getAll() {
+        return Collections.unmodifiableList(new ArrayList<>(tasks));
+    }
+
+    @Override
+    public synchronized Task getById(int id) {
+        if (tasks.isEmpty()) {
+            throw new EmptyRepositoryException("Operation not allowed in an empty repository.");
+        }
+        if (id < 1 || id > tasks.size()) {
+            throw new TaskNotFoundException("Task with ID " + id + " not found.");
+        }
+        return tasks.get(id - 1);  // IDs start in 1, List index starts in 0
+    }
+
+    // "Update" means "put a new task in the same location" to preserve the old Task ID.
+    @Override
+    public synchronized void update(int id, Task newTask) {
+        getById(id);  // To check if the repository is empty or the ID does not exist.
+        append(UPDATE, id, newTask);
+        tasks.set(id - 1, newTask);
+    }
+
+    // Tasks are checked, read and saved without other threads in between.
+    @Override
+    public synchronized void updateAll(Map<Integer, Task> newTasks) {
+        TaskRepository.super.updateAll(newTasks);
+    }
+
+    @Override
+    public synchronized void editAll(Map<Integer, UnaryOperator<Task>> edits) {
+        TaskRepository.super.editAll(edits);
+    }
+
+    @Override
+    public synchronized void delete(int id) {
+        getById(id);  // To check if the repository is empty or the ID does not exist.
+        append(DELETE, id, null);
+        tasks.remove(id - 1);
+    }
+
+    // Writes a snapshot of the current tasks and truncates the journal, without waiting for the background thread.
+    public void snapshot() {
+        synchronized (snapshotLock) {
+            List<Task> snapshotTasks;
+            long snapshotSequence;
+            long journalOffset;
+            synchronized (this) {
+                snapshotTasks = new ArrayList<>(tasks);
+                snapshotSequence = sequence;
+                journalOffset = journalEnd;
+            }
+            try {
+                writeSnapshot(snapshotTasks, snapshotSequence);
+                truncateJournal(snapshotSequence, journalOffset);
+            } catch (IOException e) {
+                throw new TaskRepositoryException(e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+            synchronized (this) {
+                journal.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+    }
+
+    private void append(byte operation, int id, Task task) {
+        byte[] payload = task == null ? new byte[0] : task.toJsonBytes();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt(0).putLong(sequence + 1).put(operation).putInt(id).put(payload);
+        record.putInt(Integer.BYTES, checksum(record.array(), 2 * Integer.BYTES, CHECKED_HEADER_BYTES + payload.length));
+        record.flip();
+        try {
+            while (record.hasRemaining()) journal.write(record);
+            BYTES_WRITTEN.add(record.limit());
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+        journalEnd += record.limit();
+        sequence++;
+        if (++operationsSinceSnapshot >= SNAPSHOT_EVERY && !snapshotPending) {
+            snapshotPending = true;
+            snapshotter.execute(() -> {
+                try {
+                    snapshot();
+                } finally {
+                    synchronized (this) {
+                        snapshotPending = false;
+                    }
+                }
+            });
+        }
+    }
+
+    private long loadSnapshot() throws IOException {
+        if (!Files.exists(snapshotPath)) return 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            long snapshotSequence = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] json = new byte[in.readInt()];
+                in.readFully(json);
+                tasks.add(Task.fromJson(json, 0, json.length));
+            }
+            return snapshotSequence;
+        }
+    }
+
+    // Applies the journal records newer than the snapshot. Returns the offset where the valid journal ends.
+    private long replay(long snapshotSequence) throws IOException {
+        long size = journal.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (size - position >= RECORD_HEADER_BYTES) {
+            header.clear();
+            LineIndex.readFully(journal, header, position);
+            int length = header.getInt();
+            int crc = header.getInt();
+            if (length < 0 || size - position - RECORD_HEADER_BYTES < length) break;
+            ByteBuffer record = ByteBuffer.allocate(CHECKED_HEADER_BYTES + length);
+            record.put(header.array(), 2 * Integer.BYTES, CHECKED_HEADER_BYTES);
+            LineIndex.readFully(journal, record, position + RECORD_HEADER_BYTES);
+            if (checksum(record.array(), 0, record.limit()) != crc) break;
+            long recordSequence = record.getLong();
+            if (recordSequence > snapshotSequence) {
+                apply(record.get(), record.getInt(), record);
+                sequence = recordSequence;
+                operationsSinceSnapshot++;
+            }
+            position += RECORD_HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    private void apply(byte operation, int id, ByteBuffer payload) {
+        if (operation == DELETE) {
+            tasks.remove(id - 1);
+            return;
+        }
+        Task task = Task.fromJson(payload.array(), payload.position(), payload.limit());
+        if (operation == CREATE) {
+            tasks.add(task);
+        } else {
+            tasks.set(id - 1, task);
+        }
+    }
+
+    // Written to a temporary file and moved over the old snapshot, so a crash never leaves a partial snapshot.
+    private void writeSnapshot(List<Task> snapshotTasks, long snapshotSequence) throws IOException {
+        Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeLong(snapshotSequence);
+            out.writeInt(snapshotTasks.size());
+            for (Task task : snapshotTasks) {
+                byte[] json = task.toJsonBytes();
+                out.writeInt(json.length);
+                out.write(json);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Keeps only the journal records written after the snapshot was taken, which start at "journalOffset".
+    private synchronized void truncateJournal(long snapshotSequence, long journalOffset) throws IOException {
+        Path temporary = journalPath.resolveSibling(journalPath.getFileName() + ".tmp");
+        try (FileChannel rest = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            journal.transferTo(journalOffset, journalEnd - journalOffset, rest);
+        }
+        journal.close();
+        Files.move(temporary, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal = FileChannel.open(journalPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journalEnd = journal.size();
+        journal.position(journalEnd);
+        operationsSinceSnapshot = sequence - snapshotSequence;
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
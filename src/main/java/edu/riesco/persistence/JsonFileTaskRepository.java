@@ -1,122 +1,553 @@
 package edu.riesco.persistence;
 
+import edu.riesco.domain.IdMode;
 import edu.riesco.domain.Task;
 import edu.riesco.domain.TaskRepository;
 import edu.riesco.exception.EmptyRepositoryException;
 import edu.riesco.exception.TaskNotFoundException;
 import edu.riesco.exception.TaskRepositoryException;
+import edu.riesco.metrics.Metrics;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class JsonFileTaskRepository implements TaskRepository {
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    // SLOTS layout: lines are padded to a multiple of SLOT_ALIGNMENT bytes, leaving at least SLOT_HEADROOM
+    // bytes to grow, and the file is compacted once tombstones take more than MAX_DEAD_RATIO of it.
+    private static final int SLOT_ALIGNMENT = 64;
+    private static final int SLOT_HEADROOM = 16;
+    private static final double MAX_DEAD_RATIO = 0.5;
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+    // Files from this size are read by stream() with a ChunkedLineReader, if there is more than one load thread.
+    private static final long CHUNKED_READ_BYTES = 1024 * 1024;
+
+    private static final byte[] ID_PREFIX = "{\"id\":".getBytes(StandardCharsets.UTF_8);
+    private static final int ID_PREFIX_BYTES = ID_PREFIX.length + 11;  // Room for any int and the comma
+    // Positioned reads and writes, and the chunks of big files read by stream(). Lines of smaller files read by
+    // stream() are counted by the JSON parser only.
+    private static final Metrics.Counter BYTES_READ = Metrics.counter("file.bytes.read");
+    private static final Metrics.Counter BYTES_WRITTEN = Metrics.counter("file.bytes.written");
+
     private final Path filePath;
+    private final Layout layout;
+    private final IdMode idMode;
+    private final LineIndex index;
+    private final StoreLock storeLock;
+    private final Path nextIdPath;
+    private final GroupCommit groupCommit;  // null without durability
+    private volatile int loadThreads = 1;
+
+    // How tasks are laid out in the file. Both layouts can read files written with the other one.
+    public enum Layout {
+        // One JSON task per line.
+        LINES,
+        // JSON task lines padded with spaces, so most updates are written in place. Deleted tasks are blanked
+        // out (tombstones) instead of moving the rest of the file, and dropped later by compact().
+        SLOTS
+    }
 
     public JsonFileTaskRepository(String filePath) {
+        this(filePath, Layout.LINES);
+    }
+
+    public JsonFileTaskRepository(String filePath, Layout layout) {
+        this(filePath, layout, IdMode.POSITIONAL);
+    }
+
+    // With stable IDs, every line starts with the ID of the task, as in {"id":7,"title":...}. Deleted tasks are
+    // blanked out in both layouts, so the lines stay in ID order and a task is found by a binary search over the
+    // line index. The next ID is kept in "<file>.nextid", so the IDs of deleted tasks are not given again.
+    // Files with stable IDs can be read with positional IDs too: the "id" field is ignored.
+    public JsonFileTaskRepository(String filePath, Layout layout, IdMode idMode) {
+        this(filePath, layout, idMode, Durability.none());
+    }
+
+    // Operations return once their changes are written, and also forced to disk with Durability SYNC or GROUP.
+    public JsonFileTaskRepository(String filePath, Layout layout, IdMode idMode, Durability durability) {
         this.filePath = Path.of(filePath);
+        this.layout = layout;
+        this.idMode = idMode;
+        this.index = new LineIndex(this.filePath);
+        this.storeLock = StoreLock.forFile(this.filePath);
+        this.nextIdPath = this.filePath.resolveSibling(this.filePath.getFileName() + ".nextid");
+        this.groupCommit = durability.mode() == Durability.Mode.NONE ? null
+                : new GroupCommit(durability, idMode == IdMode.STABLE ? List.of(this.filePath, nextIdPath)
+                : List.of(this.filePath));
     }
 
     @Override
-    public int create(Task task) {
+    public IdMode idMode() {
+        return idMode;
+    }
+
+    // The file, which other processes may write.
+    @Override
+    public Object changeStamp() {
         try {
-            Files.write(filePath, task.toJson().getBytes(), StandardOpenOption.APPEND, StandardOpenOption.CREATE);
-            Files.write(filePath, System.lineSeparator().getBytes(), StandardOpenOption.APPEND);
-            return lastTaskId();
+            return FileStamp.of(filePath, index);
         } catch (IOException e) {
             throw new TaskRepositoryException(e.getMessage());
         }
     }
 
-    // The Task ID will be the line number in the file.
-    private int lastTaskId() {
-        try (Stream<String> fileStream = Files.lines(filePath)) {
-            return (int) fileStream.count();
+    @Override
+    public int create(Task task) {
+        return createAll(List.of(task));
+    }
+
+    // Appends the task lines and their separators with a single write. The new positional IDs come from the task
+    // count kept in the index header, so the cost does not depend on the file size.
+    @Override
+    public int createAll(List<Task> tasks) {
+        return createAll(tasks, IntUnaryOperator.identity());
+    }
+
+    // With stable IDs, "stableId" gives the ID of each new task from the lowest ID it can have, so a
+    // ShardedTaskRepository can choose them. IDs below that one are rejected.
+    int createAll(List<Task> tasks, IntUnaryOperator stableId) {
+        int lastId;
+        long write;
+        lock();
+        try {
+            boolean newFile = !Files.exists(filePath);
+            long offset = index.appendOffset();
+            int id = idMode == IdMode.STABLE ? nextId() : 0;  // Lowest free ID
+            List<LineIndex.Line> lines = new ArrayList<>(tasks.size());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (Task task : tasks) {
+                if (idMode == IdMode.STABLE) {
+                    int chosen = stableId.applyAsInt(id);
+                    if (chosen < id) throw new TaskRepositoryException("Task ID " + chosen + " already used in " + filePath);
+                    id = chosen;
+                }
+                byte[] json = json(id++, task);
+                int length = lineLength(json.length);
+                bytes.write(padded(json, length));
+                bytes.write(LINE_SEPARATOR);
+                lines.add(new LineIndex.Line(offset, length));
+                offset += length + LINE_SEPARATOR.length;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            try (FileChannel channel = FileChannel.open(filePath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+            BYTES_WRITTEN.add(buffer.limit());
+            int count = index.appended(lines);
+            if (idMode == IdMode.POSITIONAL) {
+                lastId = count;
+            } else {
+                Files.writeString(nextIdPath, String.valueOf(id));
+                lastId = id - 1;
+            }
+            if (newFile && groupCommit != null) GroupCommit.forceDirectory(directory());
+            write = written();
         } catch (IOException e) {
             throw new TaskRepositoryException(e.getMessage());
+        } finally {
+            unlock();
         }
+        awaitForced(write);
+        return lastId;
     }
 
     @Override
     public List<Task> getAll() {
-        if (!Files.exists(filePath)) return new ArrayList<>();
+        try (Stream<Task> tasks = stream()) {
+            return tasks.collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+    }
+
+    // Lines are read and parsed as the stream is consumed: one at a time, or in chunks parsed by several threads
+    // ahead of the consumer in big files. The store stays locked until the stream is closed.
+    @Override
+    public Stream<Task> stream() {
+        return taskLines(Task::fromJson, Task::fromJson);
+    }
+
+    @Override
+    public Stream<Map.Entry<Integer, Task>> streamWithIds() {
+        if (idMode == IdMode.POSITIONAL) return TaskRepository.super.streamWithIds();
+        return taskLines(line -> Map.entry(recordId(line, filePath), Task.fromJson(line)),
+                (bytes, from, to) -> Map.entry(
+                        recordId(new String(bytes, from, Math.min(to - from, ID_PREFIX_BYTES), StandardCharsets.UTF_8),
+                                filePath),
+                        Task.fromJson(bytes, from, to)));
+    }
+
+    // Threads that parse big files in stream() and getAll(). With 1, the default, lines are read one at a time.
+    // More threads than cores only add overhead (see LoadBenchmark).
+    public void loadThreads(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("Threads must be at least 1: " + threads);
+        loadThreads = threads;
+    }
+
+    private <T> Stream<T> taskLines(Function<String, T> lineParser, ChunkedLineReader.LineParser<T> chunkParser) {
+        lock();
         try {
-            List<String> lines = Files.readAllLines(filePath);
-            return lines.stream().map(Task::fromJson).collect(Collectors.toList());
+            if (!Files.exists(filePath)) {
+                unlock();
+                return Stream.empty();
+            }
+            Stream<T> lines = loadThreads == 1 || Files.size(filePath) < CHUNKED_READ_BYTES
+                    ? Files.lines(filePath).filter(line -> !line.isBlank()).map(lineParser)
+                    : ChunkedLineReader.lines(filePath, loadThreads, chunkParser);
+            return lines.onClose(this::unlock);
+        } catch (IOException | RuntimeException e) {
+            unlock();
+            throw e instanceof IOException ? new TaskRepositoryException(e.getMessage()) : (RuntimeException) e;
+        }
+    }
+
+    // Every operation locks the store, so that threads and other processes using the same file do not interfere.
+    // editAll() reads and saves the tasks while it holds the lock.
+    @Override
+    public void editAll(Map<Integer, UnaryOperator<Task>> edits) {
+        lock();
+        try {
+            TaskRepository.super.editAll(edits);
+        } finally {
+            unlock();
+        }
+        if (groupCommit != null) awaitForced(groupCommit.lastWritten());
+    }
+
+    // Writes made by "change" are waited for once the store is unlocked, as those of editAll().
+    @Override
+    public <T> T exclusive(Supplier<T> change) {
+        T result;
+        lock();
+        try {
+            result = change.get();
+        } finally {
+            unlock();
+        }
+        if (groupCommit != null) awaitForced(groupCommit.lastWritten());
+        return result;
+    }
+
+    private void lock() {
+        try {
+            storeLock.lock();
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+    }
+
+    private void unlock() {
+        try {
+            storeLock.unlock();
         } catch (IOException e) {
             throw new TaskRepositoryException(e.getMessage());
         }
     }
 
+    // Number of the write just made, for awaitForced(). Called while the store is locked.
+    private long written() {
+        return groupCommit == null ? 0 : groupCommit.written();
+    }
+
+    // Waits until the write is on disk, as set by the durability. Writes nested in editAll() are waited for by it,
+    // once the store is unlocked, so other threads can write meanwhile and share the force.
+    private void awaitForced(long write) {
+        if (groupCommit == null || storeLock.isHeldByCurrentThread()) return;
+        try {
+            groupCommit.awaitForced(write);
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+    }
+
+    private Path directory() {
+        Path directory = filePath.toAbsolutePath().getParent();
+        return directory == null ? Path.of(".") : directory;
+    }
+
     @Override
     public Task getById(int id) {
-        if (!Files.exists(filePath)) {
-            throw new EmptyRepositoryException("Operation not allowed in an empty repository.");
-        }
-        try (Stream<String> lines = Files.lines(filePath)) {
-            String taskAsJson = lines.skip(id - 1).findFirst()
-                    .orElseThrow(() -> new TaskNotFoundException("Task with ID " + id + " not found."));
-            return Task.fromJson(taskAsJson);
+        lock();
+        try {
+            if (!Files.exists(filePath)) {
+                throw new EmptyRepositoryException("Operation not allowed in an empty repository.");
+            }
+            return readTask(locate(id));
         } catch (IllegalArgumentException e) {
             throw new TaskNotFoundException("Invalid ID: " + id);
         } catch (IOException e) {
             throw new TaskRepositoryException(e.getMessage());
+        } finally {
+            unlock();
         }
     }
 
-    @Override
-    public void delete(int id) {
-        if (!Files.exists(filePath)) {
-            throw new EmptyRepositoryException("Operation not allowed in an empty repository.");
+    private LineIndex.Line locate(int id) throws IOException {
+        if (idMode == IdMode.STABLE) return index.locate(position(id));
+        LineIndex.Line line = index.locate(id);
+        if (line == null) throw new TaskNotFoundException("Task with ID " + id + " not found.");
+        return line;
+    }
+
+    // Position of the line of a task among the task lines, starting in 1.
+    private int position(int id) throws IOException {
+        if (idMode == IdMode.POSITIONAL) {
+            locate(id);  // To check if the ID exists.
+            return id;
+        }
+        int low = 1;
+        int high = index.count();
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = recordId(readPrefix(index.locate(middle)), filePath);
+            if (middleId == id) return middle;
+            if (middleId < id) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
         }
+        throw new TaskNotFoundException("Task with ID " + id + " not found.");
+    }
+
+    // Lowest ID a new task can have with stable IDs.
+    int nextStableId() {
+        lock();
         try {
-            // Read all tasks from the file
-            List<String> lines = Files.readAllLines(filePath);
+            return nextId();
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        } finally {
+            unlock();
+        }
+    }
 
-            // Check if id is within valid range
-            if (id < 1 || id > lines.size()) {
-                throw new TaskNotFoundException("Task with ID " + id + " not found.");
-            }
+    // Next stable ID: one past the last task in the file, or the one saved after the last create if it is bigger,
+    // as the last tasks may have been deleted.
+    private int nextId() throws IOException {
+        int count = Files.exists(filePath) ? index.count() : 0;
+        int nextId = count == 0 ? 1 : recordId(readPrefix(index.locate(count)), filePath) + 1;
+        if (Files.exists(nextIdPath)) nextId = Math.max(nextId, Integer.parseInt(Files.readString(nextIdPath).trim()));
+        return nextId;
+    }
+
+    private byte[] json(int id, Task task) {
+        byte[] json = task.toJsonBytes();
+        if (idMode == IdMode.POSITIONAL) return json;
+        byte[] digits = (id + ",").getBytes(StandardCharsets.UTF_8);
+        byte[] line = new byte[ID_PREFIX.length + digits.length + json.length - 1];
+        System.arraycopy(ID_PREFIX, 0, line, 0, ID_PREFIX.length);
+        System.arraycopy(digits, 0, line, ID_PREFIX.length, digits.length);
+        System.arraycopy(json, 1, line, ID_PREFIX.length + digits.length, json.length - 1);  // Without its "{"
+        return line;
+    }
+
+    // ID at the start of a task line written with stable IDs.
+    static int recordId(String line, Path filePath) {
+        if (!line.startsWith("{\"id\":")) throw new TaskRepositoryException("Task without ID in " + filePath);
+        int id = 0;
+        for (int i = ID_PREFIX.length; i < line.length() && Character.isDigit(line.charAt(i)); i++) {
+            id = id * 10 + (line.charAt(i) - '0');
+        }
+        return id;
+    }
+
+    private String readPrefix(LineIndex.Line line) throws IOException {
+        return readLine(new LineIndex.Line(line.offset(), Math.min(line.length(), ID_PREFIX_BYTES)));
+    }
+
+    // One positioned read of the line bytes located by the index.
+    private String readLine(LineIndex.Line line) throws IOException {
+        return StandardCharsets.UTF_8.decode(ByteBuffer.wrap(readBytes(line))).toString();
+    }
 
-            // Filter out the line to remove
-            List<String> updatedLines = lines.stream()
-                    .filter(line -> lines.indexOf(line) != id - 1)
-                    .collect(Collectors.toList());
+    // Parsed from the bytes read, without decoding the whole line first.
+    private Task readTask(LineIndex.Line line) throws IOException {
+        byte[] json = readBytes(line);
+        return Task.fromJson(json, 0, json.length);
+    }
 
-            // Write the remaining lines back to the file
-            Files.write(filePath, updatedLines);
+    private byte[] readBytes(LineIndex.Line line) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(line.length());
+            LineIndex.readFully(channel, buffer, line.offset());
+            BYTES_READ.add(line.length());
+            return buffer.array();
+        }
+    }
+
+    // Only the line of the task and, if it has to be removed, the bytes after it are written.
+    @Override
+    public void delete(int id) {
+        long write;
+        lock();
+        try {
+            if (!Files.exists(filePath)) {
+                throw new EmptyRepositoryException("Operation not allowed in an empty repository.");
+            }
+            int position = position(id);
+            LineIndex.Line line = index.locate(position);
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long lineBytes = line.length() + separatorLength(channel, line);
+                if (layout == Layout.SLOTS || idMode == IdMode.STABLE) {
+                    LineIndex.writeAll(channel, ByteBuffer.wrap(padded(new byte[0], line.length())), line.offset());
+                    BYTES_WRITTEN.add(line.length());
+                    index.removed(position, 0, lineBytes);
+                } else {
+                    move(channel, line.offset() + lineBytes, channel.size() - line.offset() - lineBytes, -lineBytes);
+                    channel.truncate(channel.size() - lineBytes);
+                    index.removed(position, -lineBytes, 0);
+                }
+            }
+            LineIndex.Header header = index.header();
+            if (header.deadBytes() > header.dataSize() * MAX_DEAD_RATIO) compact();
+            write = written();
         } catch (IOException e) {
             throw new TaskRepositoryException(e.getMessage());
+        } finally {
+            unlock();
         }
+        awaitForced(write);
     }
 
     // "Update" means "put a new task in the same location" to preserve the old Task ID.
     @Override
     public void update(int id, Task newTask) {
-        if (!Files.exists(filePath)) {
-            throw new EmptyRepositoryException("Operation not allowed in an empty repository.");
-        }
-        try {
-            // Read all lines from the file
-            List<String> lines = Files.readAllLines(filePath);
+        updateAll(Map.of(id, newTask));
+    }
 
-            // Update the specific line
-            if (id > 0 && id <= lines.size()) {
-                lines.set(id - 1, newTask.toJson());
-            } else {
-                throw new TaskNotFoundException("Task with ID " + id + " not found.");
+    // New tasks overwrite the old lines when they fit in them. Otherwise the bytes after them are moved to make
+    // room, in a single backwards pass over the file that moves every byte at most once.
+    @Override
+    public void updateAll(Map<Integer, Task> newTasks) {
+        long write;
+        lock();
+        try {
+            if (!Files.exists(filePath)) {
+                throw new EmptyRepositoryException("Operation not allowed in an empty repository.");
             }
-
-            // Write the updated lines back to the file
-            Files.write(filePath, lines);
+            int[] ids = newTasks.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            int[] positions = new int[ids.length];  // In ID order too
+            LineIndex.Line[] oldLines = new LineIndex.Line[ids.length];
+            LineIndex.Line[] newLines = new LineIndex.Line[ids.length];
+            byte[][] newBytes = new byte[ids.length][];
+            long[] shifts = new long[ids.length];  // Total growth up to and including each line.
+            long shift = 0;
+            for (int i = 0; i < ids.length; i++) {
+                positions[i] = position(ids[i]);
+                oldLines[i] = index.locate(positions[i]);
+                byte[] json = json(ids[i], newTasks.get(ids[i]));
+                int length = json.length <= oldLines[i].length() ? oldLines[i].length() : lineLength(json.length);
+                newBytes[i] = padded(json, length);
+                newLines[i] = new LineIndex.Line(oldLines[i].offset() + shift, length);
+                shift += length - oldLines[i].length();
+                shifts[i] = shift;
+            }
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                for (int i = ids.length - 1; i >= 0 && shifts[i] > 0; i--) {
+                    long end = i + 1 < ids.length ? oldLines[i + 1].offset() : size;
+                    move(channel, oldLines[i].end(), end - oldLines[i].end(), shifts[i]);
+                }
+                for (int i = 0; i < ids.length; i++) {
+                    LineIndex.writeAll(channel, ByteBuffer.wrap(newBytes[i]), newLines[i].offset());
+                    BYTES_WRITTEN.add(newBytes[i].length);
+                }
+            }
+            if (ids.length > 0) index.replaced(positions, newLines, shifts);
+            write = written();
         } catch (IOException e) {
             throw new TaskRepositoryException(e.getMessage());
+        } finally {
+            unlock();
         }
+        awaitForced(write);
     }
-}
 
+    // Rewrites the file without tombstones. Task IDs do not change, as tombstones do not have one.
+    // With durability, the new file is forced before it replaces the old one, and the move right after it.
+    public void compact() {
+        lock();
+        try {
+            if (!Files.exists(filePath)) return;
+            Path compacted = filePath.resolveSibling(filePath.getFileName() + ".compact");
+            try (Stream<String> lines = Files.lines(filePath);
+                 BufferedWriter writer = Files.newBufferedWriter(compacted)) {
+                Iterator<String> taskLines = lines.filter(line -> !line.isBlank()).iterator();
+                while (taskLines.hasNext()) {
+                    writer.write(taskLines.next());
+                    writer.newLine();
+                }
+            }
+            if (groupCommit != null) {
+                try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.WRITE)) {
+                    channel.force(false);
+                }
+            }
+            Files.move(compacted, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (groupCommit != null) GroupCommit.forceDirectory(directory());
+            index.invalidate();
+        } catch (IOException | UncheckedIOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        } finally {
+            unlock();
+        }
+    }
+
+    // Bytes taken by a new line holding "jsonLength" bytes of JSON.
+    private int lineLength(int jsonLength) {
+        if (layout == Layout.LINES) return jsonLength;
+        return (jsonLength + SLOT_HEADROOM + SLOT_ALIGNMENT - 1) / SLOT_ALIGNMENT * SLOT_ALIGNMENT;
+    }
+
+    // JSON text allows trailing white space, so lines are padded with spaces.
+    private static byte[] padded(byte[] json, int length) {
+        byte[] line = Arrays.copyOf(json, length);
+        Arrays.fill(line, json.length, length, (byte) ' ');
+        return line;
+    }
+
+    private static int separatorLength(FileChannel channel, LineIndex.Line line) throws IOException {
+        ByteBuffer separator = ByteBuffer.allocate(2);
+        channel.read(separator, line.end());
+        separator.flip();
+        if (!separator.hasRemaining()) return 0;  // Last line without separator
+        return separator.get() == '\r' ? 2 : 1;
+    }
+
+    // Moves "length" bytes at "from" by "shift" bytes, in the direction that is safe when both ranges overlap.
+    private static void move(FileChannel channel, long from, long length, long shift) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_BYTES);
+        for (long done = 0; done < length; ) {
+            int size = (int) Math.min(buffer.capacity(), length - done);
+            long offset = shift > 0 ? from + length - done - size : from + done;
+            buffer.clear().limit(size);
+            LineIndex.readFully(channel, buffer, offset);
+            LineIndex.writeAll(channel, buffer, offset + shift);
+            BYTES_READ.add(size);
+            BYTES_WRITTEN.add(size);
+            done += size;
+        }
+    }
+}
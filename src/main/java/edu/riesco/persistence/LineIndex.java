@@ -0,0 +1,289 @@
+package edu.riesco.persistence;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.nio.file.StandardOpenOption.*;
+
+// Sidecar line-offset index for a JSON-lines file, stored next to it as "<file>.idx".
+// Layout: a header [version: int][data size: long][data mtime: long][line count: int][dead bytes: long]
+// [rewrites: long] followed by one [offset: long][length: int] entry per task line, so the N-th task is located with one
+// positioned read. Blank lines are deleted tasks (tombstones): they have no entry and their bytes are
+// counted as dead.
+// The header stamps the data file it was built from; if the size or mtime no longer match, the index
+// is rebuilt from the data file the next time it is used.
+// "rewrites" changes whenever the data file changes other than by appended(), so a reader that saw the file
+// before can tell if it only has to read the lines appended since.
+final class LineIndex {
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES;
+    private static final int ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int SCAN_BUFFER_BYTES = 64 * 1024;
+    private static final int ENTRIES_PER_WRITE = 4096;
+
+    private final Path dataPath;
+    private final Path indexPath;
+
+    LineIndex(Path dataPath) {
+        this.dataPath = dataPath;
+        this.indexPath = dataPath.resolveSibling(dataPath.getFileName() + ".idx");
+    }
+
+    // Byte range of a line in the data file, without the line separator.
+    record Line(long offset, int length) {
+        long end() {
+            return offset + length;
+        }
+    }
+
+    record Header(long dataSize, long dataMtime, int count, long deadBytes, long rewrites) {
+    }
+
+    // Number of tasks in the data file. The data file must exist.
+    int count() throws IOException {
+        return current().count();
+    }
+
+    // Index header, up to date with the data file. The data file must exist.
+    Header header() throws IOException {
+        return current();
+    }
+
+    // Index header if it is up to date with the data file, or null, without rebuilding the index.
+    Header stored() throws IOException {
+        if (!Files.exists(dataPath) || !Files.exists(indexPath)) return null;
+        try (FileChannel index = FileChannel.open(indexPath, READ)) {
+            Header header = readHeader(index);
+            return header != null && matches(header, index) ? header : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    // Line of the task with the given ID (IDs start in 1), or null if there is no such task.
+    Line locate(int id) throws IOException {
+        Header header = current();
+        if (id < 1 || id > header.count()) return null;
+        try (FileChannel index = FileChannel.open(indexPath, READ)) {
+            ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES);
+            readFully(index, entry, entryPosition(id));
+            return new Line(entry.getLong(), entry.getInt());
+        }
+    }
+
+    // Offset where the next line will be appended. Brings the index up to date first, so that
+    // appended() can extend it instead of rebuilding it.
+    long appendOffset() throws IOException {
+        if (!Files.exists(dataPath)) {
+            reset();
+            return 0;
+        }
+        return current().dataSize();
+    }
+
+    // Records lines just appended, the first one at the offset returned by appendOffset(). Returns the new task count.
+    int appended(List<Line> lines) throws IOException {
+        try (FileChannel index = FileChannel.open(indexPath, READ, WRITE)) {
+            Header header = readHeader(index);
+            ByteBuffer entries = ByteBuffer.allocate(ENTRY_BYTES * lines.size());
+            lines.forEach(line -> entries.putLong(line.offset()).putInt(line.length()));
+            writeAll(index, entries.flip(), entryPosition(header.count() + 1));
+            int count = header.count() + lines.size();
+            writeAll(index, headerBytes(stamp(count, header.deadBytes(), header.rewrites())), 0);
+            return count;
+        }
+    }
+
+    // Records in-place updates of several tasks: task ids[i] is now at lines[i], and the lines after it, up to the
+    // next updated task, moved shifts[i] bytes. IDs are in ascending order.
+    void replaced(int[] ids, Line[] lines, long[] shifts) throws IOException {
+        try (FileChannel index = FileChannel.open(indexPath, READ, WRITE)) {
+            Header header = readHeader(index);
+            int last = ids.length - 1;
+            int endId = shifts[last] == 0 ? ids[last] : header.count();
+            ByteBuffer chunk = ByteBuffer.allocate(ENTRY_BYTES * ENTRIES_PER_WRITE);
+            int id = ids[0];
+            int next = 0;
+            long shift = 0;
+            while (id <= endId) {
+                long position = entryPosition(id);
+                chunk.clear().limit((int) Math.min(chunk.capacity(), entryPosition(endId + 1) - position));
+                readFully(index, chunk, position);
+                for (int i = 0; i < chunk.limit(); i += ENTRY_BYTES, id++) {
+                    if (next <= last && id == ids[next]) {
+                        chunk.putLong(i, lines[next].offset()).putInt(i + Long.BYTES, lines[next].length());
+                        shift = shifts[next++];
+                    } else {
+                        chunk.putLong(i, chunk.getLong(i) + shift);
+                    }
+                }
+                writeAll(index, chunk, position);
+            }
+            writeAll(index, headerBytes(stamp(header.count(), header.deadBytes(), header.rewrites() + 1)), 0);
+        }
+    }
+
+    // Records the removal of the line of task "id": every later line moved "shift" bytes, and "dead" bytes were
+    // turned into tombstones.
+    void removed(int id, long shift, long dead) throws IOException {
+        try (FileChannel index = FileChannel.open(indexPath, READ, WRITE)) {
+            Header header = readHeader(index);
+            int count = header.count();
+            // Later entries are moved left one entry and shifted.
+            ByteBuffer chunk = ByteBuffer.allocate(ENTRY_BYTES * ENTRIES_PER_WRITE);
+            long readPosition = entryPosition(id + 1);
+            long writePosition = entryPosition(id);
+            long end = entryPosition(count + 1);
+            while (readPosition < end) {
+                chunk.clear().limit((int) Math.min(chunk.capacity(), end - readPosition));
+                readFully(index, chunk, readPosition);
+                readPosition += chunk.limit();
+                for (int i = 0; i < chunk.limit(); i += ENTRY_BYTES) {
+                    chunk.putLong(i, chunk.getLong(i) + shift);
+                }
+                writePosition += writeAll(index, chunk, writePosition);
+            }
+            index.truncate(entryPosition(count));
+            writeAll(index, headerBytes(stamp(count - 1, header.deadBytes() + dead, header.rewrites() + 1)), 0);
+        }
+    }
+
+    // Drops the index after a rewrite of the data file. It will be rebuilt on next use.
+    void invalidate() throws IOException {
+        Files.deleteIfExists(indexPath);
+    }
+
+    // Returns a header that matches the data file, rebuilding the index if it is missing or stale.
+    private Header current() throws IOException {
+        long rewrites = ThreadLocalRandom.current().nextLong();  // Any value readers have not seen
+        if (Files.exists(indexPath)) {
+            try (FileChannel index = FileChannel.open(indexPath, READ)) {
+                Header header = readHeader(index);
+                if (header != null && matches(header, index)) return header;
+                if (header != null) rewrites = header.rewrites() + 1;
+            } catch (EOFException e) {
+                // Truncated index. Rebuild it.
+            }
+        }
+        return rebuild(stamp(0, 0, rewrites));
+    }
+
+    private boolean matches(Header header, FileChannel index) throws IOException {
+        Header stamp = stamp(0, 0, 0);
+        return header.dataSize() == stamp.dataSize() && header.dataMtime() == stamp.dataMtime()
+                && index.size() == entryPosition(header.count() + 1);
+    }
+
+    // Scans the data file for line separators. Lines end in '\n'; a preceding '\r' is not part of the line.
+    private Header rebuild(Header stamp) throws IOException {
+        try (FileChannel data = FileChannel.open(dataPath, READ);
+             FileChannel index = FileChannel.open(indexPath, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            ByteBuffer in = ByteBuffer.allocate(SCAN_BUFFER_BYTES);
+            ByteBuffer out = ByteBuffer.allocate(ENTRY_BYTES * ENTRIES_PER_WRITE);
+            long indexPosition = HEADER_BYTES;
+            long position = 0;
+            long lineStart = 0;
+            long deadBytes = 0;
+            boolean blank = true;
+            byte previous = 0;
+            int count = 0;
+            while (data.read(in) != -1) {
+                in.flip();
+                while (in.hasRemaining()) {
+                    byte current = in.get();
+                    if (current == '\n') {
+                        if (blank) {
+                            deadBytes += position + 1 - lineStart;
+                        } else {
+                            int length = (int) (position - lineStart) - (previous == '\r' ? 1 : 0);
+                            indexPosition += putEntry(index, out, indexPosition, lineStart, length);
+                            count++;
+                        }
+                        lineStart = position + 1;
+                        blank = true;
+                    } else if (current != ' ' && current != '\r') {
+                        blank = false;
+                    }
+                    previous = current;
+                    position++;
+                }
+                in.clear();
+            }
+            if (!blank) {  // Last line without separator
+                indexPosition += putEntry(index, out, indexPosition, lineStart, (int) (position - lineStart));
+                count++;
+            } else {
+                deadBytes += position - lineStart;
+            }
+            writeAll(index, out.flip(), indexPosition);
+            Header header = new Header(stamp.dataSize(), stamp.dataMtime(), count, deadBytes, stamp.rewrites());
+            writeAll(index, headerBytes(header), 0);  // Header goes last: a half-built index never looks valid.
+            return header;
+        }
+    }
+
+    private Header stamp(int count, long deadBytes, long rewrites) throws IOException {
+        return new Header(Files.size(dataPath), Files.getLastModifiedTime(dataPath).toMillis(), count, deadBytes,
+                rewrites);
+    }
+
+    // Empty index for a data file that does not exist yet.
+    private void reset() throws IOException {
+        try (FileChannel index = FileChannel.open(indexPath, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            writeAll(index, headerBytes(new Header(0, 0, 0, 0, 0)), 0);
+        }
+    }
+
+    // Null if the index was written by another version.
+    private static Header readHeader(FileChannel index) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(index, header, 0);
+        if (header.getInt() != VERSION) return null;
+        return new Header(header.getLong(), header.getLong(), header.getInt(), header.getLong(), header.getLong());
+    }
+
+    private static ByteBuffer headerBytes(Header header) {
+        return ByteBuffer.allocate(HEADER_BYTES).putInt(VERSION)
+                .putLong(header.dataSize()).putLong(header.dataMtime())
+                .putInt(header.count()).putLong(header.deadBytes()).putLong(header.rewrites()).flip();
+    }
+
+    private static long entryPosition(int id) {
+        return HEADER_BYTES + (long) (id - 1) * ENTRY_BYTES;
+    }
+
+    // Buffers an entry, flushing the buffer when full. Returns the number of bytes flushed.
+    private static int putEntry(FileChannel index, ByteBuffer out, long position, long offset, int length)
+            throws IOException {
+        int flushed = 0;
+        if (out.remaining() < ENTRY_BYTES) {
+            flushed = writeAll(index, out.flip(), position);
+            out.clear();
+        }
+        out.putLong(offset).putInt(length);
+        return flushed;
+    }
+
+    static int writeAll(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read == -1) throw new EOFException("Unexpected end of " + channel);
+            position += read;
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,319 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.*;
+import edu.riesco.exception.EmptyRepositoryException;
+import edu.riesco.exception.TaskNotFoundException;
+import edu.riesco.exception.TaskRepositoryException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+// Binary task store over a memory-mapped file. Tasks are not parsed when the store is opened: only the record
+// offsets are collected, and a task is decoded when it is read. getAll() returns a list that decodes each task
+// on access.
+//
+// File: a header [magic: int][version: int][end: long][task count: int][dead bytes: long] padded to HEADER_BYTES,
+// followed by the records up to "end". Record: [capacity: int][state: byte][status: byte][due epoch day: int]
+// [title length: int][title UTF-8][description length: int][description UTF-8] padded up to "capacity" bytes,
+// so most updates are written in place. Deleted records are marked as dead and dropped by compact().
+// The whole store is mapped at once, so it is limited to 2 GB.
+public class MappedTaskRepository implements TaskRepository, AutoCloseable {
+    private static final int MAGIC = 0x544D4231;  // "TMB1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int END_POSITION = 8;
+    private static final int COUNT_POSITION = 16;
+    private static final int DEAD_POSITION = 20;
+    private static final int STATE_OFFSET = Integer.BYTES;
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES + 1 + 1 + Integer.BYTES;
+    private static final int MIN_RECORD_BYTES = RECORD_HEADER_BYTES + 2 * Integer.BYTES;  // Empty title and description
+    private static final byte LIVE = 1;
+    private static final byte DEAD = 0;
+    private static final int NO_DUE_DATE = Integer.MIN_VALUE;
+    private static final int RECORD_ALIGNMENT = 16;
+    private static final int RECORD_HEADROOM = 16;
+    private static final int INITIAL_MAP_BYTES = 1 << 20;
+    private static final int MOVE_BUFFER_BYTES = 64 * 1024;
+
+    private final Path filePath;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int[] offsets = new int[16];  // Offsets of live records, in ID order.
+    private int count;
+    private int end;
+    private long deadBytes;
+    private int modifications;
+
+    public MappedTaskRepository(String filePath) {
+        this.filePath = Path.of(filePath);
+        try {
+            channel = FileChannel.open(this.filePath,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+        try {
+            if (channel.size() == 0) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_MAP_BYTES);
+                buffer.putInt(0, MAGIC).putInt(Integer.BYTES, VERSION);
+                end = HEADER_BYTES;
+                writeHeader();
+            } else {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                load();
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                channel.close();
+            } catch (IOException closeError) {
+                e.addSuppressed(closeError);
+            }
+            if (e instanceof RuntimeException runtime) throw runtime;
+            throw new TaskRepositoryException(e.getMessage());
+        }
+    }
+
+    // One-shot conversion of a JSON-lines task file, as written by JsonFileTaskRepository. Tasks are appended to
+    // the store at "mappedFile".
+    public static MappedTaskRepository fromJsonFile(String jsonFile, String mappedFile) {
+        MappedTaskRepository repository = new MappedTaskRepository(mappedFile);
+        try (Stream<String> lines = Files.lines(Path.of(jsonFile))) {
+            lines.filter(line -> !line.isBlank()).map(Task::fromJson).forEach(repository::create);
+            return repository;
+        } catch (IOException | UncheckedIOException e) {
+            repository.close();
+            throw new TaskRepositoryException(e.getMessage());
+        }
+    }
+
+    // Writes every task to a JSON-lines file that JsonFileTaskRepository can read.
+    public synchronized void toJsonFile(String jsonFile) {
+        try (BufferedWriter writer = Files.newBufferedWriter(Path.of(jsonFile))) {
+            for (int i = 0; i < count; i++) {
+                writer.write(decode(offsets[i]).toJson());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized int create(Task task) {
+        byte[] record = encode(task, 0);
+        ensureCapacity((long) end + record.length);
+        buffer.put(end, record);
+        if (count == offsets.length) offsets = Arrays.copyOf(offsets, count * 2);
+        offsets[count++] = end;
+        end += record.length;
+        writeHeader();
+        return count;  // Last Task ID. IDs start in 1
+    }
+
+    // The list is read-only and decodes tasks when they are accessed. It fails if the store changes after the call.
+    @Override
+    public synchronized List<Task> getAll() {
+        int[] taskOffsets = Arrays.copyOf(offsets, count);
+        int expectedModifications = modifications;
+        return new AbstractList<>() {
+            @Override
+            public Task get(int index) {
+                synchronized (MappedTaskRepository.this) {
+                    if (modifications != expectedModifications) throw new ConcurrentModificationException();
+                    return decode(taskOffsets[index]);
+                }
+            }
+
+            @Override
+            public int size() {
+                return taskOffsets.length;
+            }
+        };
+    }
+
+    @Override
+    public synchronized Task getById(int id) {
+        return decode(offsets[index(id)]);
+    }
+
+    // "Update" means "put a new task in the same location" to preserve the old Task ID.
+    // The record is overwritten if the new task fits in it; otherwise the records after it are moved.
+    @Override
+    public synchronized void update(int id, Task newTask) {
+        int index = index(id);
+        int offset = offsets[index];
+        int capacity = buffer.getInt(offset);
+        byte[] record = encode(newTask, capacity);
+        if (record.length > capacity) {
+            int shift = record.length - capacity;
+            ensureCapacity((long) end + shift);
+            move(offset + capacity, offset + record.length, end - offset - capacity);
+            for (int i = index + 1; i < count; i++) offsets[i] += shift;
+            end += shift;
+        }
+        buffer.put(offset, record);
+        writeHeader();
+    }
+
+    // Tasks are checked, read and saved without other threads in between.
+    @Override
+    public synchronized void updateAll(Map<Integer, Task> newTasks) {
+        TaskRepository.super.updateAll(newTasks);
+    }
+
+    @Override
+    public synchronized void editAll(Map<Integer, UnaryOperator<Task>> edits) {
+        TaskRepository.super.editAll(edits);
+    }
+
+    @Override
+    public synchronized void delete(int id) {
+        int index = index(id);
+        int offset = offsets[index];
+        buffer.put(offset + STATE_OFFSET, DEAD);
+        deadBytes += buffer.getInt(offset);
+        System.arraycopy(offsets, index + 1, offsets, index, count - index - 1);
+        count--;
+        writeHeader();
+        if (deadBytes > (end - HEADER_BYTES) / 2) compact();
+    }
+
+    // Moves the live records together, dropping deleted ones. Task IDs do not change.
+    public synchronized void compact() {
+        int position = HEADER_BYTES;
+        for (int i = 0; i < count; i++) {
+            int capacity = buffer.getInt(offsets[i]);
+            move(offsets[i], position, capacity);
+            offsets[i] = position;
+            position += capacity;
+        }
+        end = position;
+        deadBytes = 0;
+        writeHeader();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+    }
+
+    // Array index for a task ID. IDs start in 1.
+    private int index(int id) {
+        if (count == 0) {
+            throw new EmptyRepositoryException("Operation not allowed in an empty repository.");
+        }
+        if (id < 1 || id > count) {
+            throw new TaskNotFoundException("Task with ID " + id + " not found.");
+        }
+        return id - 1;
+    }
+
+    private void load() {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new TaskRepositoryException("Not a task store: " + filePath);
+        }
+        long storedEnd = buffer.getLong(END_POSITION);
+        if (storedEnd < HEADER_BYTES || storedEnd > buffer.capacity()) {
+            throw new TaskRepositoryException("Corrupt task store: " + filePath + ": end " + storedEnd);
+        }
+        end = (int) storedEnd;
+        deadBytes = buffer.getLong(DEAD_POSITION);
+        offsets = new int[Math.max(16, Math.min(buffer.getInt(COUNT_POSITION), end / MIN_RECORD_BYTES))];
+        for (int offset = HEADER_BYTES; offset < end; offset += buffer.getInt(offset)) {
+            // A zero-filled or torn record, as a crash while the file grows may leave, would never end the loop.
+            int capacity = buffer.getInt(offset);
+            if (capacity < MIN_RECORD_BYTES || capacity > end - offset) {
+                throw new TaskRepositoryException("Corrupt task store: " + filePath + ": record at " + offset);
+            }
+            if (buffer.get(offset + STATE_OFFSET) == LIVE) {
+                if (count == offsets.length) offsets = Arrays.copyOf(offsets, count * 2);
+                offsets[count++] = offset;
+            }
+        }
+    }
+
+    private void writeHeader() {
+        buffer.putLong(END_POSITION, end).putInt(COUNT_POSITION, count).putLong(DEAD_POSITION, deadBytes);
+        modifications++;
+    }
+
+    // Remaps the file with room for at least "required" bytes.
+    private void ensureCapacity(long required) {
+        if (required <= buffer.capacity()) return;
+        if (required > Integer.MAX_VALUE) throw new TaskRepositoryException("Task store is full: " + filePath);
+        long size = Math.min(Integer.MAX_VALUE, Math.max(required, 2L * buffer.capacity()));
+        try {
+            buffer.force();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+    }
+
+    // Copies "length" bytes from "from" to "to" in chunks, in the direction that is safe when both ranges overlap.
+    private void move(int from, int to, int length) {
+        if (from == to) return;
+        byte[] chunk = new byte[Math.min(length, MOVE_BUFFER_BYTES)];
+        for (int done = 0; done < length; ) {
+            int size = Math.min(chunk.length, length - done);
+            int offset = to > from ? length - done - size : done;
+            buffer.get(from + offset, chunk, 0, size);
+            buffer.put(to + offset, chunk, 0, size);
+            done += size;
+        }
+    }
+
+    // Record bytes for a task, padded up to "minimumCapacity" if it is bigger than the task needs.
+    private static byte[] encode(Task task, int minimumCapacity) {
+        byte[] title = task.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_HEADER_BYTES + Integer.BYTES + title.length + Integer.BYTES + description.length;
+        int capacity = length <= minimumCapacity ? minimumCapacity
+                : (length + RECORD_HEADROOM + RECORD_ALIGNMENT - 1) / RECORD_ALIGNMENT * RECORD_ALIGNMENT;
+        int epochDay = task.getDueDate() instanceof DueDate dueDate ? (int) dueDate.epochDay() : NO_DUE_DATE;
+        return ByteBuffer.allocate(capacity)
+                .putInt(capacity).put(LIVE).put((byte) task.getStatus().ordinal()).putInt(epochDay)
+                .putInt(title.length).put(title).putInt(description.length).put(description)
+                .array();
+    }
+
+    // Stored tasks are not checked for overdue dates, as they may have become overdue after being saved.
+    private Task decode(int offset) {
+        TaskStatus status = TaskStatus.values()[buffer.get(offset + STATE_OFFSET + 1)];
+        int epochDay = buffer.getInt(offset + STATE_OFFSET + 2);
+        int titleOffset = offset + RECORD_HEADER_BYTES;
+        String title = string(titleOffset);
+        String description = string(titleOffset + Integer.BYTES + buffer.getInt(titleOffset));
+        return Task.from(title, description, dueDate(epochDay), status);
+    }
+
+    private String string(int offset) {
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        buffer.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static TaskDueDate dueDate(int epochDay) {
+        return epochDay == NO_DUE_DATE ? new NoDueDate() : DueDate.ofEpochDay(epochDay);
+    }
+}
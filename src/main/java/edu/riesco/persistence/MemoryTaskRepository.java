@@ -1,50 +1,204 @@
 package edu.riesco.persistence;
 
+import edu.riesco.domain.IdMode;
 import edu.riesco.domain.Task;
 import edu.riesco.domain.TaskRepository;
 import edu.riesco.exception.EmptyRepositoryException;
 import edu.riesco.exception.TaskNotFoundException;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
+// Thread-safe. Creating and deleting tasks changes the list, so it takes the list lock exclusively.
+// Reading and updating tasks share the list lock and take only the lock of the stripe of each task ID, so
+// threads working on different tasks do not wait for each other.
+// With stable IDs, tasks are found through an IntSlotMap from ID to list slot. Deleted tasks leave an empty
+// slot, which is dropped once half of the slots are empty.
 public class MemoryTaskRepository implements TaskRepository {
-    private final List<Task> tasks = new ArrayList<>();
+    private static final int STRIPES = 16;
+
+    private final IdMode idMode;
+    private final List<Task> tasks = new ArrayList<>();  // Slots. null for deleted tasks with stable IDs.
+    private final ReadWriteLock listLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    // Stable IDs only
+    private final IntSlotMap slotsById = new IntSlotMap();
+    private final List<Integer> idsBySlot = new ArrayList<>();
+    private int nextId = 1;
+
+    public MemoryTaskRepository() {
+        this(IdMode.POSITIONAL);
+    }
+
+    public MemoryTaskRepository(IdMode idMode) {
+        this.idMode = idMode;
+        Arrays.setAll(stripes, i -> new ReentrantLock());
+    }
+
+    @Override
+    public IdMode idMode() {
+        return idMode;
+    }
 
     @Override
     public int create(Task task) {
-        tasks.add(task);
-        return tasks.size();  // Last Task ID. IDs start in 1
+        listLock.writeLock().lock();
+        try {
+            return append(task);
+        } finally {
+            listLock.writeLock().unlock();
+        }
     }
 
     @Override
-    public Task getById(int id) {
-        if (tasks.isEmpty()) {
-            throw new EmptyRepositoryException("Operation not allowed in an empty repository.");
+    public int createAll(List<Task> newTasks) {
+        listLock.writeLock().lock();
+        try {
+            int id = 0;
+            for (Task task : newTasks) id = append(task);
+            return id;
+        } finally {
+            listLock.writeLock().unlock();
         }
+    }
+
+    @Override
+    public Task getById(int id) {
+        listLock.readLock().lock();
         try {
-            return tasks.get(id - 1);  // IDs start in 1, List index starts in 0
-        } catch (IndexOutOfBoundsException e) {
-            throw new TaskNotFoundException("Task with id " + id + " not found.");
+            int slot = slot(id);
+            ReentrantLock stripe = stripe(id);
+            stripe.lock();
+            try {
+                return tasks.get(slot);
+            } finally {
+                stripe.unlock();
+            }
+        } finally {
+            listLock.readLock().unlock();
         }
     }
 
+    // A copy: later changes are not seen through it.
     @Override
     public List<Task> getAll() {
-        return Collections.unmodifiableList(tasks);
+        listLock.writeLock().lock();
+        try {
+            return tasks.stream().filter(Objects::nonNull).toList();
+        } finally {
+            listLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Stream<Map.Entry<Integer, Task>> streamWithIds() {
+        if (idMode == IdMode.POSITIONAL) return TaskRepository.super.streamWithIds();
+        listLock.writeLock().lock();
+        try {
+            List<Map.Entry<Integer, Task>> entries = new ArrayList<>(slotsById.size());
+            for (int slot = 0; slot < tasks.size(); slot++) {
+                if (tasks.get(slot) != null) entries.add(Map.entry(idsBySlot.get(slot), tasks.get(slot)));
+            }
+            return entries.stream();
+        } finally {
+            listLock.writeLock().unlock();
+        }
     }
 
     // "Update" means "put a new task in the same location" to preserve the old Task ID.
     @Override
     public void update(int id, Task newTask) {
-        getById(id);  // To check if the repository is empty or the ID does not exist.
-        tasks.set(id - 1, newTask);
+        editAll(Map.of(id, oldTask -> newTask));
+    }
+
+    @Override
+    public void updateAll(Map<Integer, Task> newTasks) {
+        Map<Integer, UnaryOperator<Task>> edits = new HashMap<>();
+        newTasks.forEach((id, newTask) -> edits.put(id, oldTask -> newTask));
+        editAll(edits);
+    }
+
+    // The stripes of all the IDs are locked, in stripe order, before any task is read.
+    @Override
+    public void editAll(Map<Integer, UnaryOperator<Task>> edits) {
+        listLock.readLock().lock();
+        try {
+            Map<Integer, Integer> slots = new HashMap<>();
+            edits.keySet().forEach(id -> slots.put(id, slot(id)));
+            BitSet lockedStripes = new BitSet(STRIPES);
+            edits.keySet().forEach(id -> lockedStripes.set(id % STRIPES));
+            lockedStripes.stream().forEach(stripe -> stripes[stripe].lock());
+            try {
+                Map<Integer, Task> newTasks = new HashMap<>();
+                edits.forEach((id, edit) -> newTasks.put(id, edit.apply(tasks.get(slots.get(id)))));
+                newTasks.forEach((id, newTask) -> tasks.set(slots.get(id), newTask));
+            } finally {
+                lockedStripes.stream().forEach(stripe -> stripes[stripe].unlock());
+            }
+        } finally {
+            listLock.readLock().unlock();
+        }
     }
 
     @Override
     public void delete(int id) {
-        Task task = getById(id);  // To check if the repository is empty or the ID does not exist.
-        tasks.remove(task);
+        listLock.writeLock().lock();
+        try {
+            int slot = slot(id);
+            if (idMode == IdMode.POSITIONAL) {
+                tasks.remove(slot);
+                return;
+            }
+            tasks.set(slot, null);
+            slotsById.remove(id);
+            if (slotsById.size() < tasks.size() / 2) compact();
+        } finally {
+            listLock.writeLock().unlock();
+        }
+    }
+
+    // Returns the ID of the new task.
+    private int append(Task task) {
+        tasks.add(task);
+        if (idMode == IdMode.POSITIONAL) return tasks.size();  // Last Task ID. IDs start in 1
+        slotsById.put(nextId, tasks.size() - 1);
+        idsBySlot.add(nextId);
+        return nextId++;
+    }
+
+    // List slot of a task. Checks if the repository is empty or the ID does not exist.
+    private int slot(int id) {
+        int size = idMode == IdMode.POSITIONAL ? tasks.size() : slotsById.size();
+        if (size == 0) {
+            throw new EmptyRepositoryException("Operation not allowed in an empty repository.");
+        }
+        int slot = idMode == IdMode.POSITIONAL ? (id >= 1 && id <= size ? id - 1 : -1) : slotsById.get(id);
+        if (slot < 0) {
+            throw new TaskNotFoundException("Task with id " + id + " not found.");
+        }
+        return slot;
+    }
+
+    // Drops the empty slots. IDs do not change.
+    private void compact() {
+        int live = 0;
+        slotsById.clear();
+        for (int slot = 0; slot < tasks.size(); slot++) {
+            if (tasks.get(slot) == null) continue;
+            tasks.set(live, tasks.get(slot));
+            idsBySlot.set(live, idsBySlot.get(slot));
+            slotsById.put(idsBySlot.get(live), live);
+            live++;
+        }
+        tasks.subList(live, tasks.size()).clear();
+        idsBySlot.subList(live, idsBySlot.size()).clear();
+    }
+
+    private ReentrantLock stripe(int id) {
+        return stripes[id % STRIPES];
     }
 }
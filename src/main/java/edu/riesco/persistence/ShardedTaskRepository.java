@@ -0,0 +1,448 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.IdMode;
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskRepository;
+import edu.riesco.exception.EmptyRepositoryException;
+import edu.riesco.exception.TaskNotFoundException;
+import edu.riesco.exception.TaskRepositoryException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Tasks spread over several JSON-lines files (shards), so that threads and processes working on tasks of different
+// shards do not wait for each other and no file holds every task. Shards can be spread over several directories.
+// IDs are always stable: with positional IDs, every delete would change the IDs of the tasks of every shard.
+// The task with ID "id" is in shard id % shards, and its line keeps the ID, so the shard of any task is known from
+// its ID alone. Consecutive new tasks get consecutive IDs, so they go to the shards in turn.
+// getAll() reads the shards in parallel and merges them in ID order. The streams merge them as they are read.
+// Operations on tasks of several shards are atomic in each shard, not across shards.
+//
+// The directory holds "shards", with the shard count and the generation of the shard files
+// "tasks-<generation>-<shard>.json". reshard() moves the tasks to a new generation of shards, keeping their IDs,
+// while every shard is locked. Each operation locks its shard and then checks that the generation is still the
+// current one, or starts again with the new shards, so the store can be resharded while it is used, from any process.
+public class ShardedTaskRepository implements TaskRepository {
+    private static final String LAYOUT_FILE = "shards";
+    private static final int RESHARD_BATCH = 10_000;
+
+    private final Path layoutPath;
+    private final List<Path> shardDirectories;
+    private final StoreLock layoutLock;
+    private final AtomicInteger nextId = new AtomicInteger();  // 0 until the first create
+    private volatile Layout loaded;
+
+    // Shards of one generation.
+    private record Layout(int generation, JsonFileTaskRepository[] shards, Path[] paths) {
+
+        int shardOf(int id) {
+            return Math.floorMod(id, shards.length);
+        }
+    }
+
+    // Thrown when a shard is locked after a reshard: the operation starts again with the new shards.
+    private static final class Resharded extends RuntimeException {
+        Resharded() {
+            super(null, null, false, false);
+        }
+    }
+
+    public ShardedTaskRepository(Path directory, int shards) {
+        this(directory, shards, List.of(directory));
+    }
+
+    // Shard i is in shardDirectories[i % shardDirectories.size()]. "shards" is only used if the store is new.
+    public ShardedTaskRepository(Path directory, int shards, List<Path> shardDirectories) {
+        if (shards < 1) throw new IllegalArgumentException("Shards must be at least 1: " + shards);
+        this.layoutPath = directory.resolve(LAYOUT_FILE);
+        this.shardDirectories = List.copyOf(shardDirectories);
+        this.layoutLock = StoreLock.forFile(layoutPath);
+        try {
+            Files.createDirectories(directory);
+            for (Path shardDirectory : this.shardDirectories) Files.createDirectories(shardDirectory);
+            layoutLock.lock();
+            try {
+                if (!Files.exists(layoutPath)) writeLayout(shards, 1);
+            } finally {
+                layoutLock.unlock();
+            }
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+    }
+
+    @Override
+    public IdMode idMode() {
+        return IdMode.STABLE;
+    }
+
+    public int shards() {
+        return layout().shards().length;
+    }
+
+    @Override
+    public int create(Task task) {
+        return createAll(List.of(task));
+    }
+
+    // Each task is given the next ID of this repository and saved in the shard of that ID, so IDs follow the order
+    // of creation as with one file. If another process took that ID, the task gets the next free ID of the same
+    // shard. The shards save their part in parallel. Tasks not saved because of a reshard are created again.
+    @Override
+    public int createAll(List<Task> tasks) {
+        if (tasks.isEmpty()) return 0;
+        Layout current = layout();
+        int shardCount = current.shards().length;
+        int first = reserveIds(tasks.size());
+        List<List<Integer>> parts = new ArrayList<>();  // Indexes of the tasks of each shard
+        for (int shard = 0; shard < shardCount; shard++) parts.add(new ArrayList<>());
+        for (int i = 0; i < tasks.size(); i++) parts.get(current.shardOf(first + i)).add(i);
+
+        int[] ids = new int[tasks.size()];  // 0 for tasks not saved
+        IntStream shards = IntStream.range(0, shardCount).filter(shard -> !parts.get(shard).isEmpty());
+        (tasks.size() > 1 ? shards.parallel() : shards).forEach(shard -> {
+            List<Integer> part = parts.get(shard);
+            Iterator<Integer> indexes = part.iterator();
+            try {
+                onShard(current, shard, repository -> repository.createAll(part.stream().map(tasks::get).toList(),
+                        free -> {
+                            int i = indexes.next();
+                            int wanted = first + i;
+                            ids[i] = wanted >= free ? wanted : free + Math.floorMod(shard - free, shardCount);
+                            return ids[i];
+                        }));
+            } catch (Resharded e) {
+                // Created again below
+            }
+        });
+        nextId.accumulateAndGet(Arrays.stream(ids).max().orElse(0) + 1, Math::max);
+
+        List<Task> unsaved = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            if (ids[i] == 0) unsaved.add(tasks.get(i));
+        }
+        if (unsaved.isEmpty()) return ids[tasks.size() - 1];
+        int lastUnsavedId = createAll(unsaved);
+        return ids[tasks.size() - 1] != 0 ? ids[tasks.size() - 1] : lastUnsavedId;
+    }
+
+    // First of "count" consecutive IDs for new tasks. Started from the shards the first time.
+    private int reserveIds(int count) {
+        if (nextId.get() == 0) {
+            int stored = Arrays.stream(layout().shards()).mapToInt(JsonFileTaskRepository::nextStableId).max().orElse(1);
+            nextId.compareAndSet(0, stored);
+        }
+        return nextId.getAndAdd(count);
+    }
+
+    @Override
+    public List<Task> getAll() {
+        while (true) {
+            Layout current = layout();
+            List<List<Map.Entry<Integer, Task>>> parts = IntStream.range(0, current.shards().length).parallel()
+                    .mapToObj(shard -> {
+                        try {
+                            return onShard(current, shard, repository -> {
+                                try (Stream<Map.Entry<Integer, Task>> tasks = repository.streamWithIds()) {
+                                    return tasks.toList();
+                                }
+                            });
+                        } catch (Resharded e) {
+                            return null;
+                        }
+                    })
+                    .toList();
+            if (parts.contains(null)) continue;  // Read again from the new shards
+            List<Task> tasks = new ArrayList<>();
+            merge(parts.stream().map(List::iterator).toList()).forEachRemaining(task -> tasks.add(task.getValue()));
+            return Collections.unmodifiableList(tasks);
+        }
+    }
+
+    @Override
+    public Stream<Task> stream() {
+        return streamWithIds().map(Map.Entry::getValue);
+    }
+
+    // Every shard stays locked until the stream is closed.
+    @Override
+    public Stream<Map.Entry<Integer, Task>> streamWithIds() {
+        while (true) {
+            Layout current = layout();
+            List<Stream<Map.Entry<Integer, Task>>> streams = new ArrayList<>();
+            try {
+                for (JsonFileTaskRepository shard : current.shards()) streams.add(shard.streamWithIds());
+            } catch (RuntimeException e) {
+                streams.forEach(Stream::close);
+                throw e;
+            }
+            if (layout() != current) {  // Resharded before every shard was locked
+                streams.forEach(Stream::close);
+                deleteLocks(current);
+                continue;
+            }
+            Iterator<Map.Entry<Integer, Task>> merged = merge(streams.stream().map(Stream::iterator).toList());
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED), false)
+                    .onClose(() -> streams.forEach(Stream::close));
+        }
+    }
+
+    @Override
+    public Task getById(int id) {
+        return onShard(id, repository -> repository.getById(id));
+    }
+
+    @Override
+    public void update(int id, Task newTask) {
+        updateAll(Map.of(id, newTask));
+    }
+
+    // Every ID is checked before anything is saved.
+    @Override
+    public void updateAll(Map<Integer, Task> newTasks) {
+        newTasks.keySet().forEach(this::getById);
+        forEachShard(newTasks, JsonFileTaskRepository::updateAll);
+    }
+
+    @Override
+    public void editAll(Map<Integer, UnaryOperator<Task>> edits) {
+        edits.keySet().forEach(this::getById);
+        forEachShard(edits, JsonFileTaskRepository::editAll);
+    }
+
+    @Override
+    public void delete(int id) {
+        onShard(id, repository -> {
+            repository.delete(id);
+            return null;
+        });
+    }
+
+    // Moves every task to "shards" new shards, keeping its ID, and deletes the old shard files. Operations on the
+    // store wait until it ends and then use the new shards.
+    public void reshard(int shards) {
+        if (shards < 1) throw new IllegalArgumentException("Shards must be at least 1: " + shards);
+        try {
+            layoutLock.lock();
+            try {
+                Layout old = layout();
+                List<StoreLock> oldLocks = Arrays.stream(old.paths()).map(StoreLock::forFile).toList();
+                for (StoreLock lock : oldLocks) lock.lock();
+                try {
+                    Layout next = newLayout(old.generation() + 1, shards);
+                    for (Path path : next.paths()) deleteShardFiles(path);  // Left by a reshard that failed
+                    int nextId = Arrays.stream(old.shards()).mapToInt(JsonFileTaskRepository::nextStableId).max()
+                            .orElse(1);
+                    copyTasks(old, next);
+                    for (Path path : next.paths()) {  // IDs of deleted tasks are not given again
+                        Files.writeString(path.resolveSibling(path.getFileName() + ".nextid"), String.valueOf(nextId));
+                    }
+                    writeLayout(shards, next.generation());
+                    loaded = next;
+                    this.nextId.accumulateAndGet(nextId, Math::max);
+                    for (Path path : old.paths()) deleteShardFiles(path);
+                } finally {
+                    for (StoreLock lock : oldLocks.reversed()) lock.unlock();
+                }
+            } finally {
+                layoutLock.unlock();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+    }
+
+    // Tasks in ID order, appended to their new shards in batches.
+    private static void copyTasks(Layout old, Layout next) {
+        List<List<Map.Entry<Integer, Task>>> batches = new ArrayList<>();
+        for (int shard = 0; shard < next.shards().length; shard++) batches.add(new ArrayList<>());
+        List<Stream<Map.Entry<Integer, Task>>> streams = Arrays.stream(old.shards())
+                .map(JsonFileTaskRepository::streamWithIds).toList();
+        try {
+            Iterator<Map.Entry<Integer, Task>> tasks = merge(streams.stream().map(Stream::iterator).toList());
+            while (tasks.hasNext()) {
+                Map.Entry<Integer, Task> task = tasks.next();
+                int shard = next.shardOf(task.getKey());
+                batches.get(shard).add(task);
+                if (batches.get(shard).size() == RESHARD_BATCH) append(next.shards()[shard], batches.get(shard));
+            }
+            for (int shard = 0; shard < next.shards().length; shard++) append(next.shards()[shard], batches.get(shard));
+        } finally {
+            streams.forEach(Stream::close);
+        }
+    }
+
+    // Saves the tasks with their IDs and empties the batch.
+    private static void append(JsonFileTaskRepository shard, List<Map.Entry<Integer, Task>> batch) {
+        if (batch.isEmpty()) return;
+        Iterator<Map.Entry<Integer, Task>> ids = batch.iterator();
+        shard.createAll(batch.stream().map(Map.Entry::getValue).toList(), free -> ids.next().getKey());
+        batch.clear();
+    }
+
+    // Merges iterators of tasks in ID order into one in ID order.
+    private static Iterator<Map.Entry<Integer, Task>> merge(List<Iterator<Map.Entry<Integer, Task>>> iterators) {
+        record Head(Map.Entry<Integer, Task> task, Iterator<Map.Entry<Integer, Task>> rest) {
+        }
+        PriorityQueue<Head> heads = new PriorityQueue<>(Comparator.comparingInt(head -> head.task().getKey()));
+        for (Iterator<Map.Entry<Integer, Task>> iterator : iterators) {
+            if (iterator.hasNext()) heads.add(new Head(iterator.next(), iterator));
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Map.Entry<Integer, Task> next() {
+                if (heads.isEmpty()) throw new NoSuchElementException();
+                Head head = heads.remove();
+                if (head.rest().hasNext()) heads.add(new Head(head.rest().next(), head.rest()));
+                return head.task();
+            }
+        };
+    }
+
+    // Runs the operation once per shard, with the items (ID -> item) of the tasks in that shard.
+    private <T> void forEachShard(Map<Integer, T> items, BiConsumer<JsonFileTaskRepository, Map<Integer, T>> operation) {
+        Map<Integer, T> remaining = new TreeMap<>(items);
+        while (!remaining.isEmpty()) {
+            Layout current = layout();
+            Map<Integer, Map<Integer, T>> byShard = new TreeMap<>();
+            remaining.forEach((id, item) -> byShard.computeIfAbsent(current.shardOf(id), shard -> new TreeMap<>())
+                    .put(id, item));
+            try {
+                for (Map.Entry<Integer, Map<Integer, T>> shardItems : byShard.entrySet()) {
+                    onShard(current, shardItems.getKey(), repository -> {
+                        operation.accept(repository, shardItems.getValue());
+                        return null;
+                    });
+                    remaining.keySet().removeAll(shardItems.getValue().keySet());
+                }
+            } catch (Resharded e) {
+                // The rest go to the new shards
+            }
+        }
+    }
+
+    // Runs the operation on the shard of the task with that ID. A missing shard file means only that the shard is
+    // empty, so the task is not found unless every shard is empty.
+    private <T> T onShard(int id, Function<JsonFileTaskRepository, T> operation) {
+        try {
+            while (true) {
+                Layout current = layout();
+                try {
+                    return onShard(current, current.shardOf(id), operation);
+                } catch (Resharded e) {
+                    // Again with the new shards
+                }
+            }
+        } catch (EmptyRepositoryException e) {
+            if (hasTasks()) throw new TaskNotFoundException("Task with ID " + id + " not found.");
+            throw e;
+        }
+    }
+
+    // Runs the operation with the shard locked. Throws Resharded if the layout changed before the lock was taken.
+    private <T> T onShard(Layout current, int shard, Function<JsonFileTaskRepository, T> operation) {
+        StoreLock lock = StoreLock.forFile(current.paths()[shard]);
+        try {
+            lock.lock();
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+        boolean resharded = false;
+        try {
+            resharded = layout() != current;
+            if (resharded) throw new Resharded();
+            return operation.apply(current.shards()[shard]);
+        } finally {
+            try {
+                lock.unlock();
+            } catch (IOException e) {
+                throw new TaskRepositoryException(e.getMessage());
+            }
+            if (resharded) deleteLocks(current);
+        }
+    }
+
+    // Of an old layout, whose lock files were created again by an operation that found it replaced.
+    private static void deleteLocks(Layout old) {
+        try {
+            for (Path path : old.paths()) StoreLock.deleteLockFile(path);
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+    }
+
+    private boolean hasTasks() {
+        try (Stream<Task> tasks = stream()) {
+            return tasks.findAny().isPresent();
+        }
+    }
+
+    // The layout in use. The generation in the layout file is read on every call: the file is a few bytes, and
+    // neither its modification time nor its file key tells apart two reshards within one clock tick, as the file
+    // moved over it may get the i-node of the one it replaced before.
+    private Layout layout() {
+        try {
+            String[] fields = Files.readString(layoutPath).trim().split(" ");
+            if (fields.length != 2) throw new TaskRepositoryException("Invalid shards file: " + layoutPath);
+            int shards = Integer.parseInt(fields[0]);
+            int generation = Integer.parseInt(fields[1]);
+            Layout current = loaded;
+            if (current != null && current.generation() == generation) return current;
+            return reload(shards, generation);
+        } catch (IOException | NumberFormatException e) {
+            throw new TaskRepositoryException("Invalid shards file: " + layoutPath + ": " + e.getMessage());
+        }
+    }
+
+    // The same Layout object is kept while the generation does not change, as operations compare them. Generations
+    // only grow: a thread that read the file before a newer one was loaded gets the newer one.
+    private synchronized Layout reload(int shards, int generation) {
+        Layout current = loaded;
+        if (current != null && current.generation() >= generation) return current;
+        loaded = newLayout(generation, shards);
+        return loaded;
+    }
+
+    private Layout newLayout(int generation, int shards) {
+        JsonFileTaskRepository[] repositories = new JsonFileTaskRepository[shards];
+        Path[] paths = new Path[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            paths[shard] = shardDirectories.get(shard % shardDirectories.size())
+                    .resolve("tasks-" + generation + "-" + shard + ".json");
+            repositories[shard] = new JsonFileTaskRepository(paths[shard].toString(),
+                    JsonFileTaskRepository.Layout.LINES, IdMode.STABLE);
+        }
+        return new Layout(generation, repositories, paths);
+    }
+
+    // Written to a temporary file and moved over the old one, so it is never read half written.
+    private void writeLayout(int shards, int generation) throws IOException {
+        Path temporary = layoutPath.resolveSibling(LAYOUT_FILE + ".tmp");
+        Files.writeString(temporary, shards + " " + generation + "\n");
+        Files.move(temporary, layoutPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // With its lock file, which the shards of a later generation never use again.
+    private static void deleteShardFiles(Path path) throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(path.resolveSibling(path.getFileName() + ".idx"));
+        Files.deleteIfExists(path.resolveSibling(path.getFileName() + ".nextid"));
+        StoreLock.deleteLockFile(path);
+    }
+}
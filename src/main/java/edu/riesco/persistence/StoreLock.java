@@ -0,0 +1,103 @@
+package edu.riesco.persistence;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+// Exclusive lock on a data file, for the threads of this process and for other processes.
+// Threads take a ReentrantLock shared by every repository of the same file. The first level of it also takes
+// a FileChannel lock on "<file>.lock", which other processes honour. The lock file is separate from the data file
+// because closing any channel of a file may release the locks the process holds on it.
+// The locks are kept while a repository uses them, so the locks of files that are no longer used are dropped.
+final class StoreLock {
+    private static final ConcurrentMap<Path, LockReference> LOCKS = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<StoreLock> UNUSED = new ReferenceQueue<>();
+
+    private final Path lockPath;
+    private final ReentrantLock threadLock = new ReentrantLock();
+    private FileChannel channel;
+    private FileLock fileLock;
+
+    private StoreLock(Path lockPath) {
+        this.lockPath = lockPath;
+    }
+
+    private static final class LockReference extends WeakReference<StoreLock> {
+        private final Path dataPath;
+
+        LockReference(Path dataPath, StoreLock lock) {
+            super(lock, UNUSED);
+            this.dataPath = dataPath;
+        }
+    }
+
+    static StoreLock forFile(Path dataPath) {
+        for (Reference<? extends StoreLock> unused; (unused = UNUSED.poll()) != null; ) {
+            LOCKS.remove(((LockReference) unused).dataPath, unused);
+        }
+        Path absolute = dataPath.toAbsolutePath().normalize();
+        while (true) {
+            LockReference reference = LOCKS.get(absolute);
+            StoreLock lock = reference == null ? null : reference.get();
+            if (lock != null) return lock;
+            lock = new StoreLock(lockPath(absolute));
+            LockReference created = new LockReference(absolute, lock);
+            if (reference == null ? LOCKS.putIfAbsent(absolute, created) == null
+                    : LOCKS.replace(absolute, reference, created)) {
+                return lock;
+            }
+        }
+    }
+
+    // Of a data file that is no longer used. Threads that hold or wait for its lock keep it, and must find out that
+    // the file is gone once they have it.
+    static void deleteLockFile(Path dataPath) throws IOException {
+        Files.deleteIfExists(lockPath(dataPath.toAbsolutePath().normalize()));
+    }
+
+    private static Path lockPath(Path dataPath) {
+        return dataPath.resolveSibling(dataPath.getFileName() + ".lock");
+    }
+
+    // Reentrant: the file is locked once by the outermost call.
+    void lock() throws IOException {
+        threadLock.lock();
+        if (threadLock.getHoldCount() > 1) return;
+        try {
+            channel = FileChannel.open(lockPath, CREATE, WRITE);
+            fileLock = channel.lock();
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) channel.close();
+            channel = null;
+            threadLock.unlock();
+            throw e;
+        }
+    }
+
+    boolean isHeldByCurrentThread() {
+        return threadLock.isHeldByCurrentThread();
+    }
+
+    void unlock() throws IOException {
+        try {
+            if (threadLock.getHoldCount() == 1) {
+                fileLock.release();
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            threadLock.unlock();
+        }
+    }
+}
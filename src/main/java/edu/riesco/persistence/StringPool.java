@@ -0,0 +1,148 @@
+package edu.riesco.persistence;
+
+import edu.riesco.exception.TaskRepositoryException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Strings stored once each as UTF-8 bytes in one array, and known by a number. Equal strings get the same number,
+// found through an open-addressing hash table over the bytes, and are counted, so a string can be released by each
+// of its users. Released strings leave their bytes until compact(), which the owner calls when needsCompaction() and
+// which renumbers the strings left.
+// Not thread-safe.
+final class StringPool {
+    private static final int MIN_DEAD_STRINGS = 1024;
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;  // Some VMs keep header words in arrays
+
+    private byte[] bytes = new byte[1024];
+    private int used;  // Bytes
+    private int[] offsets = new int[64];  // Strings are stored one after another, so each one ends where the next starts
+    private int[] references = new int[64];  // 0 for released strings
+    private int count;  // Strings, including the released ones
+    private int dead;  // Released strings
+    private int[] table = new int[128];  // String number + 1, 0 for empty buckets
+
+    // Number of the string, counting one more user of it.
+    int add(String string) {
+        byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(utf8, 0, utf8.length);
+        int bucket = hash & (table.length - 1);
+        while (table[bucket] != 0) {
+            int number = table[bucket] - 1;
+            if (Arrays.equals(bytes, offsets[number], end(number), utf8, 0, utf8.length)) {
+                references[number]++;
+                return number;
+            }
+            bucket = (bucket + 1) & (table.length - 1);
+        }
+        long needed = (long) used + utf8.length;
+        if (needed > MAX_ARRAY_LENGTH) {
+            throw new TaskRepositoryException("String pool full: " + used + " bytes of strings, and "
+                    + utf8.length + " more do not fit in an array");
+        }
+        if (needed > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(grown(bytes.length), (int) needed));
+        if (count == offsets.length) {
+            if (count == MAX_ARRAY_LENGTH) throw new TaskRepositoryException("String pool full: " + count + " strings");
+            offsets = Arrays.copyOf(offsets, grown(count));
+            references = Arrays.copyOf(references, grown(count));
+        }
+        int number = count++;
+        System.arraycopy(utf8, 0, bytes, used, utf8.length);
+        offsets[number] = used;
+        references[number] = 1;
+        used += utf8.length;
+        table[bucket] = number + 1;
+        if (size() * 4 > table.length * 3) rehash(table.length * 2);  // Load factor 0.75
+        return number;
+    }
+
+    String get(int number) {
+        return new String(bytes, offsets[number], end(number) - offsets[number], StandardCharsets.UTF_8);
+    }
+
+    // One user less. The string is dropped from the table when it has none.
+    void release(int number) {
+        if (--references[number] > 0) return;
+        dead++;
+        int bucket = hash(bytes, offsets[number], end(number)) & (table.length - 1);
+        while (table[bucket] != number + 1) bucket = (bucket + 1) & (table.length - 1);
+        // Backward shift: later strings of the same probe sequence move into the empty bucket.
+        int empty = bucket;
+        for (int next = (empty + 1) & (table.length - 1); table[next] != 0; next = (next + 1) & (table.length - 1)) {
+            int other = table[next] - 1;
+            int home = hash(bytes, offsets[other], end(other)) & (table.length - 1);
+            if (((next - home) & (table.length - 1)) >= ((next - empty) & (table.length - 1))) {
+                table[empty] = table[next];
+                empty = next;
+            }
+        }
+        table[empty] = 0;
+    }
+
+    // Once released strings are more than the strings in use.
+    boolean needsCompaction() {
+        return dead > MIN_DEAD_STRINGS && dead * 2 > count;
+    }
+
+    // Drops the released strings. Returns the new number of each old one, -1 for the released ones.
+    int[] compact() {
+        int[] numbers = new int[count];
+        int liveBytes = 0;
+        for (int number = 0; number < count; number++) {
+            if (references[number] > 0) liveBytes += end(number) - offsets[number];
+        }
+        byte[] newBytes = new byte[Math.max(1024, liveBytes)];
+        int live = 0;
+        int position = 0;
+        for (int number = 0; number < count; number++) {
+            if (references[number] == 0) {
+                numbers[number] = -1;
+                continue;
+            }
+            int length = end(number) - offsets[number];
+            System.arraycopy(bytes, offsets[number], newBytes, position, length);
+            offsets[live] = position;  // live <= number, so nothing still to be read is overwritten
+            references[live] = references[number];
+            position += length;
+            numbers[number] = live++;
+        }
+        bytes = newBytes;
+        used = position;
+        count = live;
+        dead = 0;
+        int buckets = 128;
+        while (buckets * 3 < live * 4 + 4) buckets *= 2;
+        rehash(buckets);
+        return numbers;
+    }
+
+    int size() {
+        return count - dead;
+    }
+
+    private void rehash(int buckets) {
+        table = new int[buckets];
+        for (int number = 0; number < count; number++) {
+            if (references[number] == 0) continue;
+            int bucket = hash(bytes, offsets[number], end(number)) & (buckets - 1);
+            while (table[bucket] != 0) bucket = (bucket + 1) & (buckets - 1);
+            table[bucket] = number + 1;
+        }
+    }
+
+    private int end(int number) {
+        return number + 1 < count ? offsets[number + 1] : used;
+    }
+
+    // Half as much again, so that less room is left unused than by doubling, up to the longest array.
+    static int grown(int capacity) {
+        return (int) Math.min(MAX_ARRAY_LENGTH, (long) capacity + (capacity >> 1) + 1);
+    }
+
+    // FNV-1a, spread so that the low bits used by the table depend on every byte.
+    private static int hash(byte[] data, int from, int to) {
+        int hash = 0x811c9dc5;
+        for (int i = from; i < to; i++) hash = (hash ^ data[i]) * 0x01000193;
+        return hash ^ (hash >>> 16);
+    }
+}
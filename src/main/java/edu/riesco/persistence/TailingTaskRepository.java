@@ -0,0 +1,440 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.IdMode;
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskRepository;
+import edu.riesco.exception.EmptyRepositoryException;
+import edu.riesco.exception.TaskNotFoundException;
+import edu.riesco.exception.TaskRepositoryException;
+import edu.riesco.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+// The tasks of a JSON file kept in memory for a long-lived process, while other processes (such as the tm command)
+// change the file. Reads never touch the file. A WatchService reports changes of the file, and then only the lines
+// appended since the last read are parsed. The whole file is read again only when it was changed in place (updates,
+// deletes and compactions), replaced or changed by other programs, as told by the file identity and the rewrite
+// count of its line index. Changes made by other processes are seen once the WatchService reports them, usually in
+// milliseconds; refresh() reads them at once.
+// Writes go to the file through a JsonFileTaskRepository, with the store locked, and are applied in memory without
+// reading the file again. Listeners are told of every change, from the thread that saw it and with no lock held.
+// Thread-safe. close() stops watching the file. Final, as the watching thread starts in the constructor.
+public final class TailingTaskRepository implements TaskRepository, AutoCloseable {
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int ID_PREFIX_CHARACTERS = 20;
+    private static final Metrics.Counter BYTES_READ = Metrics.counter("file.bytes.read");
+    private static final Metrics.Counter RELOADS = Metrics.counter("tail.reloads");
+
+    public enum ChangeKind {
+        APPENDED,  // New tasks
+        UPDATED,   // New versions of the tasks
+        DELETED,   // The tasks deleted. With positional IDs, the tasks after them moved down one ID each.
+        RELOADED   // Every task, after the file was read again
+    }
+
+    // The tasks of a change (ID -> Task), in ID order.
+    public record Change(ChangeKind kind, SortedMap<Integer, Task> tasks) {
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+        void tasksChanged(Change change);
+    }
+
+    private final JsonFileTaskRepository repository;
+    private final Path filePath;
+    private final IdMode idMode;
+    private final LineIndex index;
+    private final StoreLock storeLock;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<List<Change>> deferredChanges = new ThreadLocal<>();  // Within exclusive()
+    private final WatchService watchService;  // null if not watching
+    // Guarded by "this"
+    private final List<Task> tasks = new ArrayList<>();
+    private final List<Integer> ids = new ArrayList<>();  // Stable IDs only, in the order of the tasks
+    private FileStamp state;  // As last read. null if the file has to be read from the start
+    private boolean endsWithSeparator = true;
+
+    public TailingTaskRepository(String filePath) {
+        this(filePath, JsonFileTaskRepository.Layout.LINES, IdMode.POSITIONAL);
+    }
+
+    public TailingTaskRepository(String filePath, JsonFileTaskRepository.Layout layout, IdMode idMode) {
+        this(filePath, layout, idMode, true);
+    }
+
+    // Without "watch", changes made by others are only read by refresh().
+    public TailingTaskRepository(String filePath, JsonFileTaskRepository.Layout layout, IdMode idMode, boolean watch) {
+        this(filePath, layout, idMode, Durability.none(), watch);
+    }
+
+    public TailingTaskRepository(String filePath, JsonFileTaskRepository.Layout layout, IdMode idMode,
+                                 Durability durability, boolean watch) {
+        this.repository = new JsonFileTaskRepository(filePath, layout, idMode, durability);
+        this.filePath = Path.of(filePath);
+        this.idMode = idMode;
+        this.index = new LineIndex(this.filePath);
+        this.storeLock = StoreLock.forFile(this.filePath);
+        if (!watch) {
+            watchService = null;
+            readChanges();
+            return;
+        }
+        Path directory = this.filePath.toAbsolutePath().getParent();
+        try {
+            watchService = this.filePath.getFileSystem().newWatchService();
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+        try {
+            directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            readChanges();  // After watching, so no change is missed
+        } catch (IOException | RuntimeException e) {
+            try {
+                watchService.close();
+            } catch (IOException closeException) {
+                e.addSuppressed(closeException);
+            }
+            throw e instanceof IOException ? new TaskRepositoryException(e.getMessage()) : (RuntimeException) e;
+        }
+        Thread watcher = new Thread(this::watch, "tail " + this.filePath.getFileName());
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void close() {
+        if (watchService == null) return;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+    }
+
+    // Reads the changes made to the file since it was last read, if any.
+    public void refresh() {
+        readChanges().forEach(this::notifyListeners);
+    }
+
+    private List<Change> readChanges() {
+        List<Change> changes = new ArrayList<>(1);
+        lock();
+        try {
+            read(changes);
+        } finally {
+            unlock();
+        }
+        return changes;
+    }
+
+    @Override
+    public IdMode idMode() {
+        return idMode;
+    }
+
+    // The file as last read, after reading the changes made to it, so that it matches the tasks in memory.
+    @Override
+    public Object changeStamp() {
+        refresh();
+        synchronized (this) {
+            return state;
+        }
+    }
+
+    @Override
+    public int create(Task task) {
+        return createAll(List.of(task));
+    }
+
+    // The new lines are read back as an append, so their IDs are the ones given by the file.
+    @Override
+    public int createAll(List<Task> newTasks) {
+        List<Change> changes = new ArrayList<>(2);
+        int id;
+        lock();
+        try {
+            read(changes);
+            id = repository.createAll(newTasks);
+            read(changes);
+        } finally {
+            unlock();
+        }
+        changes.forEach(this::notifyListeners);
+        return id;
+    }
+
+    @Override
+    public synchronized List<Task> getAll() {
+        return List.copyOf(tasks);
+    }
+
+    @Override
+    public Stream<Map.Entry<Integer, Task>> streamWithIds() {
+        if (idMode == IdMode.POSITIONAL) return TaskRepository.super.streamWithIds();
+        List<Map.Entry<Integer, Task>> entries = new ArrayList<>();
+        synchronized (this) {
+            for (int i = 0; i < tasks.size(); i++) entries.add(Map.entry(ids.get(i), tasks.get(i)));
+        }
+        return entries.stream();
+    }
+
+    @Override
+    public synchronized Task getById(int id) {
+        return tasks.get(position(id));
+    }
+
+    @Override
+    public void update(int id, Task newTask) {
+        updateAll(Map.of(id, newTask));
+    }
+
+    @Override
+    public void updateAll(Map<Integer, Task> newTasks) {
+        List<Change> changes = new ArrayList<>(2);
+        lock();
+        try {
+            read(changes);
+            repository.updateAll(newTasks);
+            changes.add(updated(newTasks));
+        } finally {
+            unlock();
+        }
+        changes.forEach(this::notifyListeners);
+    }
+
+    // Listeners are told of the changes once the store is unlocked.
+    @Override
+    public <T> T exclusive(Supplier<T> change) {
+        if (deferredChanges.get() != null) return change.get();
+        List<Change> changes = new ArrayList<>();
+        deferredChanges.set(changes);
+        try {
+            lock();
+            try {
+                return change.get();
+            } finally {
+                unlock();
+            }
+        } finally {
+            deferredChanges.remove();
+            changes.forEach(this::notifyListeners);
+        }
+    }
+
+    // The edits are applied to the tasks in memory, which are up to date while the store is locked.
+    @Override
+    public void editAll(Map<Integer, UnaryOperator<Task>> edits) {
+        List<Change> changes = new ArrayList<>(2);
+        lock();
+        try {
+            read(changes);
+            Map<Integer, Task> newTasks = new TreeMap<>();
+            edits.forEach((id, edit) -> newTasks.put(id, edit.apply(getById(id))));
+            repository.updateAll(newTasks);
+            changes.add(updated(newTasks));
+        } finally {
+            unlock();
+        }
+        changes.forEach(this::notifyListeners);
+    }
+
+    @Override
+    public void delete(int id) {
+        List<Change> changes = new ArrayList<>(2);
+        lock();
+        try {
+            read(changes);
+            repository.delete(id);
+            synchronized (this) {
+                int position = position(id);
+                changes.add(new Change(ChangeKind.DELETED, new TreeMap<>(Map.of(id, tasks.remove(position)))));
+                if (idMode == IdMode.STABLE) ids.remove(position);
+                state = FileStamp.of(filePath, index);
+            }
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        } finally {
+            unlock();
+        }
+        changes.forEach(this::notifyListeners);
+    }
+
+    // Applies an update written to the file. Called with the store locked.
+    private synchronized Change updated(Map<Integer, Task> newTasks) {
+        newTasks.forEach((id, task) -> tasks.set(position(id), task));
+        try {
+            state = FileStamp.of(filePath, index);
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+        return new Change(ChangeKind.UPDATED, new TreeMap<>(newTasks));
+    }
+
+    // Index of the task in the list.
+    private int position(int id) {
+        if (tasks.isEmpty()) throw new EmptyRepositoryException("Operation not allowed in an empty repository.");
+        int position = idMode == IdMode.STABLE ? Collections.binarySearch(ids, id) : id - 1;
+        if (position < 0 || position >= tasks.size()) {
+            throw new TaskNotFoundException("Task with ID " + id + " not found.");
+        }
+        return position;
+    }
+
+    // Brings the tasks up to date with the file and adds the change seen, if any. Called with the store locked.
+    private synchronized void read(List<Change> changes) {
+        try {
+            FileStamp current = FileStamp.of(filePath, index);
+            if (Objects.equals(current, state)) return;
+            if (current == FileStamp.MISSING) {
+                state = current;
+                tasks.clear();
+                ids.clear();
+                changes.add(new Change(ChangeKind.RELOADED, Collections.emptySortedMap()));
+                return;
+            }
+            boolean appended = state == FileStamp.MISSING || state != null && state.rewrites() != null
+                    && state.rewrites().equals(current.rewrites()) && state.key().equals(current.key())
+                    && current.size() >= state.size() && endsWithSeparator;
+            if (appended) {
+                int first = tasks.size();
+                readLines(state.size(), current.size());
+                SortedMap<Integer, Task> newTasks = new TreeMap<>();
+                for (int i = first; i < tasks.size(); i++) newTasks.put(id(i), tasks.get(i));
+                if (!newTasks.isEmpty()) changes.add(new Change(ChangeKind.APPENDED, newTasks));
+            } else {
+                RELOADS.add(1);
+                tasks.clear();
+                ids.clear();
+                readLines(0, current.size());
+                SortedMap<Integer, Task> allTasks = new TreeMap<>();
+                for (int i = 0; i < tasks.size(); i++) allTasks.put(id(i), tasks.get(i));
+                changes.add(new Change(ChangeKind.RELOADED, allTasks));
+            }
+            state = current;
+        } catch (IOException | RuntimeException e) {
+            state = null;  // Read again from the start next time
+            throw e instanceof IOException ? new TaskRepositoryException(e.getMessage()) : (RuntimeException) e;
+        }
+    }
+
+    private int id(int position) {
+        return idMode == IdMode.STABLE ? ids.get(position) : position + 1;
+    }
+
+    // Parses the task lines between two offsets. Blank lines are deleted tasks.
+    // Lines are parsed where they are in the read buffer. Only the start of a line that goes on in the next read is
+    // moved, to the start of the buffer, which grows if a line does not fit in it.
+    private void readLines(long from, long to) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            byte[] bytes = new byte[(int) Math.min(READ_BUFFER_BYTES, Math.max(1, to - from))];
+            int kept = 0;  // Bytes of the line begun in the last read
+            long position = from;
+            while (position < to) {
+                if (kept == bytes.length) bytes = Arrays.copyOf(bytes, Math.multiplyExact(bytes.length, 2));
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, kept, (int) Math.min(bytes.length - kept, to - position));
+                int read = channel.read(buffer, position);
+                if (read == -1) break;
+                position += read;
+                int end = kept + read;
+                int lineStart = 0;
+                for (int i = kept; i < end; i++) {
+                    if (bytes[i] == '\n') {
+                        addLine(bytes, lineStart, i);
+                        lineStart = i + 1;
+                    }
+                }
+                kept = end - lineStart;
+                System.arraycopy(bytes, lineStart, bytes, 0, kept);
+            }
+            BYTES_READ.add(position - from);
+            endsWithSeparator = kept == 0;
+            if (!endsWithSeparator) addLine(bytes, 0, kept);
+        }
+    }
+
+    private void addLine(byte[] bytes, int from, int to) {
+        int end = to;
+        while (end > from && (bytes[end - 1] == '\r' || bytes[end - 1] == ' ')) end--;
+        if (end == from) return;
+        if (idMode == IdMode.STABLE) {
+            String prefix = new String(bytes, from, Math.min(end - from, ID_PREFIX_CHARACTERS), StandardCharsets.UTF_8);
+            ids.add(JsonFileTaskRepository.recordId(prefix, filePath));
+        }
+        tasks.add(Task.fromJson(bytes, from, end));
+    }
+
+    // Runs in its own thread until close(). A change that cannot be read is read again from the start on the next
+    // event, as another program may be writing the file.
+    private void watch() {
+        Path fileName = filePath.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == OVERFLOW || fileName.equals(event.context());
+                }
+                key.reset();
+                if (!changed) continue;
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    // Read again on the next change
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Closed
+        }
+    }
+
+    private void notifyListeners(Change change) {
+        List<Change> deferred = deferredChanges.get();
+        if (deferred != null) {
+            deferred.add(change);  // Told by exclusive()
+            return;
+        }
+        for (Listener listener : listeners) listener.tasksChanged(change);
+    }
+
+    private void lock() {
+        try {
+            storeLock.lock();
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+    }
+
+    private void unlock() {
+        try {
+            storeLock.unlock();
+        } catch (IOException e) {
+            throw new TaskRepositoryException(e.getMessage());
+        }
+    }
+}
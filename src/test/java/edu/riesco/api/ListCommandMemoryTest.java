@@ -0,0 +1,66 @@
+package edu.riesco.api;
+
+import edu.riesco.domain.NoDueDate;
+import edu.riesco.domain.Task;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs "tm list" in a separate JVM with a heap much smaller than the task file, parsing it with as many threads as
+// the 8 cores the JVM is told it has.
+// The store size can be raised to several GB with -Dtm.test.listStoreMegabytes=4096.
+class ListCommandMemoryTest {
+
+    private static final long STORE_BYTES = Long.getLong("tm.test.listStoreMegabytes", 32) * 1024 * 1024;
+    private static final String MAX_HEAP = "-Xmx16m";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("CLI can list a task file bigger than the heap.")
+    void listBigStore() throws IOException, InterruptedException {
+        String task = Task.from("A task title", "A task description to make every line a bit longer",
+                new NoDueDate()).toJson();
+        long tasks = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(tempDir.resolve(".tm"))) {
+            for (long written = 0; written < STORE_BYTES; written += task.length() + 1) {
+                writer.write(task);
+                writer.newLine();
+                tasks++;
+            }
+        }
+
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        Path output = tempDir.resolve("output.txt");
+        ProcessBuilder builder = new ProcessBuilder(java.toString(), MAX_HEAP, "-XX:ActiveProcessorCount=8",
+                "-Duser.home=" + tempDir, "-cp", System.getProperty("java.class.path"),
+                TaskManagerCli.class.getName(), "list")
+                .redirectErrorStream(true)
+                .redirectOutput(output.toFile());
+        builder.environment().put("TM_LOAD_THREADS", "8");
+        Process process = builder.start();
+
+        assertTrue(process.waitFor(5, TimeUnit.MINUTES));
+        assertEquals(0, process.exitValue(), () -> "tm list failed: " + tail(output));
+        assertTrue(tail(output).contains(tasks + "  "));
+    }
+
+    private static String tail(Path file) {
+        try {
+            String content = Files.readString(file);
+            return content.substring(Math.max(0, content.length() - 500));
+        } catch (IOException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package edu.riesco.api;
 
 import edu.riesco.domain.DueDate;
+import edu.riesco.domain.NoDueDate;
 import edu.riesco.domain.TaskManager;
 import edu.riesco.domain.TaskStatus;
+import edu.riesco.metrics.Metrics;
 import edu.riesco.persistence.JsonFileTaskRepository;
 import edu.riesco.persistence.MemoryTaskRepository;
 import org.junit.jupiter.api.*;
@@ -10,9 +12,18 @@ import org.junit.jupiter.api.io.TempDir;
 import picocli.CommandLine;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -20,7 +31,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 class MemoryTaskManagerCliTest extends TaskManagerCliTest {
     @Override
     public CommandLine getCommandLine() {
-        return new CommandLine(new TaskManagerCli.ParentCommand(new TaskManager(new MemoryTaskRepository())));
+        return TaskManagerCli.commandLine(new TaskManager(new MemoryTaskRepository()));
     }
 }
 
@@ -31,7 +42,7 @@ class JsonFileTaskManagerCliTest extends TaskManagerCliTest {
     @Override
     public CommandLine getCommandLine() {
         String filePath = tempDir.resolve("tmTestFile.json").toString();
-        return new CommandLine(new TaskManagerCli.ParentCommand(new TaskManager(new JsonFileTaskRepository(filePath))));
+        return TaskManagerCli.commandLine(new TaskManager(new JsonFileTaskRepository(filePath)));
     }
 }
 
@@ -47,6 +58,8 @@ abstract class TaskManagerCliTest {
     private static final String ANOTHER_TITLE = "Another title";
     private static final String ANOTHER_DESCRIPTION = "Another description";
 
+    @TempDir
+    Path exchangeDir;
     private final PrintStream standardOut = System.out;
     private final ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
     CommandLine cmd;
@@ -99,11 +112,69 @@ abstract class TaskManagerCliTest {
         final String[] args2 = {"list"};
         cmd.execute(args2);
 
-        String printableTasks = TaskManagerCli.printTasks(TaskManagerCli.taskManager.tasksAsJson()); //.ListCommand
+        String printableTasks = TaskManagerCli.printTasks(TaskManagerCli.taskManager.tasks()); //.ListCommand
         String consoleOutput = "Task " + TASK_ID + " created" + "\n" + printableTasks;
         assertEquals(consoleOutput, outputStreamCaptor.toString().trim());
     }
 
+    @Test
+    @DisplayName("CLI lists every task in a row with its ID, due date, status, title and description.")
+    void listTasksRows() {
+        cmd.execute("add", TASK_TITLE, "-d", TASK_DESCRIPTION, "--due", TOMORROW);
+        cmd.execute("add", ANOTHER_TITLE);
+        cmd.execute("complete", "2");
+        outputStreamCaptor.reset();
+        cmd.execute("list");
+
+        String header = TaskManagerCli.BOLD + "  ID   Due Date    Status     Title and Description" + TaskManagerCli.NORMAL
+                + "\n" + " ---------------------------------------------------";
+        String row1 = TaskManagerCli.PURPLE + "   1  " + TaskManagerCli.NORMAL + " " + TOMORROW + "    PENDING     "
+                + TaskManagerCli.BOLD + TASK_TITLE + TaskManagerCli.NORMAL + " - " + TASK_DESCRIPTION;
+        String row2 = TaskManagerCli.PURPLE + "   2  " + TaskManagerCli.NORMAL + "              "
+                + TaskManagerCli.GREEN + "COMPLETED" + TaskManagerCli.NORMAL + "    "
+                + TaskManagerCli.BOLD + ANOTHER_TITLE + TaskManagerCli.NORMAL;
+        assertEquals(String.join("\n", header, row1, row2).trim(), outputStreamCaptor.toString().trim());
+    }
+
+    @Test
+    @DisplayName("CLI lists only the tasks with a status or due before a date, with their IDs.")
+    void listFilteredTasks() {
+        cmd.execute("add", TASK_TITLE, "-d", TASK_DESCRIPTION, "--due", TOMORROW);
+        cmd.execute("add", ANOTHER_TITLE);
+        cmd.execute("complete", "1");
+        outputStreamCaptor.reset();
+        cmd.execute("list", "--status", "PENDING");
+
+        String header = TaskManagerCli.BOLD + "  ID   Due Date    Status     Title and Description" + TaskManagerCli.NORMAL
+                + "\n" + " ---------------------------------------------------";
+        String row2 = TaskManagerCli.PURPLE + "   2  " + TaskManagerCli.NORMAL + "               PENDING     "
+                + TaskManagerCli.BOLD + ANOTHER_TITLE + TaskManagerCli.NORMAL;
+        assertEquals(String.join("\n", header, row2).trim(), outputStreamCaptor.toString().trim());
+
+        outputStreamCaptor.reset();
+        cmd.execute("list", "--due-before", TOMORROW);
+        assertEquals(header.trim(), outputStreamCaptor.toString().trim());
+
+        outputStreamCaptor.reset();
+        cmd.execute("list", "--overdue", "--status", "COMPLETED");
+        assertEquals(header.trim(), outputStreamCaptor.toString().trim());
+    }
+
+    @Test
+    @DisplayName("CLI searches tasks by words and lists them with their IDs.")
+    void searchTasks() {
+        cmd.execute("add", TASK_TITLE, "-d", TASK_DESCRIPTION);
+        cmd.execute("add", ANOTHER_TITLE);
+        outputStreamCaptor.reset();
+        cmd.execute("search", "another");
+
+        String header = TaskManagerCli.BOLD + "  ID   Due Date    Status     Title and Description" + TaskManagerCli.NORMAL
+                + "\n" + " ---------------------------------------------------";
+        String row2 = TaskManagerCli.PURPLE + "   2  " + TaskManagerCli.NORMAL + "               PENDING     "
+                + TaskManagerCli.BOLD + ANOTHER_TITLE + TaskManagerCli.NORMAL;
+        assertEquals(String.join("\n", header, row2).trim(), outputStreamCaptor.toString().trim());
+    }
+
     @Test
     @DisplayName("CLI can update a task.")
     void updateTask() {
@@ -152,6 +223,20 @@ abstract class TaskManagerCliTest {
         assertEquals(TaskStatus.COMPLETED, TaskManagerCli.taskManager.getTaskStatus(id));
     }
 
+    @Test
+    @DisplayName("CLI can complete several tasks.")
+    void markTasksAsCompleted() {
+        cmd.execute("add", TASK_TITLE);
+        cmd.execute("add", ANOTHER_TITLE);
+        cmd.execute("complete", "1", "2");
+
+        String consoleOutput = "Task 1 created" + "\n" + "Task 2 created" + "\n"
+                + "Task 1 completed" + "\n" + "Task 2 completed";
+        assertEquals(consoleOutput, outputStreamCaptor.toString().trim());
+        assertEquals(TaskStatus.COMPLETED, TaskManagerCli.taskManager.getTaskStatus(1));
+        assertEquals(TaskStatus.COMPLETED, TaskManagerCli.taskManager.getTaskStatus(2));
+    }
+
     @Test
     @DisplayName("CLI can mark a task as pending.")
     void markTaskAsPending() {
@@ -182,4 +267,151 @@ abstract class TaskManagerCliTest {
         assertEquals(consoleOutput, outputStreamCaptor.toString().trim());
         Assertions.assertFalse(TaskManagerCli.taskManager.hasTasks());
     }
+
+    @Test
+    @DisplayName("CLI can export tasks and import them again.")
+    void exportAndImportTasks() throws IOException {
+        Path file = exchangeDir.resolve("tasks.json");
+        cmd.execute("add", TASK_TITLE, "-d", TASK_DESCRIPTION, "--due", TOMORROW);
+        cmd.execute("add", ANOTHER_TITLE);
+        cmd.execute("complete", "2");
+        cmd.execute("export", file.toString());
+        cmd.execute("import", file.toString());
+
+        assertEquals(2, Files.readAllLines(file).size());
+        Assertions.assertTrue(outputStreamCaptor.toString().contains("2 tasks exported"));
+        Assertions.assertTrue(outputStreamCaptor.toString().contains("2 tasks imported, last ID 4"));
+        Assertions.assertEquals(TASK_TITLE, TaskManagerCli.taskManager.getTaskTitle(3));
+        Assertions.assertEquals(TOMORROW, TaskManagerCli.taskManager.getPrintableTaskDueDate(3));
+        Assertions.assertEquals(TaskStatus.COMPLETED, TaskManagerCli.taskManager.getTaskStatus(4));
+    }
+
+    @Test
+    @DisplayName("CLI does not import any task if one of them is not valid.")
+    void importInvalidTasks() throws IOException {
+        Path file = exchangeDir.resolve("tasks.json");
+        Files.write(file, List.of("{\"title\":\"" + TASK_TITLE + "\",\"description\":\"\",\"dueDate\":\"\",\"status\":\"PENDING\"}",
+                "{\"title\":\" \",\"description\":\"\",\"dueDate\":\"\",\"status\":\"PENDING\"}"));
+        cmd.execute("import", file.toString());
+
+        String consoleOutput = "Invalid task at line 2: Title can not be blank" + "\n" + "Tasks NOT imported";
+        assertEquals(consoleOutput, outputStreamCaptor.toString().trim());
+        Assertions.assertFalse(TaskManagerCli.taskManager.hasTasks());
+    }
+
+    @Test
+    @DisplayName("CLI imports big files in batches, and none of them if a later batch is not valid.")
+    void importInBatches() throws IOException {
+        Path file = exchangeDir.resolve("tasks.json");
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 25_000; i++) {
+            lines.add("{\"title\":\"Task " + i + "\",\"description\":\"\",\"dueDate\":\"\",\"status\":\"PENDING\"}");
+        }
+        lines.add("{\"title\":\" \",\"description\":\"\",\"dueDate\":\"\",\"status\":\"PENDING\"}");
+        Files.write(file, lines);
+        cmd.execute("import", file.toString());
+
+        Assertions.assertTrue(outputStreamCaptor.toString().contains("Invalid task at line 25001"));
+        Assertions.assertFalse(TaskManagerCli.taskManager.hasTasks());
+
+        Files.write(file, lines.subList(0, 25_000));
+        cmd.execute("import", file.toString());
+
+        Assertions.assertTrue(outputStreamCaptor.toString().contains("25000 tasks imported, last ID 25000"));
+        Assertions.assertEquals("Task 25000", TaskManagerCli.taskManager.getTaskTitle(25_000));
+    }
+
+    @Test
+    @DisplayName("CLI prints the timers and counters of a command with --metrics.")
+    void metrics() {
+        PrintStream standardErr = System.err;
+        ByteArrayOutputStream errorCaptor = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(errorCaptor));
+        try {
+            cmd.execute("add", TASK_TITLE);
+            cmd.execute("list", "--metrics");
+            cmd.execute("--metrics", "complete", TASK_ID);
+        } finally {
+            System.setErr(standardErr);
+        }
+
+        String metrics = errorCaptor.toString();
+        Assertions.assertTrue(metrics.contains("command.list "));
+        Assertions.assertTrue(metrics.contains("render "));
+        Assertions.assertTrue(metrics.contains("repository.stream "));
+        Assertions.assertTrue(metrics.contains("command.complete "));
+        Assertions.assertTrue(metrics.contains("repository.editAll "));
+        Assertions.assertFalse(metrics.contains("command.add "));
+        Assertions.assertFalse(Metrics.isEnabled());
+    }
+
+    @Test
+    @DisplayName("CLI stats shows nothing when metrics are not collected.")
+    void statsWithoutMetrics() {
+        cmd.execute("stats", "--reset");
+        cmd.execute("add", TASK_TITLE);
+        cmd.execute("stats");
+
+        Assertions.assertTrue(outputStreamCaptor.toString().contains("No metrics"));
+    }
+
+    @Test
+    @DisplayName("CLI reports an invalid TM_DURABILITY as a usage error of the commands, and still shows the help.")
+    void invalidDurability() throws IOException, InterruptedException {
+        Path output = exchangeDir.resolve("output.txt");
+
+        assertEquals(0, runWithEnvironment(Map.of("TM_DURABILITY", "group:abc"), output, "help"));
+        Assertions.assertTrue(Files.readString(output).contains("Task manager"));
+
+        assertEquals(CommandLine.ExitCode.USAGE, runWithEnvironment(Map.of("TM_DURABILITY", "group:abc"), output, "list"));
+        Assertions.assertTrue(Files.readString(output).contains("Invalid TM_DURABILITY: Invalid number in durability: group:abc"));
+    }
+
+    @Test
+    @DisplayName("CLI list and export do not keep writers waiting while their output is not being read.")
+    void stalledOutput() throws Exception {
+        for (int i = 0; i < 300; i++) TaskManagerCli.taskManager.addTask(TASK_TITLE + i, TASK_DESCRIPTION, new NoDueDate());
+
+        int expectedId = 301;
+        for (String command : List.of("list", "export")) {
+            CountDownLatch stalled = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            System.setOut(new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                    stalled.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }));
+            Thread reader = new Thread(() -> cmd.execute(command));
+            reader.start();
+            try {
+                Assertions.assertTrue(stalled.await(10, TimeUnit.SECONDS));
+                int id = CompletableFuture.supplyAsync(() -> TaskManagerCli.taskManager.addTask(ANOTHER_TITLE, "", new NoDueDate()))
+                        .get(10, TimeUnit.SECONDS);
+                assertEquals(expectedId++, id, command);
+            } finally {
+                release.countDown();
+                reader.join();
+            }
+        }
+    }
+
+    // Runs the CLI in a separate JVM, with its home in exchangeDir. Returns its exit code.
+    private int runWithEnvironment(Map<String, String> environment, Path output, String... args)
+            throws IOException, InterruptedException {
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        List<String> command = new ArrayList<>(List.of(java.toString(), "-Duser.home=" + exchangeDir,
+                "-cp", System.getProperty("java.class.path"), TaskManagerCli.class.getName()));
+        command.addAll(List.of(args));
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(output.toFile());
+        builder.environment().putAll(environment);
+        Process process = builder.start();
+        Assertions.assertTrue(process.waitFor(1, TimeUnit.MINUTES));
+        return process.exitValue();
+    }
 }
@@ -0,0 +1,155 @@
+package edu.riesco.api;
+
+import edu.riesco.domain.IdMode;
+import edu.riesco.domain.NoDueDate;
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskManager;
+import edu.riesco.persistence.JsonFileTaskRepository;
+import edu.riesco.persistence.MemoryTaskRepository;
+import edu.riesco.persistence.TailingTaskRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskManagerDaemonTest {
+
+    @TempDir
+    Path tempDir;
+    private Path socketPath;
+    private Thread daemonThread;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @BeforeEach
+    void startDaemon() throws InterruptedException {
+        socketPath = tempDir.resolve("tm.sock");
+        start(new TaskManagerDaemon(socketPath, new TaskManager(new MemoryTaskRepository())));
+    }
+
+    private void start(TaskManagerDaemon daemon) throws InterruptedException {
+        daemonThread = Thread.ofPlatform().daemon().start(() -> {
+            try {
+                daemon.run();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        while (!listening()) TimeUnit.MILLISECONDS.sleep(10);
+    }
+
+    // The socket file is there as soon as it is bound, a bit before connections are accepted.
+    private boolean listening() {
+        try (SocketChannel ignored = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @AfterEach
+    void stopDaemon() throws IOException, InterruptedException {
+        if (daemonThread.isAlive()) forward("daemon", "--stop");
+        daemonThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private Integer forward(String... args) throws IOException {
+        out.reset();
+        err.reset();
+        return TaskManagerDaemon.forward(socketPath, args,
+                new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Commands sent to the daemon change and show its tasks")
+    void commands() throws IOException {
+        assertEquals(0, forward("add", "A title"));
+        assertEquals(0, forward("add", "Another title"));
+        assertEquals(0, forward("complete", "2"));
+        assertEquals(0, forward("list"));
+
+        String list = out.toString(StandardCharsets.UTF_8);
+        assertTrue(list.contains("A title"));
+        assertTrue(list.contains("Another title"));
+        assertTrue(list.contains("COMPLETED"));
+    }
+
+    @Test
+    @DisplayName("The daemon returns the errors and exit code of a command")
+    void errors() throws IOException {
+        assertEquals(2, forward("unknown"));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("'unknown'"));
+    }
+
+    @Test
+    @DisplayName("The daemon stops when asked to and removes its socket")
+    void stop() throws IOException, InterruptedException {
+        assertEquals(0, forward("daemon"));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("already running"));
+
+        assertEquals(0, forward("daemon", "--stop"));
+        daemonThread.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(daemonThread.isAlive());
+        assertFalse(Files.exists(socketPath));
+        assertNull(forward("list"));
+    }
+
+    @Test
+    @DisplayName("A client that does not send its request does not keep the daemon from serving others")
+    void idleClient() throws Exception {
+        try (SocketChannel ignored = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+            Integer exitCode = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return forward("add", "A title");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).get(5, TimeUnit.SECONDS);
+
+            assertEquals(0, exitCode);
+            assertTrue(out.toString(StandardCharsets.UTF_8).contains("Task 1 created"));
+        }
+    }
+
+    @Test
+    @DisplayName("A daemon with the tasks in memory sees at once the changes made to the file by others")
+    void tailedFile() throws IOException, InterruptedException {
+        forward("daemon", "--stop");
+        daemonThread.join(TimeUnit.SECONDS.toMillis(10));
+        String file = tempDir.resolve("tasks.json").toString();
+        JsonFileTaskRepository other = new JsonFileTaskRepository(file);
+        other.create(Task.from("Written before", "", new NoDueDate()));
+        try (TailingTaskRepository tasks = new TailingTaskRepository(file, JsonFileTaskRepository.Layout.LINES,
+                IdMode.POSITIONAL, false)) {
+            start(new TaskManagerDaemon(socketPath, new TaskManager(tasks), tasks::refresh));
+            assertEquals(0, forward("add", "Written by the daemon"));
+            other.create(Task.from("Written by another process", "", new NoDueDate()));
+            other.delete(1);
+
+            assertEquals(0, forward("list"));
+            String list = out.toString(StandardCharsets.UTF_8);
+            assertFalse(list.contains("Written before"));
+            assertTrue(list.contains("Written by the daemon"));
+            assertTrue(list.contains("Written by another process"));
+            assertEquals(0, forward("search", "process"));
+            assertTrue(out.toString(StandardCharsets.UTF_8).contains("Written by another process"));
+            forward("daemon", "--stop");
+            daemonThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package edu.riesco.api;
+
+import edu.riesco.domain.TaskManager;
+import edu.riesco.persistence.JsonFileTaskRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Load test of the HTTP API on localhost. It only runs when asked for:
+//   mvn test -Dtest=TaskManagerServerLoadTest -Dload=true [-Dload.clients=32] [-Dload.requests=100] [-Dload.tasks=1000]
+// Every client sends its requests one after another: 1 in 10 adds a task, 1 in 10 lists the pending tasks and the rest
+// read a task. Prints the latency percentiles and the throughput.
+@EnabledIfSystemProperty(named = "load", matches = "true")
+class TaskManagerServerLoadTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Load test of the HTTP API")
+    void load() throws Exception {
+        int clients = Integer.getInteger("load.clients", 32);
+        int requests = Integer.getInteger("load.requests", 100);
+        int tasks = Integer.getInteger("load.tasks", 1000);
+        TaskManager taskManager = new TaskManager(new JsonFileTaskRepository(tempDir.resolve("tm.json").toString()));
+        for (int i = 0; i < tasks; i++) taskManager.addTask("Task " + i, "Description of task " + i);
+        TaskManagerServer server = new TaskManagerServer(taskManager, 0);
+        server.start();
+        String base = "http://localhost:" + server.port() + "/tasks";
+
+        long[] latencies = new long[clients * requests];
+        AtomicInteger failures = new AtomicInteger();
+        long start = System.nanoTime();
+        try (HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int first = c * requests;
+                executor.execute(() -> {
+                    for (int r = 0; r < requests; r++) {
+                        HttpRequest request = switch (r % 10) {
+                            case 0 -> HttpRequest.newBuilder(URI.create(base))
+                                    .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"New task\"}")).build();
+                            case 1 -> HttpRequest.newBuilder(URI.create(base + "?status=PENDING")).build();
+                            default -> HttpRequest.newBuilder(URI.create(base + "/" + (1 + (first + r) % tasks))).build();
+                        };
+                        long sent = System.nanoTime();
+                        try {
+                            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            if (status >= 400) failures.incrementAndGet();
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        latencies[first + r] = System.nanoTime() - sent;
+                    }
+                });
+            }
+        } finally {
+            server.stop(0);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("%d clients x %d requests over %d tasks: %.0f requests/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                clients, requests, tasks, latencies.length / seconds,
+                percentile(latencies, 50), percentile(latencies, 99), latencies[latencies.length - 1] / 1e6);
+        assertEquals(0, failures.get());
+    }
+
+    // In milliseconds.
+    private static double percentile(long[] sorted, int percentile) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1e6;
+    }
+}
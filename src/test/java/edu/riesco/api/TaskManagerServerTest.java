@@ -0,0 +1,140 @@
+package edu.riesco.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import edu.riesco.domain.NoDueDate;
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskManager;
+import edu.riesco.persistence.JsonFileTaskRepository;
+import edu.riesco.persistence.MemoryTaskRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TaskManagerServerTest {
+
+    private static final String TOMORROW = LocalDate.now().plusDays(1).toString();
+
+    @TempDir
+    Path tempDir;
+    private TaskManagerServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new TaskManagerServer(new TaskManager(new MemoryTaskRepository()), 0);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        client.close();
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static JsonObject object(HttpResponse<String> response) {
+        return JsonParser.parseString(response.body()).getAsJsonObject();
+    }
+
+    @Test
+    @DisplayName("Tasks are added, read, updated, completed and deleted through the API")
+    void taskLifecycle() throws Exception {
+        HttpResponse<String> created = send("POST", "/tasks", "{\"title\":\"A title\",\"dueDate\":\"" + TOMORROW + "\"}");
+        assertEquals(201, created.statusCode());
+        assertEquals(1, object(created).get("id").getAsInt());
+
+        JsonObject task = object(send("GET", "/tasks/1", null));
+        assertEquals("A title", task.get("title").getAsString());
+        assertEquals(TOMORROW, task.get("dueDate").getAsString());
+
+        task = object(send("PATCH", "/tasks/1", "{\"description\":\"A description\",\"dueDate\":null}"));
+        assertEquals("A title", task.get("title").getAsString());
+        assertEquals("A description", task.get("description").getAsString());
+        assertEquals("", task.get("dueDate").getAsString());
+
+        assertEquals("COMPLETED", object(send("POST", "/tasks/1/complete", null)).get("status").getAsString());
+        assertEquals("PENDING", object(send("POST", "/tasks/1/pending", null)).get("status").getAsString());
+
+        assertEquals(204, send("DELETE", "/tasks/1", null).statusCode());
+        assertEquals(404, send("GET", "/tasks/1", null).statusCode());
+    }
+
+    @Test
+    @DisplayName("Tasks are listed with their IDs, all of them or filtered")
+    void listTasks() throws Exception {
+        send("POST", "/tasks", "{\"title\":\"A title\"}");
+        send("POST", "/tasks", "{\"title\":\"Another title\"}");
+        send("POST", "/tasks/2/complete", null);
+
+        JsonArray tasks = JsonParser.parseString(send("GET", "/tasks", null).body()).getAsJsonArray();
+        assertEquals(2, tasks.size());
+        assertEquals(2, tasks.get(1).getAsJsonObject().get("id").getAsInt());
+
+        tasks = JsonParser.parseString(send("GET", "/tasks?status=COMPLETED", null).body()).getAsJsonArray();
+        assertEquals(1, tasks.size());
+        assertEquals("Another title", tasks.get(0).getAsJsonObject().get("title").getAsString());
+    }
+
+    @Test
+    @DisplayName("Invalid requests get an error")
+    void errors() throws Exception {
+        assertEquals(400, send("POST", "/tasks", "{\"title\":\"\"}").statusCode());
+        assertEquals(400, send("POST", "/tasks", "{\"title\":\"A title\",\"dueDate\":\"2020-01-01\"}").statusCode());
+        assertEquals(400, send("POST", "/tasks", "not json").statusCode());
+        assertEquals(400, send("GET", "/tasks/one", null).statusCode());
+        assertEquals(404, send("GET", "/tasks//", null).statusCode());
+        assertEquals(404, send("POST", "/tasks//complete", null).statusCode());
+        assertEquals(404, send("GET", "/tasks/7", null).statusCode());
+        assertEquals(405, send("PUT", "/tasks", "{}").statusCode());
+        assertEquals("Title can not be blank", object(send("POST", "/tasks", "{}")).get("error").getAsString());
+    }
+
+    @Test
+    @DisplayName("A client that does not read the task list does not keep others from changing the tasks")
+    void slowListClient() throws Exception {
+        server.stop(0);
+        String file = tempDir.resolve("tasks.json").toString();
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) tasks.add(Task.from("Task number " + i, "A description", new NoDueDate()));
+        new JsonFileTaskRepository(file).createAll(tasks);
+        server = new TaskManagerServer(new TaskManager(new JsonFileTaskRepository(file)), 0);
+        server.start();
+
+        try (Socket slowClient = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+            slowClient.getOutputStream().write("GET /tasks HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            slowClient.getOutputStream().flush();
+            slowClient.getInputStream().read();  // The response has started, and is not read any further
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + "/tasks"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"Added meanwhile\"}"))
+                    .timeout(Duration.ofSeconds(10))
+                    .build();
+            assertEquals(201, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package edu.riesco.domain;
+
+import edu.riesco.exception.TaskNotFoundException;
+import edu.riesco.persistence.ColumnarTaskRepository;
+import edu.riesco.persistence.JsonFileTaskRepository;
+import edu.riesco.persistence.MemoryTaskRepository;
+import edu.riesco.persistence.ShardedTaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class StableIdMemoryTaskManagerTest extends StableIdTaskManagerTest {
+    @Override
+    public TaskManager getTaskManager() {
+        return new TaskManager(new MemoryTaskRepository(IdMode.STABLE));
+    }
+}
+
+class StableIdColumnarTaskManagerTest extends StableIdTaskManagerTest {
+    @Override
+    public TaskManager getTaskManager() {
+        return new TaskManager(new ColumnarTaskRepository(IdMode.STABLE));
+    }
+}
+
+class StableIdJsonFileTaskManagerTest extends StableIdTaskManagerTest {
+    @TempDir
+    Path tempDir;
+
+    @Override
+    public TaskManager getTaskManager() {
+        String filePath = tempDir.resolve("tmTestFile.json").toString();
+        return new TaskManager(new JsonFileTaskRepository(filePath, JsonFileTaskRepository.Layout.LINES, IdMode.STABLE));
+    }
+}
+
+class StableIdSlotsJsonFileTaskManagerTest extends StableIdTaskManagerTest {
+    @TempDir
+    Path tempDir;
+
+    @Override
+    public TaskManager getTaskManager() {
+        String filePath = tempDir.resolve("tmTestFile.json").toString();
+        return new TaskManager(new JsonFileTaskRepository(filePath, JsonFileTaskRepository.Layout.SLOTS, IdMode.STABLE));
+    }
+}
+
+class StableIdShardedTaskManagerTest extends StableIdTaskManagerTest {
+    @TempDir
+    Path tempDir;
+
+    @Override
+    public TaskManager getTaskManager() {
+        return new TaskManager(new ShardedTaskRepository(tempDir, 3));
+    }
+}
+
+abstract class StableIdTaskManagerTest {
+
+    private TaskManager taskManager;
+
+    public abstract TaskManager getTaskManager();
+
+    @BeforeEach
+    void setup() {
+        taskManager = getTaskManager();
+    }
+
+    @Test
+    @DisplayName("With stable IDs, tasks keep their ID after other tasks are deleted")
+    void idsAfterDelete() {
+        for (int i = 1; i <= 4; i++) assertEquals(i, taskManager.addTask("Title " + i, ""));
+        taskManager.deleteTask(2);
+
+        assertEquals("Title 3", taskManager.getTaskTitle(3));
+        assertEquals("Title 4", taskManager.getTaskTitle(4));
+        assertFalse(taskManager.hasTask(2));
+        assertThrows(TaskNotFoundException.class, () -> taskManager.deleteTask(2));
+        try (Stream<Map.Entry<Integer, Task>> tasks = taskManager.streamTasksWithIds()) {
+            assertEquals(List.of(1, 3, 4), tasks.map(Map.Entry::getKey).toList());
+        }
+    }
+
+    @Test
+    @DisplayName("With stable IDs, IDs of deleted tasks are not given again")
+    void idsAreNotReused() {
+        taskManager.addTask("Title 1", "");
+        taskManager.addTask("Title 2", "");
+        taskManager.deleteTask(2);
+        taskManager.deleteTask(1);
+
+        assertFalse(taskManager.hasTasks());
+        assertEquals(3, taskManager.addTask("Title 3", ""));
+        assertEquals(5, taskManager.importTasks(List.of(
+                Task.from("Title 4", "", new NoDueDate()).toJson(), Task.from("Title 5", "", new NoDueDate()).toJson())));
+        assertEquals("Title 5", taskManager.getTaskTitle(5));
+    }
+
+    @Test
+    @DisplayName("With stable IDs, updates keep the ID")
+    void updateKeepsId() {
+        taskManager.addTask("Title 1", "");
+        taskManager.addTask("Title 2", "");
+        taskManager.deleteTask(1);
+        taskManager.updateTaskTitle(2, "Title 2 with a longer title than before");
+        taskManager.markAsComplete(2);
+
+        assertEquals("Title 2 with a longer title than before", taskManager.getTaskTitle(2));
+        assertEquals(TaskStatus.COMPLETED, taskManager.getTaskStatus(2));
+    }
+
+    @Test
+    @DisplayName("With stable IDs, many deletes keep every other task under its ID")
+    void manyDeletes() {
+        for (int i = 1; i <= 100; i++) taskManager.addTask("Title " + i, "");
+        for (int i = 1; i <= 100; i++) {
+            if (i % 3 != 0) taskManager.deleteTask(i);
+        }
+
+        assertEquals(33, taskManager.tasks().size());
+        for (int i = 3; i <= 100; i += 3) assertEquals("Title " + i, taskManager.getTaskTitle(i));
+        assertEquals(101, taskManager.addTask("Title 101", ""));
+    }
+
+    @Test
+    @DisplayName("With stable IDs, queries and searches return the stable IDs")
+    void queriesWithStableIds() {
+        taskManager.addTask("Buy milk", "");
+        taskManager.addTask("Call the shop", "");
+        taskManager.addTask("Shop again", "");
+        assertEquals(List.of(1, 2, 3), List.copyOf(taskManager.tasksWithStatus(TaskStatus.PENDING).keySet()));
+        assertEquals(List.of(2, 3), List.copyOf(taskManager.searchTasks("shop", 10).keySet()));
+
+        taskManager.deleteTask(2);
+        taskManager.markAsComplete(3);
+
+        assertEquals(List.of(1), List.copyOf(taskManager.tasksWithStatus(TaskStatus.PENDING).keySet()));
+        assertEquals(List.of(3), List.copyOf(taskManager.tasksWithStatus(TaskStatus.COMPLETED).keySet()));
+        assertEquals(List.of(3), List.copyOf(taskManager.searchTasks("shop", 10).keySet()));
+    }
+}
@@ -0,0 +1,134 @@
+package edu.riesco.domain;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskJsonTest {
+
+    private static final int RUNS = 20_000;
+    // Task JSON as it was written with Gson, before Task had its own codec.
+    private static final Gson gson = new GsonBuilder().registerTypeHierarchyAdapter(TaskDueDate.class, new TypeAdapter<TaskDueDate>() {
+        @Override
+        public void write(JsonWriter out, TaskDueDate date) throws IOException {
+            out.value(date.printableDueDate());
+        }
+
+        @Override
+        public TaskDueDate read(JsonReader in) throws IOException {
+            String date = in.nextString();
+            return date.isEmpty() ? new NoDueDate() : DueDate.of(date);
+        }
+    }.nullSafe()).create();
+
+    private final Random random = new Random(42);
+
+    // Mostly ASCII, with characters that need escapes, other scripts, emoji and broken surrogate pairs.
+    private String randomText(int maxLength) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(10)) {
+                case 0 -> text.append((char) random.nextInt(0x20));
+                case 1 -> text.append("\"\\/<>&='\u007f\u2028\u2029".charAt(random.nextInt(11)));
+                case 2 -> text.append((char) (0x80 + random.nextInt(0x780)));
+                case 3 -> text.append((char) (0x800 + random.nextInt(0xD000)));
+                case 4 -> text.appendCodePoint(0x10000 + random.nextInt(0x100000));
+                case 5 -> text.append((char) (0xD800 + random.nextInt(0x800)));
+                default -> text.append((char) (0x20 + random.nextInt(0x5f)));
+            }
+        }
+        return text.toString();
+    }
+
+    private Task randomTask() {
+        String title = "t" + randomText(40);
+        TaskDueDate dueDate = switch (random.nextInt(3)) {
+            case 0 -> null;
+            case 1 -> new NoDueDate();
+            default -> DueDate.ofEpochDay(random.nextInt(4_000_000) - 1_000_000);
+        };
+        return Task.from(title, randomText(80), dueDate, TaskStatus.values()[random.nextInt(2)]);
+    }
+
+    private static boolean wellFormed(String text) {
+        return new String(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8).equals(text);
+    }
+
+    private static void assertSameTask(Task expected, Task actual) {
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getPrintableDueDate(), actual.getPrintableDueDate());
+        assertEquals(expected.getStatus(), actual.getStatus());
+    }
+
+    @Test
+    @DisplayName("Tasks are written byte for byte as Gson wrote them")
+    void sameBytesAsGson() {
+        for (int i = 0; i < RUNS; i++) {
+            Task task = randomTask();
+            String json = gson.toJson(task);
+            assertArrayEquals(json.getBytes(StandardCharsets.UTF_8), task.toJsonBytes());
+            if (wellFormed(json)) assertEquals(json, task.toJson());  // Else both have '?' once written as UTF-8
+        }
+    }
+
+    @Test
+    @DisplayName("Written tasks are read back the same")
+    void roundTrip() {
+        for (int i = 0; i < RUNS; i++) {
+            Task task = randomTask();
+            if (!wellFormed(task.getTitle()) || !wellFormed(task.getDescription())) {
+                continue;  // Unpaired surrogates are written as '?'.
+            }
+            assertSameTask(task, Task.fromJson(task.toJson()));
+            byte[] bytes = task.toJsonBytes();
+            assertSameTask(task, Task.fromJson(bytes, 0, bytes.length));
+        }
+    }
+
+    @Test
+    @DisplayName("JSON written by Gson with any spacing and field order, or other fields, is read")
+    void readsOtherLayouts() {
+        Task task = Task.fromJson(" { \"status\" : \"COMPLETED\" ,\n\"id\":12, \"extra\":{\"a\":[1,2.5e3,true,null,\"x\"]},"
+                + "\"dueDate\":\"2031-02-28\",\t\"title\":\"A \\u00e1 \\\"title\\\"\" } ");
+        assertEquals("A á \"title\"", task.getTitle());
+        assertEquals("", task.getDescription());
+        assertEquals("2031-02-28", task.getPrintableDueDate());
+        assertEquals(TaskStatus.COMPLETED, task.getStatus());
+
+        task = Task.fromJson(new GsonBuilder().setPrettyPrinting().create().toJson(Task.from("Title", "Description", null, null)));
+        assertEquals("Title", task.getTitle());
+        assertEquals(TaskStatus.PENDING, task.getStatus());
+        assertNull(task.getDueDate());
+    }
+
+    @Test
+    @DisplayName("Invalid JSON is rejected")
+    void invalidJson() {
+        for (String json : new String[]{"", "{", "[]", "{\"title\":\"A\"", "{\"title\":\"A\"}x", "{\"title\":\"A\",}",
+                "{\"title\":\"A\\q\"}", "{\"title\":\"A\\u12\"}", "{\"title\":nul}", "{\"title\":\"A\",\"status\":\"DONE\"}"}) {
+            assertThrows(IllegalArgumentException.class, () -> Task.fromJson(json), json);
+        }
+        // Deeply nested values of unknown fields are an error, not a StackOverflowError.
+        String nested = "{\"title\":\"A\",\"extra\":" + "[".repeat(100_000) + "]".repeat(100_000) + "}";
+        assertThrows(IllegalArgumentException.class, () -> Task.fromJson(nested));
+        assertEquals("A", Task.fromJson("{\"title\":\"A\",\"extra\":" + "[".repeat(64) + "]".repeat(64) + "}").getTitle());
+        // Random cuts of valid tasks are never read as a task.
+        for (int i = 0; i < RUNS; i++) {
+            byte[] json = randomTask().toJsonBytes();
+            int to = random.nextInt(json.length);
+            assertThrows(IllegalArgumentException.class, () -> Task.fromJson(json, 0, to));
+        }
+    }
+}
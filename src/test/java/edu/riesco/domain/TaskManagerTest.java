@@ -3,7 +3,10 @@ package edu.riesco.domain;
 import edu.riesco.exception.EmptyRepositoryException;
 import edu.riesco.exception.ModelException;
 import edu.riesco.exception.TaskNotFoundException;
+import edu.riesco.persistence.ColumnarTaskRepository;
+import edu.riesco.persistence.JournalTaskRepository;
 import edu.riesco.persistence.JsonFileTaskRepository;
+import edu.riesco.persistence.MappedTaskRepository;
 import edu.riesco.persistence.MemoryTaskRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -12,7 +15,16 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,6 +36,13 @@ class MemoryTaskManagerTest extends TaskManagerTest {
     }
 }
 
+class ColumnarTaskManagerTest extends TaskManagerTest {
+    @Override
+    public TaskManager getTaskManager() {
+        return new TaskManager(new ColumnarTaskRepository());
+    }
+}
+
 class JsonFileTaskManagerTest extends TaskManagerTest {
     @TempDir
     Path tempDir;
@@ -33,6 +52,123 @@ class JsonFileTaskManagerTest extends TaskManagerTest {
         String filePath = tempDir.resolve("tmTestFile.json").toString();
         return new TaskManager(new JsonFileTaskRepository(filePath));
     }
+
+    @Test
+    @DisplayName("Queries and searches see the changes made to the file by another task manager")
+    void changesByAnotherTaskManager() {
+        TaskManager taskManager = getTaskManager();
+        TaskManager other = getTaskManager();
+        taskManager.addTask("Buy milk", "");
+        taskManager.addTask("Buy bread", "");
+        assertEquals(2, taskManager.tasksWithStatus(TaskStatus.PENDING).size());
+        assertEquals(2, taskManager.searchTasks("buy", 10).size());
+
+        other.markAsComplete(1);
+        other.deleteTask(2);
+        other.addTask("Sell car", "");
+
+        assertEquals(List.of(1), List.copyOf(taskManager.tasksWithStatus(TaskStatus.COMPLETED).keySet()));
+        assertEquals(List.of(2), List.copyOf(taskManager.tasksWithStatus(TaskStatus.PENDING).keySet()));
+        assertEquals(List.of(1), List.copyOf(taskManager.searchTasks("buy", 10).keySet()));
+        assertEquals("Sell car", taskManager.searchTasks("car", 10).get(2).getTitle());
+    }
+
+    @Test
+    @DisplayName("Queries and searches return the tasks they found while another task manager deletes one")
+    void deleteWhileQuerying() throws InterruptedException {
+        TaskManager other = getTaskManager();
+        AtomicBoolean deleteOnRead = new AtomicBoolean();
+        List<Thread> deletes = new ArrayList<>();
+        TaskManager taskManager = new TaskManager(new JsonFileTaskRepository(tempDir.resolve("tmTestFile.json").toString()) {
+            @Override
+            public Task getById(int id) {
+                if (deleteOnRead.getAndSet(false)) deletes.add(runByOther(() -> other.deleteTask(1)));
+                return super.getById(id);
+            }
+        });
+        taskManager.addTask("Buy milk", "");
+        taskManager.addTask("Buy bread", "");
+        taskManager.addTask("Sell car", "");
+        taskManager.markAsComplete(3);
+
+        deleteOnRead.set(true);
+        assertEquals(List.of("Buy milk", "Buy bread"),
+                taskManager.tasksWithStatus(TaskStatus.PENDING).values().stream().map(Task::getTitle).toList());
+        deleteOnRead.set(true);
+        assertEquals(List.of("Buy bread"),
+                taskManager.searchTasks("buy", 10).values().stream().map(Task::getTitle).toList());
+        for (Thread delete : deletes) delete.join();
+        assertEquals(List.of("Sell car"), taskManager.tasks().stream().map(Task::getTitle).toList());
+    }
+
+    @Test
+    @DisplayName("Queries see a task added by another task manager just before one of ours")
+    void createWhileCreating() throws InterruptedException {
+        TaskManager other = getTaskManager();
+        AtomicBoolean createOnCreate = new AtomicBoolean();
+        List<Thread> creates = new ArrayList<>();
+        TaskManager taskManager = new TaskManager(new JsonFileTaskRepository(tempDir.resolve("tmTestFile.json").toString()) {
+            @Override
+            public int createAll(List<Task> tasks) {
+                if (createOnCreate.getAndSet(false)) creates.add(runByOther(() -> other.addTask("By the other", "")));
+                return super.createAll(tasks);
+            }
+        });
+        taskManager.addTask("Buy milk", "");
+        assertEquals(1, taskManager.tasksWithStatus(TaskStatus.PENDING).size());
+        assertTrue(taskManager.searchTasks("other", 10).isEmpty());
+
+        createOnCreate.set(true);
+        taskManager.addTask("Buy bread", "");
+        for (Thread create : creates) create.join();
+
+        assertEquals(3, taskManager.tasksWithStatus(TaskStatus.PENDING).size());
+        assertEquals(1, taskManager.searchTasks("other", 10).size());
+    }
+
+    // Starts "change" in another thread, and gives it some time to end, unless the store is locked.
+    private static Thread runByOther(Runnable change) {
+        Thread thread = Thread.ofPlatform().start(change);
+        try {
+            thread.join(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return thread;
+    }
+}
+
+class SlotsJsonFileTaskManagerTest extends TaskManagerTest {
+    @TempDir
+    Path tempDir;
+
+    @Override
+    public TaskManager getTaskManager() {
+        String filePath = tempDir.resolve("tmTestFile.json").toString();
+        return new TaskManager(new JsonFileTaskRepository(filePath, JsonFileTaskRepository.Layout.SLOTS));
+    }
+}
+
+class JournalTaskManagerTest extends TaskManagerTest {
+    @TempDir
+    Path tempDir;
+
+    @Override
+    public TaskManager getTaskManager() {
+        String filePath = tempDir.resolve("tmTestFile.journal").toString();
+        return new TaskManager(new JournalTaskRepository(filePath));
+    }
+}
+
+class MappedTaskManagerTest extends TaskManagerTest {
+    @TempDir
+    Path tempDir;
+
+    @Override
+    public TaskManager getTaskManager() {
+        String filePath = tempDir.resolve("tmTestFile.tmb").toString();
+        return new TaskManager(new MappedTaskRepository(filePath));
+    }
 }
 
 abstract class TaskManagerTest {
@@ -183,6 +319,37 @@ abstract class TaskManagerTest {
         assertEquals(TaskStatus.PENDING, taskManager.getTaskStatus(id));
     }
 
+    @Test
+    @DisplayName("Several tasks can be updated at once")
+    void batchUpdate() {
+        int id1 = taskManager.addTask(A_TITLE, A_DESCRIPTION, TODAY);
+        int id2 = taskManager.addTask(ANOTHER_TITLE, ANOTHER_DESCRIPTION, TODAY);
+        int id3 = taskManager.addTask(TITLE_3, DESCRIPTION_3, TODAY);
+        taskManager.batch()
+                .updateTaskTitle(id1, ANOTHER_TITLE + " and a longer title")
+                .updateTaskDescription(id1, ANOTHER_DESCRIPTION)
+                .markAsComplete(id1)
+                .updateTaskDueDate(id3, TOMORROW)
+                .commit();
+
+        assertEquals(ANOTHER_TITLE + " and a longer title", taskManager.getTaskTitle(id1));
+        assertEquals(ANOTHER_DESCRIPTION, taskManager.getTaskDescription(id1));
+        assertEquals(TaskStatus.COMPLETED, taskManager.getTaskStatus(id1));
+        assertEquals(ANOTHER_TITLE, taskManager.getTaskTitle(id2));
+        assertEquals(TOMORROW.printableDueDate(), taskManager.getPrintableTaskDueDate(id3));
+        assertEquals(TITLE_3, taskManager.getTaskTitle(id3));
+    }
+
+    @Test
+    @DisplayName("A batch with a task that is not found is not saved")
+    void NotFoundBatchUpdate() {
+        int id = taskManager.addTask(A_TITLE, A_DESCRIPTION, TODAY);
+        TaskBatch batch = taskManager.batch().updateTaskTitle(id, ANOTHER_TITLE).markAsComplete(2);
+
+        assertThrows(TaskNotFoundException.class, batch::commit);
+        assertEquals(A_TITLE, taskManager.getTaskTitle(id));
+    }
+
     @Test
     @DisplayName("A task searched by ID can not be updated if is not found")
     void NotFoundUpdateTask() {
@@ -242,5 +409,142 @@ abstract class TaskManagerTest {
         assertEquals(TITLE_3, taskManager.taskById(id2).getTitle());
     }
 
+    // Queries
+    @Test
+    @DisplayName("Tasks can be found by status and due date")
+    void findTasks() {
+        taskManager.addTask(A_TITLE, A_DESCRIPTION, TODAY);
+        taskManager.addTask(ANOTHER_TITLE, ANOTHER_DESCRIPTION, TOMORROW);
+        taskManager.addTask(TITLE_3, DESCRIPTION_3);
+        taskManager.markAsComplete(2);
+
+        assertEquals(List.of(1, 3), List.copyOf(taskManager.tasksWithStatus(TaskStatus.PENDING).keySet()));
+        assertEquals(ANOTHER_TITLE, taskManager.tasksWithStatus(TaskStatus.COMPLETED).get(2).getTitle());
+        assertEquals(List.of(1, 2), List.copyOf(taskManager.tasksDueBetween((DueDate) TODAY, DueDate.of("9999-01-01")).keySet()));
+        assertEquals(List.of(2), List.copyOf(taskManager.findTasks(TaskFilter.all()
+                .withStatus(TaskStatus.COMPLETED).withDueFrom((DueDate) TOMORROW)).keySet()));
+        assertEquals(List.of(1), List.copyOf(taskManager.findTasks(TaskFilter.all()
+                .withStatus(TaskStatus.PENDING).overdue(Today.of(NOW.plusDays(1)))).keySet()));
+        assertTrue(taskManager.overdueTasks().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Task queries follow updates and deletes")
+    void findTasksAfterChanges() {
+        taskManager.addTask(A_TITLE, A_DESCRIPTION, TOMORROW);
+        taskManager.addTask(ANOTHER_TITLE, ANOTHER_DESCRIPTION, TODAY);
+        assertEquals(List.of(1, 2), List.copyOf(taskManager.tasksWithStatus(TaskStatus.PENDING).keySet()));
+
+        taskManager.addTask(TITLE_3, DESCRIPTION_3, TOMORROW);
+        taskManager.batch().markAsComplete(3).updateTaskDueDate(2, TOMORROW).commit();
+        taskManager.deleteTask(1);
+
+        assertEquals(List.of(1), List.copyOf(taskManager.tasksWithStatus(TaskStatus.PENDING).keySet()));
+        assertEquals(TITLE_3, taskManager.tasksWithStatus(TaskStatus.COMPLETED).get(2).getTitle());
+        assertEquals(List.of(1, 2), List.copyOf(taskManager.findTasks(TaskFilter.all()
+                .withDueFrom((DueDate) TOMORROW).withDueBefore(DueDate.of("9999-01-01"))).keySet()));
+        assertTrue(taskManager.tasksDueBetween((DueDate) TODAY, (DueDate) TOMORROW).isEmpty());
+    }
 
-}
\ No newline at end of file
+    // Search
+    @Test
+    @DisplayName("Tasks can be searched by words, with title matches first")
+    void searchTasks() {
+        taskManager.addTask("Buy milk", "From the shop");
+        taskManager.addTask("Call the shop", "Ask for Milk and bread");
+        taskManager.addTask("Pay rent", "");
+
+        assertEquals(List.of(1, 2), List.copyOf(taskManager.searchTasks("milk", 10).keySet()));
+        assertEquals(List.of(2, 1), List.copyOf(taskManager.searchTasks("shop, BREAD!", 10).keySet()));
+        assertEquals(List.of(2), List.copyOf(taskManager.searchTasks("shop bread", 1).keySet()));
+        assertEquals("Pay rent", taskManager.searchTasks("rent", 10).get(3).getTitle());
+        assertTrue(taskManager.searchTasks("holidays", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Task search follows updates and deletes")
+    void searchTasksAfterChanges() {
+        taskManager.addTask("Buy milk", "From the shop");
+        taskManager.addTask("Call the shop", "");
+        assertEquals(List.of(2, 1), List.copyOf(taskManager.searchTasks("shop", 10).keySet()));
+
+        taskManager.addTask("Shop again", "");
+        taskManager.updateTaskTitle(2, "Call the bank");
+        taskManager.deleteTask(1);
+
+        assertEquals(List.of(2), List.copyOf(taskManager.searchTasks("shop", 10).keySet()));
+        assertEquals("Call the bank", taskManager.searchTasks("bank", 10).get(1).getTitle());
+        assertTrue(taskManager.searchTasks("milk", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Task search ranks the current words after many changes of the same tasks")
+    void searchTasksAfterManyChanges() {
+        taskManager.addTask("Shop list", "");
+        taskManager.addTask("Shop again", "Milk");
+        taskManager.searchTasks("shop", 10);
+        for (int i = 0; i < 50; i++) {
+            taskManager.updateTaskDescription(1, "Milk " + i);
+            taskManager.markAsComplete(2);
+            taskManager.markAsPending(2);
+        }
+
+        assertEquals(List.of(1, 2), List.copyOf(taskManager.searchTasks("shop", 10).keySet()));
+        assertEquals(List.of(1), List.copyOf(taskManager.searchTasks("49", 10).keySet()));
+        assertTrue(taskManager.searchTasks("48", 10).isEmpty());
+        assertEquals(2, taskManager.searchTasks("milk", 10).size());
+    }
+
+    // Concurrency
+    @Test
+    @DisplayName("Tasks created and updated from many threads at once are all saved")
+    void concurrentChanges() throws Exception {
+        int threads = 4;
+        int operations = 100;
+        taskManager.addTask(A_TITLE, A_DESCRIPTION);
+        taskManager.addTask(ANOTHER_TITLE, ANOTHER_DESCRIPTION);
+        ExecutorService executor = Executors.newFixedThreadPool(2 * threads + 4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Integer>>> creators = new ArrayList<>();
+        List<Future<?>> editors = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < threads; thread++) {
+                int creator = thread;
+                creators.add(executor.submit(() -> {
+                    start.await();
+                    List<Integer> ids = new ArrayList<>();
+                    for (int i = 0; i < operations; i++) ids.add(taskManager.addTask("Task " + creator + "-" + i, ""));
+                    return ids;
+                }));
+            }
+            // Title and description of the same task are changed at the same time by different threads.
+            for (int id = 1; id <= 2; id++) {
+                int taskId = id;
+                editors.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < operations; i++) taskManager.updateTaskTitle(taskId, "Title " + i);
+                    return null;
+                }));
+                editors.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < operations; i++) taskManager.updateTaskDescription(taskId, "Description " + i);
+                    return null;
+                }));
+            }
+            start.countDown();
+            Set<Integer> ids = new HashSet<>();
+            for (Future<List<Integer>> creator : creators) ids.addAll(creator.get(2, TimeUnit.MINUTES));
+            for (Future<?> editor : editors) editor.get(2, TimeUnit.MINUTES);
+
+            assertEquals(threads * operations, ids.size());
+            assertEquals(2 + threads * operations, taskManager.tasks().size());
+            assertEquals(2 + threads * operations, taskManager.tasksWithStatus(TaskStatus.PENDING).size());
+            for (int id = 1; id <= 2; id++) {
+                assertEquals("Title " + (operations - 1), taskManager.getTaskTitle(id));
+                assertEquals("Description " + (operations - 1), taskManager.getTaskDescription(id));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -6,10 +6,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.time.Clock;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 
 class TaskTest {
 
@@ -92,4 +94,39 @@ class TaskTest {
         assertEquals(ANOTHER_DESCRIPTION, newTask.getDescription());
         assertEquals(TODAY.printableDueDate(), newTask.getPrintableDueDate());
     }
+
+    // Due dates
+    @Test
+    @DisplayName("Overdue checks use the date of the clock given to Today")
+    void overdueWithFixedClock() {
+        Today.useClock(Clock.fixed(LocalDate.of(2030, 1, 10).atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+        try {
+            assertTrue(DueDate.of(2030, 1, 9).isOverdue());
+            assertFalse(DueDate.of(2030, 1, 10).isOverdue());
+            assertThrows(OverdueException.class, () -> Task.from(A_TITLE, A_DESCRIPTION, DueDate.of(2030, 1, 9)));
+        } finally {
+            Today.useSystemClock();
+        }
+        assertFalse(DueDate.of(2030, 1, 9).isOverdue(Today.of(LocalDate.of(2030, 1, 9))));
+        assertTrue(DueDate.of(2030, 1, 9).isOverdue(Today.of(LocalDate.of(2030, 1, 10))));
+    }
+
+    @Test
+    @DisplayName("Due dates are read from YYYY-MM-DD strings")
+    void dueDateFromString() {
+        assertEquals("2030-02-28", DueDate.of("2030-02-28").printableDueDate());
+        assertEquals(DueDate.of(2032, 2, 29).epochDay(), DueDate.of("2032-02-29").epochDay());
+        assertThrows(DateTimeParseException.class, () -> DueDate.of("2030-02-29"));
+        assertThrows(DateTimeParseException.class, () -> DueDate.of("2030-13-01"));
+        assertThrows(DateTimeParseException.class, () -> DueDate.of("30-1-1"));
+    }
+
+    @Test
+    @DisplayName("Stored tasks that became overdue can still be read")
+    void overdueTaskFromJson() {
+        Task overdueTask = Task.fromJson("{\"title\":\"" + A_TITLE + "\",\"description\":\"\",\"dueDate\":\"2020-01-01\",\"status\":\"PENDING\"}");
+
+        assertEquals("2020-01-01", overdueTask.getPrintableDueDate());
+        assertTrue(overdueTask.isOverdue());
+    }
 }
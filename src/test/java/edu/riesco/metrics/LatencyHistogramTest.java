@@ -0,0 +1,53 @@
+package edu.riesco.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("Every value is counted in a bucket that holds it, with an error under 1/32")
+    void bucketError() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong(1L << random.nextInt(1, 40));
+            long highest = LatencyHistogram.highestValue(LatencyHistogram.bucket(value));
+            assertTrue(highest >= value, () -> value + " counted as " + highest);
+            assertTrue(highest - value <= value / 32, () -> value + " counted as " + highest);
+        }
+    }
+
+    @Test
+    @DisplayName("Percentiles, mean and max come from the recorded values")
+    void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; value++) histogram.record(value * 1000);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.count());
+        assertEquals(500_500, snapshot.mean(), 0.001);
+        assertEquals(500_000, snapshot.percentile(0.5), 500_000 / 32.0);
+        assertEquals(990_000, snapshot.percentile(0.99), 990_000 / 32.0);
+        assertEquals(1_000_000, snapshot.max(), 1_000_000 / 32.0);
+    }
+
+    @Test
+    @DisplayName("A snapshot minus an earlier one holds the values recorded between them")
+    void minus() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_000);
+        LatencyHistogram.Snapshot before = histogram.snapshot();
+        histogram.record(10);
+        histogram.record(20);
+        LatencyHistogram.Snapshot between = histogram.snapshot().minus(before);
+
+        assertEquals(2, between.count());
+        assertEquals(20, between.max());
+        assertEquals(15, between.mean(), 0.001);
+    }
+}
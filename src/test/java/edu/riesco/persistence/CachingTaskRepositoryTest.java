@@ -0,0 +1,183 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.IdMode;
+import edu.riesco.domain.NoDueDate;
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskStatus;
+import edu.riesco.exception.TaskNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachingTaskRepositoryTest {
+
+    private static final long MAX_BYTES = 1 << 20;
+
+    @TempDir
+    Path tempDir;
+    private Path filePath;
+    private CachingTaskRepository repository;
+
+    @BeforeEach
+    void setup() {
+        filePath = tempDir.resolve("tmTestFile.json");
+        repository = new CachingTaskRepository(new JsonFileTaskRepository(filePath.toString()), MAX_BYTES);
+    }
+
+    private static Task task(String title) {
+        return Task.from(title, "", new NoDueDate());
+    }
+
+    @Test
+    @DisplayName("Tasks read again are found in the cache")
+    void hits() {
+        repository = new CachingTaskRepository(new MemoryTaskRepository(), MAX_BYTES);
+        repository.createAll(List.of(task("Title 1"), task("Title 2")));
+
+        assertEquals("Title 1", repository.getById(1).getTitle());
+        assertEquals("Title 1", repository.getById(1).getTitle());
+        assertEquals("Title 2", repository.getById(2).getTitle());
+
+        CachingTaskRepository.Stats stats = repository.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(2, stats.tasks());
+    }
+
+    @Test
+    @DisplayName("Created and updated tasks are written through and cached")
+    void writeThrough() {
+        repository.create(task("Title 1"));
+        repository.update(1, task("Title 1").withStatus(TaskStatus.COMPLETED));
+
+        assertEquals(TaskStatus.COMPLETED, repository.getById(1).getStatus());
+        assertEquals(1, repository.stats().hits());
+        assertEquals(TaskStatus.COMPLETED,
+                new JsonFileTaskRepository(filePath.toString()).getById(1).getStatus());
+    }
+
+    @Test
+    @DisplayName("The least recently used tasks are dropped when the cache is full")
+    void eviction() {
+        repository = new CachingTaskRepository(new MemoryTaskRepository(), 1000);
+        for (int i = 1; i <= 20; i++) repository.create(task("Title " + i));
+
+        CachingTaskRepository.Stats stats = repository.stats();
+        assertTrue(stats.bytes() <= 1000);
+        assertTrue(stats.evictions() > 0);
+        assertEquals(20 - stats.evictions(), stats.tasks());
+
+        repository.getById(20);
+        assertEquals(1, repository.stats().hits());
+        repository.getById(1);
+        assertEquals(1, repository.stats().misses());
+    }
+
+    @Test
+    @DisplayName("With positional IDs, deleting a task drops the cached tasks after it")
+    void positionalDelete() {
+        for (int i = 1; i <= 3; i++) repository.create(task("Title " + i));
+        repository.delete(2);
+
+        assertEquals("Title 1", repository.getById(1).getTitle());
+        assertEquals("Title 3", repository.getById(2).getTitle());
+        assertThrows(TaskNotFoundException.class, () -> repository.getById(3));
+        assertEquals(1, repository.stats().hits());
+    }
+
+    @Test
+    @DisplayName("With stable IDs, deleting a task keeps the other cached tasks")
+    void stableDelete() {
+        repository = new CachingTaskRepository(new MemoryTaskRepository(IdMode.STABLE), MAX_BYTES);
+        for (int i = 1; i <= 3; i++) repository.create(task("Title " + i));
+        repository.delete(2);
+
+        assertEquals("Title 3", repository.getById(3).getTitle());
+        assertEquals(1, repository.stats().hits());
+        assertThrows(TaskNotFoundException.class, () -> repository.getById(2));
+    }
+
+    @Test
+    @DisplayName("Edited tasks are read again from the repository")
+    void editAll() {
+        repository.create(task("Title 1"));
+        repository.editAll(Map.of(1, task -> task.withStatus(TaskStatus.COMPLETED)));
+
+        assertEquals(TaskStatus.COMPLETED, repository.getById(1).getStatus());
+        assertEquals(1, repository.stats().misses());
+    }
+
+    @Test
+    @DisplayName("The cache is dropped when the file is changed by someone else")
+    void fileChanged() throws IOException {
+        repository.create(task("Title 1"));
+        repository.create(task("Title 2"));
+        assertEquals("Title 2", repository.getById(2).getTitle());
+        assertEquals(1, repository.stats().hits());
+
+        Files.write(filePath, (task("Title 3").toJson() + "\n").getBytes());
+
+        assertEquals("Title 3", repository.getById(1).getTitle());
+        assertThrows(TaskNotFoundException.class, () -> repository.getById(2));
+        assertEquals(1, repository.stats().hits());
+    }
+
+    @Test
+    @DisplayName("The cache is dropped when someone else rewrites a task in place, within one modification time")
+    void fileRewrittenInPlace() throws IOException {
+        repository.create(task("Title 1"));
+        repository.create(task("Title 2"));
+        assertEquals("Title 1", repository.getById(1).getTitle());
+        FileTime modified = Files.getLastModifiedTime(filePath);
+        long size = Files.size(filePath);
+
+        new JsonFileTaskRepository(filePath.toString()).update(1, task("Title 3"));
+        Files.setLastModifiedTime(filePath, modified);
+        assertEquals(size, Files.size(filePath));
+
+        assertEquals("Title 3", repository.getById(1).getTitle());
+    }
+
+    @Test
+    @DisplayName("A write that reaches the repository first but finishes last does not leave its task cached")
+    void concurrentWriters() throws InterruptedException {
+        CountDownLatch secondWritten = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        repository = new CachingTaskRepository(new MemoryTaskRepository() {
+            @Override
+            public void update(int id, Task newTask) {
+                super.update(id, newTask);
+                if (first.getAndSet(false)) {
+                    try {
+                        secondWritten.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }, MAX_BYTES);
+        repository.create(task("Title 1"));
+
+        Thread firstWriter = Thread.ofPlatform().start(() -> repository.update(1, task("Title A")));
+        while (first.get()) Thread.onSpinWait();
+        repository.update(1, task("Title B"));
+        secondWritten.countDown();
+        firstWriter.join();
+
+        assertEquals("Title B", repository.getById(1).getTitle());
+    }
+}
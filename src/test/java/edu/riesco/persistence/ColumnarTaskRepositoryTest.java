@@ -0,0 +1,124 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.DueDate;
+import edu.riesco.domain.IdMode;
+import edu.riesco.domain.NoDueDate;
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnarTaskRepositoryTest {
+
+    @Test
+    @DisplayName("Tasks read back have the title, description, due date and status they were saved with")
+    void roundTrip() {
+        ColumnarTaskRepository repository = new ColumnarTaskRepository();
+        repository.createAll(List.of(
+                Task.from("Título ✓", "Descripción", DueDate.of(2999, 12, 31), TaskStatus.COMPLETED),
+                Task.from("Title", "", new NoDueDate())));
+
+        Task first = repository.getById(1);
+        assertEquals("Título ✓", first.getTitle());
+        assertEquals("Descripción", first.getDescription());
+        assertEquals("2999-12-31", first.getPrintableDueDate());
+        assertEquals(TaskStatus.COMPLETED, first.getStatus());
+        assertInstanceOf(NoDueDate.class, repository.getById(2).getDueDate());
+        assertEquals(TaskStatus.PENDING, repository.getById(2).getStatus());
+    }
+
+    @Test
+    @DisplayName("Equal strings are stored once, and strings no task uses are dropped")
+    void stringPool() {
+        StringPool strings = new StringPool();
+        int first = strings.add("Same");
+        assertEquals(first, strings.add("Same"));
+        int other = strings.add("Other");
+        assertNotEquals(first, other);
+
+        strings.release(first);
+        assertEquals("Same", strings.get(first));
+        strings.release(first);
+        assertEquals(1, strings.size());
+        assertNotEquals(first, strings.add("Same"));
+        assertEquals("Other", strings.get(other));
+    }
+
+    @Test
+    @DisplayName("Tasks keep their strings after many updates make the pool compact itself")
+    void stringCompaction() {
+        ColumnarTaskRepository repository = new ColumnarTaskRepository(IdMode.STABLE);
+        for (int i = 1; i <= 100; i++) repository.create(Task.from("Title " + i, "Shared", new NoDueDate()));
+        for (int round = 0; round < 50; round++) {
+            for (int id = 1; id <= 100; id += 2) {
+                repository.update(id, Task.from("Title " + id + " round " + round, "Shared", new NoDueDate()));
+            }
+        }
+        for (int id = 2; id <= 100; id += 4) repository.delete(id);
+
+        assertEquals("Title 1 round 49", repository.getById(1).getTitle());
+        assertEquals("Title 4", repository.getById(4).getTitle());
+        assertEquals("Shared", repository.getById(99).getDescription());
+        assertEquals(75, repository.getAll().size());
+    }
+
+    @Test
+    @DisplayName("Streams read every task in ID order, in several chunks")
+    void streams() {
+        ColumnarTaskRepository repository = new ColumnarTaskRepository(IdMode.STABLE);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 1; i <= 3000; i++) tasks.add(Task.from("Title " + i, "", new NoDueDate()));
+        repository.createAll(tasks);
+        for (int id = 1; id <= 3000; id += 3) repository.delete(id);
+
+        try (Stream<Map.Entry<Integer, Task>> stream = repository.streamWithIds()) {
+            List<Integer> expected = IntStream.rangeClosed(1, 3000).filter(id -> id % 3 != 1).boxed().toList();
+            assertEquals(expected, stream.map(Map.Entry::getKey).toList());
+        }
+        try (Stream<Task> stream = repository.stream()) {
+            assertEquals("Title 3000", stream.reduce((first, second) -> second).orElseThrow().getTitle());
+        }
+    }
+
+    @Test
+    @DisplayName("With positional IDs, a delete made while a stream is read waits for it to be closed")
+    void positionalStreamAndDelete() throws InterruptedException {
+        ColumnarTaskRepository repository = new ColumnarTaskRepository();
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 1; i <= 3000; i++) tasks.add(Task.from("Title " + i, "", new NoDueDate()));
+        repository.createAll(tasks);
+
+        Thread deleter;
+        try (Stream<Task> stream = repository.stream()) {
+            Iterator<Task> iterator = stream.iterator();
+            for (int i = 1; i <= 1500; i++) assertEquals("Title " + i, iterator.next().getTitle());
+            deleter = Thread.ofPlatform().start(() -> repository.delete(1));
+            deleter.join(200);
+            assertTrue(deleter.isAlive());
+            for (int i = 1501; i <= 3000; i++) assertEquals("Title " + i, iterator.next().getTitle());
+        }
+        deleter.join();
+        assertEquals("Title 2", repository.getById(1).getTitle());
+        assertEquals(2999, repository.getAll().size());
+    }
+
+    @Test
+    @DisplayName("Arrays grown near the largest array length stop at it")
+    void grownToTheLimit() {
+        assertEquals(151, StringPool.grown(100));
+        assertEquals(Integer.MAX_VALUE - 8, StringPool.grown(Integer.MAX_VALUE / 3 * 2));
+        assertEquals(Integer.MAX_VALUE - 8, StringPool.grown(Integer.MAX_VALUE - 8));
+    }
+}
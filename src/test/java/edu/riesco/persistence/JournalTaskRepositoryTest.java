@@ -0,0 +1,150 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.NoDueDate;
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTaskRepositoryTest {
+
+    private static final String A_TITLE = "aTitle";
+    private static final String ANOTHER_TITLE = "Another title";
+    private static final String TITLE_3 = "Title 3";
+
+    @TempDir
+    Path tempDir;
+    private Path journalPath;
+    private JournalTaskRepository repository;
+
+    @BeforeEach
+    void setup() {
+        journalPath = tempDir.resolve("tmTestFile.journal");
+        repository = new JournalTaskRepository(journalPath.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
+    private static Task task(String title) {
+        return Task.from(title, "", new NoDueDate());
+    }
+
+    private void reopen() {
+        repository.close();
+        repository = new JournalTaskRepository(journalPath.toString());
+    }
+
+    private static void truncate(Path path, long bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - bytes);
+        }
+    }
+
+    @Test
+    @DisplayName("Tasks are rebuilt from the journal when the repository is opened again")
+    void replay() {
+        repository.create(task(A_TITLE));
+        repository.create(task(ANOTHER_TITLE));
+        repository.create(task(TITLE_3));
+        repository.update(1, task(A_TITLE).withStatus(TaskStatus.COMPLETED));
+        repository.delete(2);
+        reopen();
+
+        List<Task> tasks = repository.getAll();
+        assertEquals(2, tasks.size());
+        assertEquals(TaskStatus.COMPLETED, tasks.get(0).getStatus());
+        assertEquals(TITLE_3, tasks.get(1).getTitle());
+    }
+
+    @Test
+    @DisplayName("A record cut short by a crash is discarded and the journal can be appended again")
+    void tornRecord() throws IOException {
+        repository.create(task(A_TITLE));
+        repository.create(task(ANOTHER_TITLE));
+        repository.close();
+        truncate(journalPath, 5);
+        repository = new JournalTaskRepository(journalPath.toString());
+
+        assertEquals(1, repository.getAll().size());
+        assertEquals(2, repository.create(task(TITLE_3)));
+        reopen();
+        assertEquals(TITLE_3, repository.getById(2).getTitle());
+    }
+
+    @Test
+    @DisplayName("A journal cut inside a record header is recovered")
+    void tornHeader() throws IOException {
+        repository.create(task(A_TITLE));
+        long size = Files.size(journalPath);
+        repository.create(task(ANOTHER_TITLE));
+        repository.close();
+        truncate(journalPath, Files.size(journalPath) - size - 3);
+        repository = new JournalTaskRepository(journalPath.toString());
+
+        assertEquals(1, repository.getAll().size());
+        assertEquals(size, Files.size(journalPath));
+    }
+
+    @Test
+    @DisplayName("A record with a wrong checksum ends the journal")
+    void corruptRecord() throws IOException {
+        repository.create(task(A_TITLE));
+        repository.create(task(ANOTHER_TITLE));
+        repository.close();
+        byte[] journal = Files.readAllBytes(journalPath);
+        journal[journal.length - 3] ^= 1;
+        Files.write(journalPath, journal);
+        repository = new JournalTaskRepository(journalPath.toString());
+
+        assertEquals(1, repository.getAll().size());
+        assertEquals(A_TITLE, repository.getById(1).getTitle());
+    }
+
+    @Test
+    @DisplayName("A snapshot truncates the journal and operations are not applied twice")
+    void snapshot() throws IOException {
+        repository.create(task(A_TITLE));
+        repository.create(task(ANOTHER_TITLE));
+        byte[] journalBeforeSnapshot = Files.readAllBytes(journalPath);
+        repository.snapshot();
+        assertEquals(0, Files.size(journalPath));
+
+        repository.delete(1);
+        reopen();
+        assertEquals(1, repository.getAll().size());
+        assertEquals(ANOTHER_TITLE, repository.getById(1).getTitle());
+
+        // Crash after the snapshot was written but before the journal was truncated.
+        repository.close();
+        Files.write(journalPath, journalBeforeSnapshot);
+        repository = new JournalTaskRepository(journalPath.toString());
+        assertEquals(2, repository.getAll().size());
+    }
+
+    @Test
+    @DisplayName("Snapshots are taken in the background after many operations")
+    void backgroundSnapshot() {
+        for (int i = 0; i < 10_000; i++) repository.create(task(A_TITLE));
+        repository.create(task(TITLE_3));
+        reopen();
+
+        assertTrue(Files.exists(tempDir.resolve("tmTestFile.journal.snapshot")));
+        assertEquals(10_001, repository.getAll().size());
+        assertEquals(TITLE_3, repository.getById(10_001).getTitle());
+    }
+}
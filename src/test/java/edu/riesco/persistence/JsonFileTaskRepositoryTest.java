@@ -0,0 +1,333 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.IdMode;
+import edu.riesco.domain.NoDueDate;
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskStatus;
+import edu.riesco.exception.TaskNotFoundException;
+import edu.riesco.metrics.Metrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonFileTaskRepositoryTest {
+
+    private static final String A_TITLE = "aTitle";
+    private static final String ANOTHER_TITLE = "Another title";
+    private static final String TITLE_3 = "Title 3";
+
+    @TempDir
+    Path tempDir;
+    private Path filePath;
+    private JsonFileTaskRepository repository;
+
+    @BeforeEach
+    void setup() {
+        filePath = tempDir.resolve("tmTestFile.json");
+        repository = new JsonFileTaskRepository(filePath.toString());
+    }
+
+    private static Task task(String title) {
+        return Task.from(title, "", new NoDueDate());
+    }
+
+    @Test
+    @DisplayName("Tasks are found by ID through the line index")
+    void getById() {
+        repository.create(task(A_TITLE));
+        repository.create(task(ANOTHER_TITLE));
+        repository.create(task(TITLE_3));
+
+        assertEquals(A_TITLE, repository.getById(1).getTitle());
+        assertEquals(TITLE_3, repository.getById(3).getTitle());
+        assertEquals(ANOTHER_TITLE, repository.getById(2).getTitle());
+        assertThrows(TaskNotFoundException.class, () -> repository.getById(4));
+    }
+
+    @Test
+    @DisplayName("The line index is rebuilt when the file is changed by someone else")
+    void staleIndex() throws IOException {
+        repository.create(task(A_TITLE));
+        repository.create(task(ANOTHER_TITLE));
+        assertEquals(ANOTHER_TITLE, repository.getById(2).getTitle());
+
+        Files.write(filePath, (task(TITLE_3).toJson() + "\n").getBytes());
+
+        assertEquals(TITLE_3, repository.getById(1).getTitle());
+        assertThrows(TaskNotFoundException.class, () -> repository.getById(2));
+    }
+
+    @Test
+    @DisplayName("Files with CRLF line separators are indexed")
+    void crlfLines() throws IOException {
+        Files.write(filePath, (task(A_TITLE).toJson() + "\r\n" + task(ANOTHER_TITLE).toJson() + "\r\n").getBytes());
+
+        assertEquals(A_TITLE, repository.getById(1).getTitle());
+        assertEquals(ANOTHER_TITLE, repository.getById(2).getTitle());
+        assertEquals(3, repository.create(task(TITLE_3)));
+        assertEquals(TITLE_3, repository.getById(3).getTitle());
+    }
+
+    @Test
+    @DisplayName("Deleting a task keeps other tasks with the same content")
+    void deleteDuplicates() {
+        repository.create(task(A_TITLE));
+        repository.create(task(A_TITLE));
+        repository.create(task(A_TITLE));
+        repository.delete(2);
+
+        assertEquals(2, repository.getAll().size());
+        assertEquals(A_TITLE, repository.getById(2).getTitle());
+    }
+
+    @Test
+    @DisplayName("Updates that grow a task move the following tasks")
+    void growingUpdate() {
+        repository.create(task(A_TITLE));
+        repository.create(task(ANOTHER_TITLE));
+        repository.update(1, task(A_TITLE + " with a much longer title than before"));
+        repository.update(2, task("T"));
+
+        assertEquals(A_TITLE + " with a much longer title than before", repository.getById(1).getTitle());
+        assertEquals("T", repository.getById(2).getTitle());
+        assertEquals(2, repository.getAll().size());
+    }
+
+    @Test
+    @DisplayName("Several updates that grow tasks are saved at once")
+    void growingUpdateAll() {
+        for (int i = 1; i <= 5; i++) repository.create(task("Title " + i));
+        repository.updateAll(Map.of(
+                4, task("Title 4 is now longer"),
+                2, task("Title 2 is now longer too"),
+                3, task("3")));
+
+        List<Task> tasks = repository.getAll();
+        assertEquals(List.of("Title 1", "Title 2 is now longer too", "3", "Title 4 is now longer", "Title 5"),
+                tasks.stream().map(Task::getTitle).toList());
+        assertEquals("Title 5", repository.getById(5).getTitle());
+        assertEquals("Title 4 is now longer", repository.getById(4).getTitle());
+        assertEquals(6, repository.create(task(TITLE_3)));
+    }
+
+    @Test
+    @DisplayName("In the slots layout, updates that fit in the slot do not change the file size")
+    void slotUpdateInPlace() throws IOException {
+        repository = new JsonFileTaskRepository(filePath.toString(), JsonFileTaskRepository.Layout.SLOTS);
+        repository.create(task(A_TITLE));
+        repository.create(task(ANOTHER_TITLE));
+        long size = Files.size(filePath);
+        repository.update(1, task(A_TITLE).withStatus(TaskStatus.COMPLETED));
+
+        assertEquals(size, Files.size(filePath));
+        assertEquals(TaskStatus.COMPLETED, repository.getById(1).getStatus());
+        assertEquals(ANOTHER_TITLE, repository.getById(2).getTitle());
+    }
+
+    @Test
+    @DisplayName("In the slots layout, deleted tasks are blanked and compacted later without changing IDs")
+    void slotDeleteAndCompact() throws IOException {
+        repository = new JsonFileTaskRepository(filePath.toString(), JsonFileTaskRepository.Layout.SLOTS);
+        for (int i = 1; i <= 4; i++) repository.create(task("Title " + i));
+        long size = Files.size(filePath);
+        repository.delete(2);
+
+        assertEquals(size, Files.size(filePath));
+        assertEquals("Title 3", repository.getById(2).getTitle());
+        assertEquals(3, repository.getAll().size());
+
+        repository.delete(1);
+        repository.delete(1);
+        assertTrue(Files.size(filePath) < size);
+        assertEquals("Title 4", repository.getById(1).getTitle());
+        assertEquals(2, repository.create(task(TITLE_3)));
+    }
+
+    @Test
+    @DisplayName("Repositories of the same file used from several threads get different IDs for new tasks")
+    void concurrentCreates() throws Exception {
+        JsonFileTaskRepository other = new JsonFileTaskRepository(filePath.toString(), JsonFileTaskRepository.Layout.SLOTS);
+        Callable<Set<Integer>> creator = () -> {
+            Set<Integer> ids = new HashSet<>();
+            for (int i = 0; i < 200; i++) ids.add(repository.create(task(A_TITLE)));
+            return ids;
+        };
+        Callable<Set<Integer>> otherCreator = () -> {
+            Set<Integer> ids = new HashSet<>();
+            for (int i = 0; i < 200; i++) ids.add(other.create(task(ANOTHER_TITLE)));
+            return ids;
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Set<Integer>> ids = executor.submit(creator);
+            Future<Set<Integer>> otherIds = executor.submit(otherCreator);
+            Set<Integer> allIds = new HashSet<>(ids.get(1, TimeUnit.MINUTES));
+            allIds.addAll(otherIds.get(1, TimeUnit.MINUTES));
+
+            assertEquals(400, allIds.size());
+            assertEquals(400, repository.getAll().size());
+            assertEquals(200, repository.getAll().stream().filter(task -> task.getTitle().equals(A_TITLE)).count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("With group commit, tasks created from several threads are all saved, with fewer forces than tasks")
+    void groupCommit() throws Exception {
+        repository = new JsonFileTaskRepository(filePath.toString(), JsonFileTaskRepository.Layout.LINES,
+                IdMode.POSITIONAL, Durability.group(Duration.ofMillis(5), 4));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        boolean metricsEnabled = Metrics.isEnabled();
+        Metrics.setEnabled(true);
+        Metrics.Snapshot before = Metrics.snapshot();
+        try {
+            List<Future<Set<Integer>>> results = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                results.add(executor.submit(() -> {
+                    Set<Integer> ids = new HashSet<>();
+                    for (int i = 0; i < 25; i++) ids.add(repository.create(task(A_TITLE)));
+                    return ids;
+                }));
+            }
+            Set<Integer> allIds = new HashSet<>();
+            for (Future<Set<Integer>> ids : results) allIds.addAll(ids.get(1, TimeUnit.MINUTES));
+
+            long forces = Metrics.snapshot().minus(before).counters().getOrDefault("file.forces", 0L);
+            assertTrue(forces > 0 && forces < 100, forces + " forces");
+            assertEquals(100, allIds.size());
+            assertEquals(100, new JsonFileTaskRepository(filePath.toString()).getAll().size());
+        } finally {
+            executor.shutdownNow();
+            Metrics.setEnabled(metricsEnabled);
+        }
+    }
+
+    @Test
+    @DisplayName("With sync durability, every operation is saved")
+    void syncDurability() {
+        repository = new JsonFileTaskRepository(filePath.toString(), JsonFileTaskRepository.Layout.SLOTS,
+                IdMode.STABLE, Durability.sync());
+        for (int i = 1; i <= 3; i++) repository.create(task("Title " + i));
+        repository.update(2, task(ANOTHER_TITLE));
+        repository.editAll(Map.of(3, task -> task.withStatus(TaskStatus.COMPLETED)));
+        repository.delete(1);
+        repository.compact();
+
+        assertEquals(List.of(ANOTHER_TITLE, "Title 3"), repository.getAll().stream().map(Task::getTitle).toList());
+        assertEquals(TaskStatus.COMPLETED, repository.getById(3).getStatus());
+    }
+
+    @Test
+    @DisplayName("Durability settings are parsed from text")
+    void parseDurability() {
+        assertEquals(Durability.none(), Durability.parse("none"));
+        assertEquals(Durability.sync(), Durability.parse("SYNC"));
+        assertEquals(Durability.group(Durability.DEFAULT_GROUP_DELAY, Durability.DEFAULT_GROUP_OPERATIONS),
+                Durability.parse("group"));
+        assertEquals(Durability.group(Duration.ofMillis(5), 32), Durability.parse("group:5:32"));
+        assertThrows(IllegalArgumentException.class, () -> Durability.parse("always"));
+        assertThrows(IllegalArgumentException.class, () -> Durability.parse("group:5:0"));
+        assertEquals("Invalid number in durability: group:abc",
+                assertThrows(IllegalArgumentException.class, () -> Durability.parse("group:abc")).getMessage());
+    }
+
+    @Test
+    @DisplayName("Stable IDs are saved in the file and kept when it is opened again")
+    void stableIdsInFile() throws IOException {
+        repository = new JsonFileTaskRepository(filePath.toString(), JsonFileTaskRepository.Layout.LINES, IdMode.STABLE);
+        for (int i = 1; i <= 3; i++) repository.create(task("Title " + i));
+        repository.delete(3);
+        assertTrue(Files.readAllLines(filePath).get(0).startsWith("{\"id\":1,"));
+
+        repository = new JsonFileTaskRepository(filePath.toString(), JsonFileTaskRepository.Layout.LINES, IdMode.STABLE);
+        Files.delete(tempDir.resolve("tmTestFile.json.idx"));
+        assertEquals("Title 2", repository.getById(2).getTitle());
+        assertEquals(4, repository.create(task("Title 4")));
+        // Read with positional IDs, the "id" field is ignored.
+        assertEquals("Title 4", new JsonFileTaskRepository(filePath.toString()).getById(3).getTitle());
+    }
+
+    @Test
+    @DisplayName("Big files are read in chunks by several threads, in ID order")
+    void chunkedRead() throws IOException {
+        repository = new JsonFileTaskRepository(filePath.toString(), JsonFileTaskRepository.Layout.LINES, IdMode.STABLE);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 1; i <= 20_000; i++) tasks.add(Task.from("Title " + i, "Description ".repeat(5), new NoDueDate()));
+        repository.createAll(tasks);
+        for (int id = 7; id <= 20_000; id += 7) repository.delete(id);
+        assertTrue(Files.size(filePath) > 4 * 256 * 1024);  // Several chunks
+        repository.loadThreads(3);
+
+        List<Integer> expected = new ArrayList<>();
+        for (int id = 1; id <= 20_000; id++) if (id % 7 != 0) expected.add(id);
+        try (Stream<Map.Entry<Integer, Task>> stream = repository.streamWithIds()) {
+            List<Map.Entry<Integer, Task>> entries = stream.toList();
+            assertEquals(expected, entries.stream().map(Map.Entry::getKey).toList());
+            assertTrue(entries.stream().allMatch(entry -> entry.getValue().getTitle().equals("Title " + entry.getKey())));
+        }
+        List<Task> all = repository.getAll();
+        assertEquals(expected.size(), all.size());
+        assertEquals("Title 20000", all.getLast().getTitle());
+        repository.create(task("After the stream"));  // The store was unlocked
+    }
+
+    @Test
+    @DisplayName("Big files read in chunks leave out the same blank lines as files read line by line")
+    void chunkedReadBlankLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        List<String> blanks = List.of("", "   ", "\t", " \t \r", "\u2003", "\u000B\f");
+        for (int i = 1; i <= 20_000; i++) {
+            lines.add(Task.from("Title " + i, "Description ".repeat(5), new NoDueDate()).toJson());
+            if (i % 10 == 0) lines.add(blanks.get(i / 10 % blanks.size()));
+        }
+        Files.write(filePath, lines);
+        assertTrue(Files.size(filePath) > 4 * 256 * 1024);
+
+        List<Task> lineByLine = repository.getAll();
+        repository.loadThreads(3);
+        List<Task> chunked = repository.getAll();
+
+        assertEquals(20_000, lineByLine.size());
+        assertEquals(lineByLine.stream().map(Task::getTitle).toList(), chunked.stream().map(Task::getTitle).toList());
+    }
+
+    @Test
+    @DisplayName("Chunks read ahead are fewer and smaller when they would not fit in the heap")
+    void chunksInFlight() {
+        long megabyte = 1024 * 1024;
+        assertEquals(megabyte, ChunkedLineReader.chunkBytes(32 * megabyte, 8, 1024 * megabyte));
+        assertEquals(megabyte / 2, ChunkedLineReader.chunkBytes(32 * megabyte, 8, 4 * megabyte));
+        assertEquals(256 * 1024, ChunkedLineReader.chunkBytes(32 * megabyte, 8, megabyte));
+
+        long[] bounds = {0, megabyte, 2 * megabyte, 3 * megabyte};
+        assertEquals(8, ChunkedLineReader.chunksAhead(bounds, 8, 1024 * megabyte));
+        assertEquals(3, ChunkedLineReader.chunksAhead(bounds, 8, 16 * megabyte));
+        assertEquals(1, ChunkedLineReader.chunksAhead(bounds, 8, 4 * megabyte));
+        assertTrue(ChunkedLineReader.isBlank(" \t\u2003".getBytes(StandardCharsets.UTF_8), 0, 5));
+        assertFalse(ChunkedLineReader.isBlank(" é".getBytes(StandardCharsets.UTF_8), 0, 3));
+    }
+}
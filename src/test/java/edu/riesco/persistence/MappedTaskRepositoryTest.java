@@ -0,0 +1,164 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.DueDate;
+import edu.riesco.domain.NoDueDate;
+import edu.riesco.domain.Task;
+import edu.riesco.domain.TaskStatus;
+import edu.riesco.exception.TaskRepositoryException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedTaskRepositoryTest {
+
+    private static final LocalDate NEXT_WEEK = LocalDate.now().plusDays(7);
+    private static final String A_TITLE = "aTitle";
+    private static final String ANOTHER_TITLE = "Another title";
+    private static final String TITLE_3 = "Title 3";
+
+    @TempDir
+    Path tempDir;
+    private Path filePath;
+    private MappedTaskRepository repository;
+
+    @BeforeEach
+    void setup() {
+        filePath = tempDir.resolve("tmTestFile.tmb");
+        repository = new MappedTaskRepository(filePath.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
+    private static Task task(String title) {
+        return Task.from(title, "", new NoDueDate());
+    }
+
+    private void reopen() {
+        repository.close();
+        repository = new MappedTaskRepository(filePath.toString());
+    }
+
+    @Test
+    @DisplayName("Every task field is stored and read back after reopening the store")
+    void fields() {
+        DueDate dueDate = DueDate.of(NEXT_WEEK.getYear(), NEXT_WEEK.getMonthValue(), NEXT_WEEK.getDayOfMonth());
+        repository.create(Task.from("Título ✓", "Descripción", dueDate).withStatus(TaskStatus.COMPLETED));
+        repository.create(task(ANOTHER_TITLE));
+        reopen();
+
+        Task task = repository.getById(1);
+        assertEquals("Título ✓", task.getTitle());
+        assertEquals("Descripción", task.getDescription());
+        assertEquals(dueDate.printableDueDate(), task.getPrintableDueDate());
+        assertEquals(TaskStatus.COMPLETED, task.getStatus());
+        assertEquals("", repository.getById(2).getPrintableDueDate());
+    }
+
+    @Test
+    @DisplayName("The store grows beyond the initial mapping")
+    void growth() {
+        String description = "x".repeat(1000);
+        for (int i = 1; i <= 2000; i++) repository.create(Task.from("Title " + i, description, new NoDueDate()));
+        reopen();
+
+        assertEquals(2000, repository.getAll().size());
+        assertEquals("Title 2000", repository.getById(2000).getTitle());
+    }
+
+    @Test
+    @DisplayName("Updates that do not fit in the record move the following records")
+    void growingUpdate() {
+        repository.create(task(A_TITLE));
+        repository.create(task(ANOTHER_TITLE));
+        repository.update(1, Task.from(A_TITLE, "d".repeat(500), new NoDueDate()));
+        reopen();
+
+        assertEquals(500, repository.getById(1).getDescription().length());
+        assertEquals(ANOTHER_TITLE, repository.getById(2).getTitle());
+    }
+
+    @Test
+    @DisplayName("Deleted records are skipped and compacted without changing IDs")
+    void deleteAndCompact() {
+        for (int i = 1; i <= 4; i++) repository.create(task("Title " + i));
+        repository.delete(2);
+        assertEquals("Title 3", repository.getById(2).getTitle());
+
+        repository.delete(1);
+        repository.delete(1);
+        reopen();
+        assertEquals(1, repository.getAll().size());
+        assertEquals("Title 4", repository.getById(1).getTitle());
+        assertEquals(2, repository.create(task(TITLE_3)));
+    }
+
+    @Test
+    @DisplayName("The task list fails if the store changes while it is in use")
+    void listFailsAfterChanges() {
+        repository.create(task(A_TITLE));
+        List<Task> tasks = repository.getAll();
+        repository.create(task(ANOTHER_TITLE));
+
+        assertThrows(ConcurrentModificationException.class, () -> tasks.get(0));
+    }
+
+    @Test
+    @DisplayName("Tasks are converted from and to JSON-lines files")
+    void jsonConversion() throws IOException {
+        Path jsonFile = tempDir.resolve("tasks.json");
+        Files.write(jsonFile, List.of(task(A_TITLE).toJson(), task(ANOTHER_TITLE).withStatus(TaskStatus.COMPLETED).toJson()));
+        Path converted = tempDir.resolve("converted.tmb");
+        try (MappedTaskRepository mapped = MappedTaskRepository.fromJsonFile(jsonFile.toString(), converted.toString())) {
+            assertEquals(2, mapped.getAll().size());
+            assertEquals(TaskStatus.COMPLETED, mapped.getById(2).getStatus());
+
+            Path exported = tempDir.resolve("exported.json");
+            mapped.toJsonFile(exported.toString());
+            assertEquals(Files.readAllLines(jsonFile), Files.readAllLines(exported));
+        }
+    }
+
+    @Test
+    @DisplayName("Files that are not task stores are rejected")
+    void notAStore() throws IOException {
+        Path jsonFile = tempDir.resolve("tasks.json");
+        Files.write(jsonFile, List.of(task(A_TITLE).toJson()));
+
+        assertThrows(TaskRepositoryException.class, () -> new MappedTaskRepository(jsonFile.toString()));
+    }
+
+    @Test
+    @DisplayName("Stores with zero-filled records are rejected instead of read forever")
+    void zeroFilledRecord() throws IOException {
+        repository.create(task(A_TITLE));
+        repository.close();
+        // The end in the header points past the last record, into bytes a crash left as zeros.
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer end = ByteBuffer.allocate(Long.BYTES);
+            channel.read(end, 8);
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, end.flip().getLong() + 64), 8);
+        }
+
+        TaskRepositoryException e = assertThrows(TaskRepositoryException.class,
+                () -> new MappedTaskRepository(filePath.toString()));
+        assertTrue(e.getMessage().startsWith("Corrupt task store"));
+        repository = new MappedTaskRepository(tempDir.resolve("other.tmb").toString());
+    }
+}
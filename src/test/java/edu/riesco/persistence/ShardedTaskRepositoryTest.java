@@ -0,0 +1,188 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.NoDueDate;
+import edu.riesco.domain.Task;
+import edu.riesco.exception.EmptyRepositoryException;
+import edu.riesco.exception.TaskNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedTaskRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+    private ShardedTaskRepository repository;
+
+    @BeforeEach
+    void setup() {
+        repository = new ShardedTaskRepository(tempDir, 3);
+    }
+
+    private static Task task(String title) {
+        return Task.from(title, "", new NoDueDate());
+    }
+
+    private static List<Task> tasks(int count) {
+        return IntStream.rangeClosed(1, count).mapToObj(i -> task("Title " + i)).toList();
+    }
+
+    private static List<String> titles(List<Task> tasks) {
+        return tasks.stream().map(Task::getTitle).toList();
+    }
+
+    @Test
+    @DisplayName("Tasks are spread over the shards and read back in ID order")
+    void createAndGet() throws Exception {
+        assertEquals(7, repository.createAll(tasks(7)));
+
+        assertEquals(titles(tasks(7)), titles(repository.getAll()));
+        for (int id = 1; id <= 7; id++) assertEquals("Title " + id, repository.getById(id).getTitle());
+        for (int shard = 0; shard < 3; shard++) assertTrue(Files.exists(tempDir.resolve("tasks-1-" + shard + ".json")));
+        try (Stream<Map.Entry<Integer, Task>> tasks = repository.streamWithIds()) {
+            assertEquals(List.of(1, 2, 3, 4, 5, 6, 7), tasks.map(Map.Entry::getKey).toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Tasks keep their IDs after a delete, and deleted IDs are not given again")
+    void stableIds() {
+        repository.createAll(tasks(4));
+        repository.delete(2);
+        repository.delete(4);
+
+        assertEquals(List.of("Title 1", "Title 3"), titles(repository.getAll()));
+        assertThrows(TaskNotFoundException.class, () -> repository.getById(2));
+        assertTrue(repository.create(task("Title 5")) > 4);
+    }
+
+    @Test
+    @DisplayName("Updates and edits of tasks in several shards are saved in their shards")
+    void updateAll() {
+        repository.createAll(tasks(5));
+        repository.updateAll(Map.of(1, task("New 1"), 5, task("New 5")));
+        repository.editAll(Map.of(2, task -> task("Edited 2"), 3, task -> task("Edited 3")));
+
+        assertEquals(List.of("New 1", "Edited 2", "Edited 3", "Title 4", "New 5"), titles(repository.getAll()));
+        assertThrows(TaskNotFoundException.class, () -> repository.updateAll(Map.of(1, task("X"), 9, task("Y"))));
+        assertEquals("New 1", repository.getById(1).getTitle());
+    }
+
+    @Test
+    @DisplayName("An empty store throws EmptyRepositoryException, a missing task TaskNotFoundException")
+    void missingTasks() {
+        assertThrows(EmptyRepositoryException.class, () -> repository.getById(1));
+
+        repository.create(task("Title 1"));
+
+        assertThrows(TaskNotFoundException.class, () -> repository.getById(2));
+        assertThrows(TaskNotFoundException.class, () -> repository.delete(2));
+    }
+
+    @Test
+    @DisplayName("Resharding keeps every task and its ID, and deleted IDs are not given again")
+    void reshard() throws Exception {
+        repository.createAll(tasks(10));
+        repository.delete(10);
+        repository.delete(4);
+
+        repository.reshard(5);
+
+        assertEquals(5, repository.shards());
+        assertEquals(List.of(1, 2, 3, 5, 6, 7, 8, 9), repository.getAll().stream()
+                .map(task -> Integer.parseInt(task.getTitle().substring("Title ".length()))).toList());
+        assertEquals("Title 7", repository.getById(7).getTitle());
+        assertTrue(repository.create(task("Title 11")) > 10);
+        assertTrue(Files.notExists(tempDir.resolve("tasks-1-0.json")));
+        assertTrue(Files.exists(tempDir.resolve("tasks-2-4.json")));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(List.of(), files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith("tasks-1-")).toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Another repository on the same directory uses the new shards after a reshard")
+    void reshardSeenByOthers() {
+        ShardedTaskRepository other = new ShardedTaskRepository(tempDir, 3);
+        repository.createAll(tasks(6));
+        assertEquals("Title 6", other.getById(6).getTitle());
+
+        repository.reshard(2);
+
+        assertEquals(2, other.shards());
+        assertEquals(titles(tasks(6)), titles(other.getAll()));
+        other.delete(6);
+        assertEquals(5, repository.getAll().size());
+    }
+
+    @Test
+    @DisplayName("A reshard is seen by others even if the shards file keeps its modification time and size")
+    void reshardWithinOneTick() throws Exception {
+        ShardedTaskRepository other = new ShardedTaskRepository(tempDir, 3);
+        repository.createAll(tasks(6));
+        Path layout = tempDir.resolve("shards");
+        FileTime modified = Files.getLastModifiedTime(layout);
+        assertEquals(3, other.shards());
+
+        repository.reshard(4);
+        Files.setLastModifiedTime(layout, modified);
+
+        assertEquals(4, other.shards());
+        assertEquals(titles(tasks(6)), titles(other.getAll()));
+        other.create(task("Title 7"));
+        assertEquals(7, repository.getAll().size());
+    }
+
+    @Test
+    @DisplayName("Shards can be spread over several directories")
+    void shardDirectories() {
+        Path first = tempDir.resolve("a");
+        Path second = tempDir.resolve("b");
+        repository = new ShardedTaskRepository(tempDir, 4, List.of(first, second));
+        repository.createAll(tasks(8));
+
+        assertTrue(Files.exists(first.resolve("tasks-1-0.json")));
+        assertTrue(Files.exists(second.resolve("tasks-1-1.json")));
+        assertEquals(titles(tasks(8)), titles(repository.getAll()));
+    }
+
+    @Test
+    @DisplayName("Tasks created by several threads get different IDs, also while the store is resharded")
+    void concurrentCreates() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> ids = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String title = "Title " + i;
+                ids.add(executor.submit(() -> repository.create(task(title))));
+                if (i == 100) executor.submit(() -> repository.reshard(4));
+            }
+            List<Integer> created = new ArrayList<>();
+            for (Future<Integer> id : ids) created.add(id.get());
+
+            assertEquals(200, created.stream().distinct().count());
+            assertEquals(200, repository.getAll().size());
+            for (int i = 0; i < 200; i += 37) assertEquals("Title " + i, repository.getById(created.get(i)).getTitle());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package edu.riesco.persistence;
+
+import edu.riesco.domain.IdMode;
+import edu.riesco.domain.NoDueDate;
+import edu.riesco.domain.Task;
+import edu.riesco.exception.EmptyRepositoryException;
+import edu.riesco.exception.TaskNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TailingTaskRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+    private String filePath;
+    private JsonFileTaskRepository other;  // Another process writing the same file
+    private TailingTaskRepository repository;
+    private final BlockingQueue<TailingTaskRepository.Change> changes = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void setup() {
+        filePath = tempDir.resolve("tmTestFile.json").toString();
+        other = new JsonFileTaskRepository(filePath);
+        repository = new TailingTaskRepository(filePath, JsonFileTaskRepository.Layout.LINES, IdMode.POSITIONAL, false);
+        repository.addListener(changes::add);
+    }
+
+    @AfterEach
+    void close() {
+        repository.close();
+    }
+
+    private static Task task(String title) {
+        return Task.from(title, "", new NoDueDate());
+    }
+
+    private static List<String> titles(List<Task> tasks) {
+        return tasks.stream().map(Task::getTitle).toList();
+    }
+
+    @Test
+    @DisplayName("Tasks appended by others are read as an append")
+    void appended() {
+        other.createAll(List.of(task("Title 1"), task("Title 2")));
+        repository.refresh();
+        other.create(task("Title 3"));
+        repository.refresh();
+
+        assertEquals(List.of("Title 1", "Title 2", "Title 3"), titles(repository.getAll()));
+        assertEquals("Title 3", repository.getById(3).getTitle());
+        TailingTaskRepository.Change first = changes.poll();
+        TailingTaskRepository.Change second = changes.poll();
+        assertEquals(TailingTaskRepository.ChangeKind.APPENDED, first.kind());
+        assertEquals(List.of(1, 2), List.copyOf(first.tasks().keySet()));
+        assertEquals(TailingTaskRepository.ChangeKind.APPENDED, second.kind());
+        assertEquals(Map.of(3, "Title 3"), Map.of(3, second.tasks().get(3).getTitle()));
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Tasks changed in place by others are read again")
+    void rewritten() {
+        other.createAll(List.of(task("Title 1"), task("Title 2"), task("Title 3")));
+        repository.refresh();
+        changes.clear();
+
+        other.update(1, task("New title 1"));
+        repository.refresh();
+        assertEquals(List.of("New title 1", "Title 2", "Title 3"), titles(repository.getAll()));
+        assertEquals(TailingTaskRepository.ChangeKind.RELOADED, changes.poll().kind());
+
+        other.delete(2);
+        other.create(task("Title 4"));
+        repository.refresh();
+        assertEquals(List.of("New title 1", "Title 3", "Title 4"), titles(repository.getAll()));
+        assertEquals(TailingTaskRepository.ChangeKind.RELOADED, changes.poll().kind());
+    }
+
+    @Test
+    @DisplayName("A file changed by other programs is read again, even if it only grew")
+    void changedByOtherPrograms() throws IOException {
+        other.create(task("Title 1"));
+        repository.refresh();
+        changes.clear();
+
+        Files.writeString(Path.of(filePath), task("Title 2").toJson() + System.lineSeparator(), StandardOpenOption.APPEND);
+        repository.refresh();
+
+        assertEquals(List.of("Title 1", "Title 2"), titles(repository.getAll()));
+        assertEquals(TailingTaskRepository.ChangeKind.RELOADED, changes.poll().kind());
+    }
+
+    @Test
+    @DisplayName("Lines across reads and longer than the read buffer are read whole")
+    void longLines() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 1; i <= 2000; i++) {
+            String description = i % 500 == 0 ? "A long description ".repeat(10_000) : "Description " + i;
+            tasks.add(Task.from("Title " + i, description, new NoDueDate()));
+        }
+        other.createAll(tasks.subList(0, 1000));
+        repository.refresh();
+        other.createAll(tasks.subList(1000, 2000));
+        repository.refresh();
+
+        assertEquals(tasks.stream().map(Task::getDescription).toList(),
+                repository.getAll().stream().map(Task::getDescription).toList());
+    }
+
+    @Test
+    @DisplayName("Writes are saved in the file and applied in memory without reading it again")
+    void writes() {
+        repository.createAll(List.of(task("Title 1"), task("Title 2"), task("Title 3")));
+        repository.update(2, task("New title 2"));
+        repository.editAll(Map.of(3, task -> task("Edited title 3")));
+        repository.delete(1);
+
+        List<String> expected = List.of("New title 2", "Edited title 3");
+        assertEquals(expected, titles(repository.getAll()));
+        assertEquals(expected, titles(other.getAll()));
+        assertEquals(List.of(TailingTaskRepository.ChangeKind.APPENDED, TailingTaskRepository.ChangeKind.UPDATED,
+                        TailingTaskRepository.ChangeKind.UPDATED, TailingTaskRepository.ChangeKind.DELETED),
+                changes.stream().map(TailingTaskRepository.Change::kind).toList());
+        repository.refresh();
+        assertEquals(4, changes.size());
+    }
+
+    @Test
+    @DisplayName("Missing tasks throw TaskNotFoundException, and EmptyRepositoryException if there are none")
+    void missingTasks() {
+        assertThrows(EmptyRepositoryException.class, () -> repository.getById(1));
+        repository.create(task("Title 1"));
+        assertThrows(TaskNotFoundException.class, () -> repository.getById(2));
+        assertThrows(TaskNotFoundException.class, () -> repository.delete(2));
+    }
+
+    @Test
+    @DisplayName("With stable IDs, tasks are found by their ID after deletes")
+    void stableIds() {
+        repository.close();
+        filePath = tempDir.resolve("stable.json").toString();
+        other = new JsonFileTaskRepository(filePath, JsonFileTaskRepository.Layout.LINES, IdMode.STABLE);
+        repository = new TailingTaskRepository(filePath, JsonFileTaskRepository.Layout.LINES, IdMode.STABLE, false);
+
+        other.createAll(List.of(task("Title 1"), task("Title 2"), task("Title 3")));
+        other.delete(2);
+        repository.refresh();
+        assertEquals(4, repository.create(task("Title 4")));
+        repository.delete(3);
+
+        assertEquals("Title 4", repository.getById(4).getTitle());
+        assertThrows(TaskNotFoundException.class, () -> repository.getById(3));
+        try (Stream<Map.Entry<Integer, Task>> tasks = repository.streamWithIds()) {
+            assertEquals(List.of(1, 4), tasks.map(Map.Entry::getKey).toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Changes made by others are seen without calling refresh()")
+    void watched() throws InterruptedException {
+        repository.close();
+        repository = new TailingTaskRepository(filePath);
+        repository.addListener(changes::add);
+        other.create(task("Title 1"));
+
+        TailingTaskRepository.Change change = changes.poll(30, TimeUnit.SECONDS);
+        assertNotNull(change);
+        assertEquals("Title 1", change.tasks().get(1).getTitle());
+        assertEquals(List.of("Title 1"), titles(repository.getAll()));
+    }
+}
@@ -1,3 +1,3 @@
 #!/usr/bin/env bash
 
-complete -W 'add update complete pending delete list help' tm
\ No newline at end of file
+complete -W 'add update complete pending delete list search import export daemon serve stats help' tm
\ No newline at end of file